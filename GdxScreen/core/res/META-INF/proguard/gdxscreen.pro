@@ -0,0 +1,12 @@
+# Keep rules for games shrunk with ProGuard or R8; R8 reads them from the GdxScreen jar by itself.
+# The serializers generated for GdxSerializers.Direct classes are only found by name, and the
+# names of the Direct classes and their fields are written into the save files.
+-keepattributes RuntimeVisibleAnnotations
+-keep @interface com.algodal.gdxscreen.utils.GdxSerializers$Direct
+-keep @com.algodal.gdxscreen.utils.GdxSerializers$Direct class * {
+    <init>();
+    <fields>;
+}
+-keep class **_GdxSerializer {
+    public <init>();
+}
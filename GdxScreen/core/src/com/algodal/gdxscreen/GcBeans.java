@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Sums the collection counts and times of the garbage collectors of the JVM.  Kept apart
+ * from GdxHitches so that platforms without java.lang.management, such as Android, only
+ * lose the GC numbers.
+ */
+final class GcBeans {
+	private final GarbageCollectorMXBean[] beans;
+
+	GcBeans() throws Throwable{
+		List<GarbageCollectorMXBean> list = ManagementFactory.getGarbageCollectorMXBeans();
+		beans = list.toArray(new GarbageCollectorMXBean[list.size()]);
+	}
+
+	/**
+	 * @return collections so far, over all collectors.
+	 */
+	long count(){
+		long count = 0;
+		for(int i = 0; i < beans.length; i ++) count += Math.max(0, beans[i].getCollectionCount());
+		return count;
+	}
+
+	/**
+	 * @return milliseconds spent collecting so far, over all collectors.
+	 */
+	long millis(){
+		long millis = 0;
+		for(int i = 0; i < beans.length; i ++) millis += Math.max(0, beans[i].getCollectionTime());
+		return millis;
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * GdxAllocations measures how many bytes the render thread allocates in each frame, and in
+ * which phase of the frame.  It reads the per-thread allocation counter of the JVM, so it
+ * works on desktop and in the headless backend but not on Android.  Turn it on with
+ * setEnabled(true); while it is off it costs a field check per phase.
+ *
+ * The assert methods are meant for tests: render enough frames to reach a steady state, then
+ * check that the next frames allocate nothing.
+ */
+public final class GdxAllocations {
+	public static final int OTHER = 0, COMMANDS = 1, CREATE = 2, SHOW = 3, RENDER = 4, ASSETS = 5, UNLOAD = 6, HIBERNATE = 7;
+	public static final int PHASES = 8;
+	private static final String[] NAMES = {"other", "commands", "create", "show", "render", "assets", "unload", "hibernate"};
+
+	private ThreadAllocations counter;
+	private boolean enabled;
+	private long threadId;
+	private long readCost; //bytes one read of the counter allocates itself
+	private int phase;
+	private long mark;
+
+	private final long[] frameBytes;
+	private final long[] phaseBytes; //PHASES entries per recorded frame
+	private final long[] totalPhaseBytes;
+	private final int capacity;
+	private int next; //slot of the frame being measured
+	private long frames;
+
+	/**
+	 * @param capacity number of recent frames to keep.
+	 */
+	GdxAllocations(int capacity){
+		this.capacity = capacity;
+		frameBytes = new long[capacity];
+		phaseBytes = new long[capacity * PHASES];
+		totalPhaseBytes = new long[PHASES];
+	}
+
+	/**
+	 * @return true if the JVM can count allocated bytes.
+	 */
+	public boolean isSupported(){
+		if(counter == null){
+			try{
+				counter = new ThreadAllocations();
+			}catch(Throwable t){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Turns measuring on or off.  Takes effect at the next frame.
+	 * @return true if measuring is on afterwards.
+	 */
+	public boolean setEnabled(boolean enabled){
+		if(enabled && !isSupported()) enabled = false;
+		if(enabled && !this.enabled){
+			threadId = Thread.currentThread().getId();
+			long least = Long.MAX_VALUE;
+			for(int i = 0; i < 16; i ++){
+				long before = counter.read(threadId);
+				least = Math.min(least, counter.read(threadId) - before);
+			}
+			readCost = least;
+		}
+		this.enabled = enabled;
+		return enabled;
+	}
+
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	void beginFrame(){
+		if(!enabled) return;
+		threadId = Thread.currentThread().getId();
+		int base = next * PHASES;
+		for(int p = 0; p < PHASES; p ++) phaseBytes[base + p] = 0;
+		phase = OTHER;
+		mark = counter.read(threadId);
+	}
+
+	/**
+	 * Charges what was allocated since the last switch to the phase that was running and
+	 * switches to another one.
+	 */
+	void phase(int phase){
+		if(!enabled) return;
+		long now = counter.read(threadId);
+		phaseBytes[next * PHASES + this.phase] += Math.max(0, now - mark - readCost);
+		this.phase = phase;
+		mark = counter.read(threadId);
+	}
+
+	void endFrame(){
+		if(!enabled) return;
+		phase(OTHER);
+		int base = next * PHASES;
+		long total = 0;
+		for(int p = 0; p < PHASES; p ++){
+			total += phaseBytes[base + p];
+			totalPhaseBytes[p] += phaseBytes[base + p];
+		}
+		frameBytes[next] = total;
+		next = (next + 1) % capacity;
+		frames ++;
+	}
+
+	/**
+	 * @return frames measured since measuring was turned on.
+	 */
+	public long getFrames(){
+		return frames;
+	}
+
+	/**
+	 * @param ago 0 for the last measured frame, 1 for the one before...
+	 * @return bytes allocated in that frame.
+	 */
+	public long getFrameBytes(int ago){
+		return frameBytes[slot(ago)];
+	}
+
+	/**
+	 * @param ago 0 for the last measured frame, 1 for the one before...
+	 * @param phase one of the phase constants.
+	 * @return bytes allocated in that phase of that frame.
+	 */
+	public long getPhaseBytes(int ago, int phase){
+		return phaseBytes[slot(ago) * PHASES + phase];
+	}
+
+	/**
+	 * @return bytes allocated in a phase over all measured frames.
+	 */
+	public long getTotalPhaseBytes(int phase){
+		return totalPhaseBytes[phase];
+	}
+
+	public static String getPhaseName(int phase){
+		return NAMES[phase];
+	}
+
+	private int slot(int ago){
+		if(ago < 0 || ago >= Math.min(frames, capacity)) throw new GdxRuntimeException("failed: frame " + ago + " ago was measured");
+		return (next - 1 - ago + capacity) % capacity;
+	}
+
+	/**
+	 * Fails if any of the last frames allocated more than allowed.
+	 * @param frames how many of the last frames to check.
+	 * @param maxBytes the most bytes a frame may allocate, 0 for none.
+	 */
+	public void assertSteadyState(int frames, long maxBytes){
+		for(int ago = 0; ago < frames; ago ++){
+			if(getFrameBytes(ago) <= maxBytes) continue;
+			throw new GdxRuntimeException("failed: steady state frame allocates at most " + maxBytes + " bytes, "
+					+ ago + " frames ago allocated " + describe(ago));
+		}
+	}
+
+	/**
+	 * Fails if a phase allocated more than allowed in any of the last frames.
+	 * @param phase one of the phase constants.
+	 * @param frames how many of the last frames to check.
+	 * @param maxBytes the most bytes the phase may allocate in a frame, 0 for none.
+	 */
+	public void assertPhase(int phase, int frames, long maxBytes){
+		for(int ago = 0; ago < frames; ago ++){
+			if(getPhaseBytes(ago, phase) <= maxBytes) continue;
+			throw new GdxRuntimeException("failed: " + NAMES[phase] + " phase allocates at most " + maxBytes + " bytes, "
+					+ ago + " frames ago allocated " + describe(ago));
+		}
+	}
+
+	/**
+	 * @return the bytes of a frame, phase by phase.
+	 */
+	public String describe(int ago){
+		StringBuilder builder = new StringBuilder();
+		builder.append(getFrameBytes(ago)).append(" bytes (");
+		for(int p = 0; p < PHASES; p ++){
+			if(p > 0) builder.append(", ");
+			builder.append(NAMES[p]).append(' ').append(getPhaseBytes(ago, p));
+		}
+		return builder.append(')').toString();
+	}
+
+	/**
+	 * Forgets the measured frames.
+	 */
+	public void reset(){
+		next = 0;
+		frames = 0;
+		for(int p = 0; p < PHASES; p ++) totalPhaseBytes[p] = 0;
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * GdxCommandQueue carries launches and screen events from any thread to the render thread
+ * without locks and without allocating.  It is a ring of command objects created once:
+ * a producer claims a slot with a compare-and-set, fills it in and publishes it, and the
+ * render thread takes every published command at the start of the next frame.  When the
+ * ring is full, post fails instead of blocking, so a flood of messages can not stall a
+ * network or loader thread.
+ *
+ * Use it through GdxGame.postLaunch and GdxGame.postEvent.
+ */
+public final class GdxCommandQueue {
+	static final int LAUNCH = 0, EVENT = 1;
+
+	private final Command[] slots;
+	private final AtomicLongArray sequences; //slot i is free for position p when its sequence is p, filled when p + 1
+	private final int mask;
+	private final AtomicLong tail; //next position producers claim
+	private volatile long head; //next position the consumer takes, only written by the consumer
+	private final AtomicLong posted, rejected;
+	private volatile long drained;
+
+	/**
+	 * @param capacity most commands waiting at once, rounded up to a power of two.
+	 */
+	GdxCommandQueue(int capacity){
+		int size = 1;
+		while(size < capacity) size <<= 1;
+		slots = new Command[size];
+		sequences = new AtomicLongArray(size);
+		for(int i = 0; i < size; i ++){
+			slots[i] = new Command();
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+		tail = new AtomicLong();
+		posted = new AtomicLong();
+		rejected = new AtomicLong();
+	}
+
+	/**
+	 * Puts a command in the queue.  Safe to call from any thread.
+	 * @return false if the queue is full.
+	 */
+	boolean post(int kind, String first, String second, int event, Object payload){
+		long position = tail.get();
+		while(true){
+			int i = (int)position & mask;
+			long difference = sequences.get(i) - position;
+			if(difference == 0){
+				if(tail.compareAndSet(position, position + 1)) break;
+				position = tail.get(); //another producer took the slot
+			}else if(difference < 0){
+				rejected.incrementAndGet(); //the consumer has not taken the command a lap ago yet
+				return false;
+			}else{
+				position = tail.get();
+			}
+		}
+		int i = (int)position & mask;
+		Command command = slots[i];
+		command.kind = kind;
+		command.first = first;
+		command.second = second;
+		command.event = event;
+		command.payload = payload;
+		sequences.set(i, position + 1); //publishes the fields written above
+		posted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Hands every command published so far to the handler, oldest first.  Commands posted
+	 * while draining wait for the next drain.  Only call it from one thread.
+	 * @return the number of commands handled.
+	 */
+	int drain(Handler handler){
+		long end = tail.get(), head = this.head;
+		int count = 0;
+		while(head < end){
+			int i = (int)head & mask;
+			if(sequences.get(i) != head + 1) break; //claimed but not filled in yet
+			Command command = slots[i];
+			int kind = command.kind, event = command.event;
+			String first = command.first, second = command.second;
+			Object payload = command.payload;
+			command.first = null;
+			command.second = null;
+			command.payload = null;
+			sequences.set(i, head + slots.length); //free for the producers of the next lap
+			head ++;
+			count ++;
+			this.head = head; //before the handler, which may post or read getPending
+			handler.handle(kind, first, second, event, payload);
+		}
+		drained += count;
+		return count;
+	}
+
+	public int getCapacity(){
+		return slots.length;
+	}
+
+	public long getPosted(){
+		return posted.get();
+	}
+
+	/**
+	 * @return commands that found the queue full.
+	 */
+	public long getRejected(){
+		return rejected.get();
+	}
+
+	/**
+	 * @return commands handled on the render thread.  Safe to read from any thread.
+	 */
+	public long getDrained(){
+		return drained;
+	}
+
+	/**
+	 * Safe to read from any thread, but only a snapshot while other threads post: it counts
+	 * the commands that are claimed but not filled in yet too.
+	 * @return commands waiting for the next drain.
+	 */
+	public int getPending(){
+		long head = this.head; //read before tail, so the difference is never negative
+		return (int)(tail.get() - head);
+	}
+
+	static interface Handler{
+		void handle(int kind, String first, String second, int event, Object payload);
+	}
+
+	private static final class Command{
+		int kind;
+		String first, second;
+		int event;
+		Object payload;
+	}
+}
@@ -18,6 +18,8 @@ package com.algodal.gdxscreen;
 import com.algodal.gdxscreen.utils.GdxDebug;
 import com.algodal.gdxscreen.utils.GdxDebug.Operation;
 import com.algodal.gdxscreen.utils.GdxLibrary;
+import com.algodal.gdxscreen.utils.GdxPrefs;
+import com.algodal.gdxscreen.utils.GdxTrace;
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
@@ -66,6 +68,33 @@ public class GdxGame extends Game{
 	 */
 	public final Color clearColor;
 	
+	/**
+	 * Launches and screen events posted from other threads, carried out at the start of the next frame.
+	 */
+	public final GdxCommandQueue commands;
+	
+	/**
+	 * Background work of the screens, see GdxScreen.runTask.
+	 */
+	public final GdxTasks tasks;
+	
+	/**
+	 * Hibernates long hidden screens that implement GdxHibernation.
+	 */
+	public final GdxHibernator hibernator;
+	
+	/**
+	 * Measures the bytes the render thread allocates per frame and phase.  Off by default.
+	 */
+	public final GdxAllocations allocations;
+	
+	/**
+	 * Records the frames that take longer than a target, and where their time went.  Off by default.
+	 */
+	public final GdxHitches hitches;
+	
+	private int phase; //what the render thread is doing, one of the GdxAllocations phases
+	
 	/**
 	 * Allows the screen to know wether or not the game has paused.
 	 */
@@ -90,6 +119,12 @@ public class GdxGame extends Game{
 		
 		clearColor = new Color(Color.RED);
 		
+		commands = new GdxCommandQueue(256);
+		tasks = new GdxTasks();
+		hibernator = new GdxHibernator(this);
+		allocations = new GdxAllocations(600);
+		hitches = new GdxHitches(64);
+		
 		pauseStatus = false; //initially the game is not paused.
 	}
 	
@@ -191,6 +226,7 @@ public class GdxGame extends Game{
 			}
 		});
 		screen.setGame(this); //This is a must.  Every screen must know their game.
+		screen.ref = ref;
 		
 		debug.assertNotNull(name + " is not null", screen);
 		debug.assertFalse(name + " ref is unique", map.containsKey(ref)); //unique reference
@@ -228,6 +264,30 @@ public class GdxGame extends Game{
 	 */
 	public void deinitialize(){}
 	
+	/**
+	 * Launches a screen from any thread.  The launch happens at the start of the next frame,
+	 * on the render thread, in the order it was posted.
+	 * @param transitionRef Reference to the transition to deliver the new screen
+	 * @param screenRef Reference to the new screen
+	 * @return false if the command queue is full and the launch was not posted.
+	 */
+	public final boolean postLaunch(String transitionRef, String screenRef){
+		return commands.post(GdxCommandQueue.LAUNCH, transitionRef, screenRef, 0, null);
+	}
+	
+	/**
+	 * Sends an event to a screen from any thread.  The screen receives it in receive(event, payload)
+	 * at the start of the next frame, on the render thread.  A screen that has not been created yet
+	 * does not receive it.
+	 * @param screenRef Reference to the screen, or null for the screen being shown.
+	 * @param event An event code defined by you.
+	 * @param payload Anything that goes with the event, may be null.
+	 * @return false if the command queue is full and the event was not posted.
+	 */
+	public final boolean postEvent(String screenRef, int event, Object payload){
+		return commands.post(GdxCommandQueue.EVENT, screenRef, null, event, payload);
+	}
+	
 	final void launch(String transitionRef, String screenRef){
 		debug.assertTrue("transition ref exists", transitionMap.containsKey(transitionRef = transitionRef.trim()));
 		debug.assertTrue("screen ref exists", screenMap.containsKey(screenRef = screenRef.trim()));
@@ -239,6 +299,47 @@ public class GdxGame extends Game{
 		setScreen(transition);
 	}
 	
+	/**
+	 * Tells the profilers what the render thread is doing from now on.  Only call it at the top
+	 * level of the frame: the trace scope of the previous phase is ended and one for the new
+	 * phase begun, which would end any scope opened in between instead.  render ends the scope
+	 * of the phase it is in when the frame is over, even if the frame failed.
+	 * @param phase One of the GdxAllocations phases.
+	 */
+	final void phase(int phase){
+		switchPhase(phase);
+		GdxTrace.end();
+		GdxTrace.begin(GdxAllocations.getPhaseName(phase));
+	}
+	
+	/**
+	 * Like phase, for a phase that runs inside another one and whatever scopes it opened.  The
+	 * phase is traced as a scope nested in them.  End it with endNestedPhase.
+	 * @param phase One of the GdxAllocations phases.
+	 * @return The phase to hand to endNestedPhase.
+	 */
+	final int beginNestedPhase(int phase){
+		int previous = switchPhase(phase);
+		GdxTrace.begin(GdxAllocations.getPhaseName(phase));
+		return previous;
+	}
+	
+	/**
+	 * @param previous What beginNestedPhase returned.
+	 */
+	final void endNestedPhase(int previous){
+		GdxTrace.end();
+		switchPhase(previous);
+	}
+	
+	private int switchPhase(int phase){
+		int previous = this.phase;
+		this.phase = phase;
+		allocations.phase(phase);
+		hitches.phase(phase);
+		return previous;
+	}
+	
 	private final GdxScreen getNonTransitionalScreen(){
 		GdxScreen gdxScreen = (GdxScreen) getScreen();
 		//up to version 0.1.4 there is a bug:
@@ -250,9 +351,11 @@ public class GdxGame extends Game{
 			GdxTransition transition = (GdxTransition)gdxScreen;
 			transition.hide();
 			transition.oldScreen.hide();
+			transition.hidden();
+			transition.oldScreen.hidden();
 			transition.showed = false;
 			transition.oldScreen.showed = false;
-			transition.unloadAssets(new GdxScreen[]{transition.newScreen}, new GdxScreen[]{transition, transition.oldScreen});
+			transition.unloadAssets(transition.newScreen, null, transition, transition.oldScreen);
 			transition.loaded = false;
 			transition.oldScreen.loaded = false;
 			gdxScreen = transition.newScreen;
@@ -267,11 +370,27 @@ public class GdxGame extends Game{
 	 */
 	@Override
 	public void render() {
-		Gdx.gl.glClearColor(clearColor.r, clearColor.g, clearColor.b, clearColor.a);
-		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		float delta = Gdx.graphics.getDeltaTime();
-		screenListener.render(delta);
-		assetManager.update();
+		GdxTrace.begin("GdxGame.render");
+		allocations.beginFrame();
+		hitches.beginFrame();
+		phase = GdxAllocations.OTHER;
+		GdxTrace.begin(GdxAllocations.getPhaseName(phase));
+		try{
+			Gdx.gl.glClearColor(clearColor.r, clearColor.g, clearColor.b, clearColor.a);
+			Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+			float delta = Gdx.graphics.getDeltaTime();
+			screenListener.render(delta);
+			phase(GdxAllocations.ASSETS);
+			assetManager.update();
+			phase(GdxAllocations.HIBERNATE);
+			hibernator.update();
+			allocations.endFrame();
+			GdxScreen screen = (GdxScreen)getScreen();
+			hitches.endFrame(screen == null ? null : screen.ref);
+		}finally{
+			GdxTrace.end(); //phase
+			GdxTrace.end(); //frame
+		}
 	}
 	
 	/**
@@ -280,11 +399,27 @@ public class GdxGame extends Game{
 	 */
 	@Override
 	public void dispose() {
-		currentState = State.Disposing;
-		//Only screens that were initially created may be disposed.
-		for(Entry<String, GdxScreen> entry : screenMap) if(entry.value.created) entry.value.dispose();
-		for(Entry<String, GdxScreen> entry : transitionMap) if(entry.value.created) entry.value.dispose();
-		assetManager.dispose();
+		GdxTrace.begin("GdxGame.dispose");
+		try{
+			currentState = State.Disposing;
+			//Only screens that were initially created may be disposed.
+			for(Entry<String, GdxScreen> entry : screenMap){
+				entry.value.cancelTasks();
+				if(entry.value.created) entry.value.dispose();
+				if(entry.value.pool != null) entry.value.pool.clear();
+			}
+			for(Entry<String, GdxScreen> entry : transitionMap){
+				entry.value.cancelTasks();
+				if(entry.value.created) entry.value.dispose();
+				if(entry.value.pool != null) entry.value.pool.clear();
+			}
+			assetManager.dispose();
+			hibernator.dispose();
+			GdxPrefs.flushPending(); //write preferences still waiting in the flush window
+			hitches.dispose(); //dump the hitches of the session, last so a failed dump loses nothing else
+		}finally{
+			GdxTrace.end();
+		}
 		currentState = State.Deinitializing;
 		deinitialize(); //user defined
 	}
@@ -296,6 +431,7 @@ public class GdxGame extends Game{
 	@Override
 	public void pause() {
 		screenListener.pause();
+		GdxPrefs.flushPending(); //the app may be killed while paused, do not lose preferences
 		pauseStatus = true; //tell all the screens: the is paused
 	}
 
@@ -352,8 +488,28 @@ public class GdxGame extends Game{
 	 * incoming screen.  It also decides when the two screens switch positions.
 	 */
 	public class ScreenListener{
+		private final GdxCommandQueue.Handler commandHandler = new GdxCommandQueue.Handler() {
+			@Override
+			public void handle(int kind, String first, String second, int event, Object payload) {
+				if(kind == GdxCommandQueue.LAUNCH){
+					launch(first, second);
+				}else{
+					GdxScreen target;
+					if(first == null){
+						target = (GdxScreen)getScreen();
+						if(target instanceof GdxTransition) target = ((GdxTransition)target).showing;
+					}else{
+						debug.assertTrue("screen ref exists", screenMap.containsKey(first = first.trim()));
+						target = screenMap.get(first);
+					}
+					if(target != null && target.created) target.receive(event, payload);
+				}
+			}
+		};
+		
 		private void render(GdxScreen screen, float delta){
 			//if the screen's assets are not loaded, start loading them
+			phase(GdxAllocations.OTHER);
 			if(!screen.loaded){
 				screen.loadAssets();
 				screen.loaded = true;
@@ -363,14 +519,18 @@ public class GdxGame extends Game{
 			if(screen.assetProgress() == 1.0f){
 				//if the screen has not been created then create it.
 				if(!screen.created){
+					phase(GdxAllocations.CREATE);
 					currentState = State.Creating;
+					long creating = System.nanoTime();
 					screen.create();
 					screen.created = true;
+					if(screen.hibernated) hibernator.restore(screen, creating); //wake it up with its saved state
 				}
 				
 				//if the screen was hidden before, then show it.
 				if(!screen.showed){
 					//always resize screen when you are about to show it.
+					phase(GdxAllocations.SHOW);
 					currentState = State.Resizing;
 					screen.resize(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
 					
@@ -381,7 +541,9 @@ public class GdxGame extends Game{
 				}
 				
 				//render the screen.
+				phase(GdxAllocations.RENDER);
 				currentState = State.Rendering;
+				if(screen.pool != null && screen.pool.isFrameReset()) screen.pool.reclaim(false);
 				screen.render(delta);
 			}
 		}
@@ -399,6 +561,12 @@ public class GdxGame extends Game{
 		}
 		
 		public void render(float delta){
+			//carry out what other threads posted since the last frame and deliver finished tasks
+			currentState = State.Rendering;
+			phase(GdxAllocations.COMMANDS);
+			commands.drain(commandHandler);
+			tasks.deliver();
+			
 			//get the screen
 			GdxScreen screen = (GdxScreen)getScreen();
 			
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Implement this in a GdxScreen that holds a lot of memory (maps, caches) but is rarely
+ * visited.  Once the screen has been hidden for longer than the delay of GdxGame.hibernator,
+ * the state it hands over in hibernate() is written to a compressed local file, the screen
+ * is disposed and it counts as not created again.  The next time it is launched it is created
+ * as usual and then receives the saved state in awaken().
+ */
+public interface GdxHibernation {
+	/**
+	 * Called on the render thread just before the screen is disposed for hibernation.
+	 * @param state Add the objects to keep.  They must be plain old java objects, see GdxSave.
+	 */
+	void hibernate(Array<Object> state);
+
+	/**
+	 * Called on the render thread right after create() when the screen comes back from hibernation.
+	 * @param state The objects added in hibernate(), empty if the file could not be read.
+	 */
+	void awaken(Array<Object> state);
+
+	/**
+	 * @return An estimate of the memory, in bytes, the screen holds while it is created.  It is
+	 * what hibernation saves, reported by GdxHibernator.getBytesSaved().
+	 */
+	long getResidentBytes();
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import com.algodal.gdxscreen.utils.GdxLoad;
+import com.algodal.gdxscreen.utils.GdxLoad.LoadData;
+import com.algodal.gdxscreen.utils.GdxSave;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Puts screens that implement GdxHibernation to sleep after they have been hidden for a while,
+ * and wakes them up when they are launched again.  It also keeps the numbers needed to weigh
+ * the memory hibernation saves against the time a restore takes.
+ */
+public final class GdxHibernator {
+	private static final long CHECK_MILLIS = 1000; //how often hidden screens are looked at
+
+	private final GdxGame game;
+	private long delayMillis;
+	private String directory;
+	private long lastCheck;
+	private final Array<Object> state;
+
+	private int hibernations, restores, failures;
+	private long bytesSaved, storedBytes;
+	private long lastRestoreNanos, totalRestoreNanos;
+
+	GdxHibernator(GdxGame game){
+		this.game = game;
+		delayMillis = 5 * 60 * 1000;
+		directory = "gdxscreen/hibernation/";
+		state = new Array<>();
+	}
+
+	/**
+	 * @param millis How long a screen stays hidden before it hibernates.  Zero or less turns hibernation off.
+	 */
+	public GdxHibernator setDelay(long millis){
+		delayMillis = millis;
+		return this;
+	}
+
+	public long getDelay(){
+		return delayMillis;
+	}
+
+	/**
+	 * @param localPath Local directory of the hibernation files, ending with a slash.
+	 */
+	public GdxHibernator setDirectory(String localPath){
+		game.debug.assertStringNotEmpty("hibernation directory is not empty", localPath);
+		directory = localPath;
+		return this;
+	}
+
+	private FileHandle file(GdxScreen screen){
+		return Gdx.files.local(directory + screen.ref + ".sav");
+	}
+
+	/**
+	 * Hibernates the screens that have been hidden long enough.  Called by GdxGame every frame.
+	 */
+	void update(){
+		update(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param now The time in milliseconds, as System.currentTimeMillis() tells it.
+	 */
+	void update(long now){
+		if(delayMillis <= 0) return;
+		if(now - lastCheck < CHECK_MILLIS) return;
+		lastCheck = now;
+		for(int i = 0; i < game.screenMap.size; i ++){
+			GdxScreen screen = game.screenMap.getValueAt(i);
+			if(!(screen instanceof GdxHibernation) || !screen.created || screen.showed) continue;
+			if(screen.hiddenAt == 0 || now - screen.hiddenAt < delayMillis) continue;
+			if(inUse(screen)) continue;
+			hibernate(screen);
+		}
+	}
+
+	private boolean inUse(GdxScreen screen){
+		Object current = game.getScreen();
+		if(current == screen) return true;
+		if(current instanceof GdxTransition){
+			GdxTransition transition = (GdxTransition)current;
+			return transition.newScreen == screen || transition.oldScreen == screen || transition.showing == screen;
+		}
+		return false;
+	}
+
+	private void hibernate(GdxScreen screen){
+		GdxHibernation hibernation = (GdxHibernation)screen;
+		state.clear();
+		long resident = hibernation.getResidentBytes();
+		GdxGame.State previous = game.currentState;
+		FileHandle file = file(screen);
+		long stored;
+		try{
+			game.currentState = GdxGame.State.Disposing;
+			hibernation.hibernate(state);
+			GdxSave save = new GdxSave(file, screen.ref);
+			save.getPlainOldJavaObjects().addAll(state);
+			save.saveCompressed();
+			stored = file.length();
+		}catch(RuntimeException e){ //update() runs on the render thread, whatever the screen throws must not end the game
+			failures ++;
+			file.delete(); //a file written half way must not be restored
+			game.debug.report("GdxHibernator", "failed to hibernate " + screen.ref + ": " + e);
+			return; //the screen stays created
+		}finally{
+			game.currentState = previous;
+			state.clear();
+		}
+		//the state is saved: from here on the screen is created again from the file, even if it fails to dispose
+		storedBytes += stored;
+		screen.created = false;
+		screen.hibernated = true;
+		try{
+			game.currentState = GdxGame.State.Disposing;
+			try{
+				screen.dispose();
+			}finally{
+				if(screen.pool != null) screen.pool.clear();
+			}
+		}catch(RuntimeException e){
+			failures ++;
+			game.debug.report("GdxHibernator", "failed to dispose " + screen.ref + ", it is created again from its saved state: " + e);
+			return; //what it still holds is not counted as saved
+		}finally{
+			game.currentState = previous;
+		}
+		screen.residentBytes = resident;
+		bytesSaved += resident;
+		hibernations ++;
+	}
+
+	/**
+	 * Hands the saved state to a screen that was just created again.
+	 * @param began System.nanoTime() before create() was called.
+	 */
+	void restore(GdxScreen screen, long began){
+		FileHandle file = file(screen);
+		String failure = null;
+		state.clear();
+		try{
+			LoadData data = new GdxLoad(file).load();
+			if(data.getCorruptChunks() == 0) state.addAll(data.getPlainOldJavaObjects());
+			else failure = data.getCorruptChunks() + " chunks are corrupt"; //awakening with part of the state would be worse
+		}catch(RuntimeException e){
+			failure = e.toString();
+			state.clear();
+		}
+		if(failure != null){
+			failures ++;
+			game.debug.report("GdxHibernator", "failed to restore " + screen.ref + ": " + failure);
+		}
+		((GdxHibernation)screen).awaken(state);
+		state.clear();
+		forget(screen, file, failure == null);
+		if(failure != null) keep(screen, file);
+		lastRestoreNanos = System.nanoTime() - began;
+		totalRestoreNanos += lastRestoreNanos;
+		restores ++;
+	}
+
+	/**
+	 * Moves the file of a failed restore aside, so the state is not lost and the next
+	 * hibernation of the screen does not overwrite it.
+	 */
+	private void keep(GdxScreen screen, FileHandle file){
+		if(!file.exists()) return;
+		try{
+			file.moveTo(Gdx.files.local(directory + screen.ref + ".failed.sav"));
+		}catch(GdxRuntimeException e){
+			game.debug.report("GdxHibernator", "failed to move " + file.path() + " aside: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param delete false leaves the file where it is, for example after a failed restore.
+	 */
+	private void forget(GdxScreen screen, FileHandle file, boolean delete){
+		storedBytes -= file.exists() ? file.length() : 0;
+		if(delete) file.delete();
+		screen.hibernated = false;
+		bytesSaved -= screen.residentBytes;
+		screen.residentBytes = 0;
+	}
+
+	/**
+	 * Deletes the files of the screens still hibernating.  Called when the game is disposed.
+	 */
+	void dispose(){
+		for(int i = 0; i < game.screenMap.size; i ++){
+			GdxScreen screen = game.screenMap.getValueAt(i);
+			if(screen.hibernated) forget(screen, file(screen), true);
+		}
+	}
+
+	public int getHibernations(){
+		return hibernations;
+	}
+
+	public int getRestores(){
+		return restores;
+	}
+
+	/**
+	 * @return Hibernations and restores that failed.  A hibernation that fails to save leaves
+	 * the screen created; one that fails to dispose the screen after the save leaves it
+	 * hibernated, so it is created again from its saved state.  A restore that fails to read
+	 * the file, or finds part of it corrupt, awakens the screen with no state and keeps the
+	 * file as the screen reference followed by .failed.sav in the hibernation directory.
+	 */
+	public int getFailures(){
+		return failures;
+	}
+
+	/**
+	 * @return The resident bytes reported by the screens hibernating right now.
+	 */
+	public long getBytesSaved(){
+		return bytesSaved;
+	}
+
+	/**
+	 * @return Size of the hibernation files on disk right now.
+	 */
+	public long getStoredBytes(){
+		return storedBytes;
+	}
+
+	/**
+	 * @return Time of the last restore, from the start of create() to the end of awaken().
+	 */
+	public long getLastRestoreNanos(){
+		return lastRestoreNanos;
+	}
+
+	public long getAverageRestoreNanos(){
+		return restores == 0 ? 0 : totalRestoreNanos / restores;
+	}
+}
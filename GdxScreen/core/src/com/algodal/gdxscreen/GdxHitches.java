@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * GdxHitches compares the time of every frame with a target.  A frame is measured from the
+ * start of GdxGame.render to the start of the next one, so the work the backend does between
+ * two renders, such as swapping buffers and polling input, and the collections that happen
+ * meanwhile belong to the frame; that time counts as the OTHER phase.  A frame is therefore
+ * only measured once the next one begins.  A frame that takes longer than the target is a
+ * hitch, and it is recorded in a ring buffer of the last hitches together with the time of
+ * each phase of the frame (see the phases of GdxAllocations), the screen that was showing,
+ * and the garbage collections and GC time that happened during the frame.  Nothing is
+ * allocated while recording.
+ *
+ * Dump the buffer with dump(), or set a dump file to have it written when the game is disposed.
+ */
+public class GdxHitches {
+	private static final int PHASES = GdxAllocations.PHASES;
+
+	private boolean enabled;
+	private long targetNanos;
+	private GcBeans gc;
+	private boolean gcChecked;
+	private FileHandle dumpFile;
+
+	private long frameStart, mark, gcCount, gcMillis, frames;
+	private boolean measuring; //a frame began and waits for the next to end it
+	private String screen; //of that frame
+	private int phase;
+	private final long[] phaseNanos; //of the frame being measured
+
+	private final int capacity;
+	private int next, size;
+	private long hitches;
+	private final long[] hitchFrame, hitchNanos, hitchGcCount, hitchGcMillis;
+	private final long[] hitchPhaseNanos;
+	private final String[] hitchScreen;
+
+	/**
+	 * @param capacity number of recent hitches to keep.
+	 */
+	GdxHitches(int capacity){
+		this.capacity = capacity;
+		targetNanos = 1000000000L / 60;
+		phaseNanos = new long[PHASES];
+		hitchFrame = new long[capacity];
+		hitchNanos = new long[capacity];
+		hitchGcCount = new long[capacity];
+		hitchGcMillis = new long[capacity];
+		hitchPhaseNanos = new long[capacity * PHASES];
+		hitchScreen = new String[capacity];
+	}
+
+	public GdxHitches setEnabled(boolean enabled){
+		this.enabled = enabled;
+		measuring = false; //the frames in between were not measured
+		return this;
+	}
+
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	/**
+	 * @param millis The time a frame may take, for example 1000 / 60f.
+	 */
+	public GdxHitches setTargetMillis(float millis){
+		targetNanos = (long)(millis * 1000000.0f);
+		return this;
+	}
+
+	public float getTargetMillis(){
+		return targetNanos / 1000000.0f;
+	}
+
+	/**
+	 * @param file Where dispose writes the dump, null to only log it.
+	 */
+	public GdxHitches setDumpFile(FileHandle file){
+		dumpFile = file;
+		return this;
+	}
+
+	private GcBeans gc(){
+		if(!gcChecked){
+			gcChecked = true;
+			try{
+				gc = new GcBeans();
+			}catch(Throwable t){
+				gc = null; //no management beans on this platform
+			}
+		}
+		return gc;
+	}
+
+	/**
+	 * The clock of the frames, overridden by tests.
+	 */
+	long nanos(){
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return collections so far, -1 if the platform does not tell.
+	 */
+	long gcCount(){
+		GcBeans gc = gc();
+		return gc == null ? -1 : gc.count();
+	}
+
+	/**
+	 * @return milliseconds spent collecting so far, -1 if the platform does not tell.
+	 */
+	long gcMillis(){
+		GcBeans gc = gc();
+		return gc == null ? -1 : gc.millis();
+	}
+
+	/**
+	 * Ends the frame before, if one was measured, and starts the next.
+	 */
+	void beginFrame(){
+		if(!enabled) return;
+		long now = nanos(), count = gcCount(), millis = gcMillis();
+		if(measuring){
+			phaseNanos[phase] += now - mark; //between the renders, OTHER since endFrame
+			record(now - frameStart, count, millis);
+		}
+		for(int p = 0; p < PHASES; p ++) phaseNanos[p] = 0;
+		phase = GdxAllocations.OTHER;
+		gcCount = count;
+		gcMillis = millis;
+		frameStart = mark = now;
+		screen = null;
+		measuring = true;
+	}
+
+	void phase(int phase){
+		if(!enabled || !measuring) return;
+		long now = nanos();
+		phaseNanos[this.phase] += now - mark;
+		this.phase = phase;
+		mark = now;
+	}
+
+	/**
+	 * The end of GdxGame.render.  The frame goes on until the next beginFrame.
+	 * @param screen the screen that was showing.
+	 */
+	void endFrame(String screen){
+		if(!enabled || !measuring) return;
+		phase(GdxAllocations.OTHER);
+		this.screen = screen;
+	}
+
+	private void record(long nanos, long count, long millis){
+		frames ++;
+		if(nanos <= targetNanos) return;
+		int slot = next;
+		next = (next + 1) % capacity;
+		if(size < capacity) size ++;
+		hitches ++;
+		hitchFrame[slot] = frames;
+		hitchNanos[slot] = nanos;
+		hitchScreen[slot] = screen;
+		hitchGcCount[slot] = count < 0 ? -1 : count - gcCount;
+		hitchGcMillis[slot] = millis < 0 ? -1 : millis - gcMillis;
+		System.arraycopy(phaseNanos, 0, hitchPhaseNanos, slot * PHASES, PHASES);
+	}
+
+	/**
+	 * @return frames measured since the detector was turned on, not counting the frame that
+	 * waits for the next one to begin.
+	 */
+	public long getFrames(){
+		return frames;
+	}
+
+	/**
+	 * @return hitches seen, including the ones that fell out of the buffer.
+	 */
+	public long getHitches(){
+		return hitches;
+	}
+
+	/**
+	 * @return hitches in the buffer.
+	 */
+	public int size(){
+		return size;
+	}
+
+	private int slot(int ago){
+		if(ago < 0 || ago >= size) throw new IndexOutOfBoundsException("hitch " + ago + " ago");
+		return (next - 1 - ago + capacity) % capacity;
+	}
+
+	/**
+	 * @param ago 0 for the last hitch, 1 for the one before...
+	 * @return the phase that took the most time in that hitch.
+	 */
+	public int getWorstPhase(int ago){
+		int base = slot(ago) * PHASES, worst = 0;
+		for(int p = 1; p < PHASES; p ++) if(hitchPhaseNanos[base + p] > hitchPhaseNanos[base + worst]) worst = p;
+		return worst;
+	}
+
+	public long getNanos(int ago){
+		return hitchNanos[slot(ago)];
+	}
+
+	public long getPhaseNanos(int ago, int phase){
+		return hitchPhaseNanos[slot(ago) * PHASES + phase];
+	}
+
+	/**
+	 * @return collections during the hitch, -1 if the platform does not tell.
+	 */
+	public long getGcCount(int ago){
+		return hitchGcCount[slot(ago)];
+	}
+
+	/**
+	 * @return milliseconds of GC during the hitch, -1 if the platform does not tell.
+	 */
+	public long getGcMillis(int ago){
+		return hitchGcMillis[slot(ago)];
+	}
+
+	/**
+	 * @return the buffer, oldest hitch first, one line per hitch.
+	 */
+	public String dump(){
+		StringBuilder builder = new StringBuilder();
+		builder.append(hitches).append(" hitches in ").append(frames).append(" frames over ")
+			.append(getTargetMillis()).append(" ms, last ").append(size).append(":\n");
+		for(int ago = size - 1; ago >= 0; ago --){
+			int slot = slot(ago), base = slot * PHASES;
+			builder.append("frame ").append(hitchFrame[slot]).append(' ').append(millis(hitchNanos[slot])).append(" ms")
+				.append(" screen ").append(hitchScreen[slot])
+				.append(" worst ").append(GdxAllocations.getPhaseName(getWorstPhase(ago))).append(" (");
+			for(int p = 0; p < PHASES; p ++){
+				if(p > 0) builder.append(", ");
+				builder.append(GdxAllocations.getPhaseName(p)).append(' ').append(millis(hitchPhaseNanos[base + p]));
+			}
+			builder.append(") gc ").append(hitchGcCount[slot]).append(" collections ").append(hitchGcMillis[slot]).append(" ms\n");
+		}
+		return builder.toString();
+	}
+
+	private static float millis(long nanos){
+		return Math.round(nanos / 10000.0) / 100.0f;
+	}
+
+	/**
+	 * Writes the dump to the dump file, or logs it if there is none.  Does nothing without hitches.
+	 * A dump that cannot be written is logged instead.
+	 */
+	void dispose(){
+		if(!enabled || hitches == 0) return;
+		if(dumpFile != null){
+			try{
+				dumpFile.writeString(dump(), false);
+				return;
+			}catch(GdxRuntimeException e){
+				if(Gdx.app != null) Gdx.app.error("GdxHitches", "failed to write " + dumpFile.path(), e);
+			}
+		}
+		if(Gdx.app != null) Gdx.app.log("GdxHitches", dump());
+	}
+
+	/**
+	 * Forgets the recorded hitches.
+	 */
+	public void reset(){
+		next = 0;
+		size = 0;
+		hitches = 0;
+		frames = 0;
+		for(int i = 0; i < capacity; i ++) hitchScreen[i] = null;
+	}
+}
@@ -31,13 +31,21 @@ import com.badlogic.gdx.utils.Array;
 public class GdxScreen implements Screen{
 
 	final Array<String> assetRefs;
+	final Array<GdxTask<?>> tasks; //running tasks, cancelled when the screen is hidden or disposed
 	private GdxGame game;
 	boolean created;
 	boolean showed;
 	boolean loaded;
 	
+	String ref; //reference it was registered with
+	long hiddenAt; //when the framework last hid it, in milliseconds
+	boolean hibernated; //disposed by GdxHibernator, its state waits in a file
+	long residentBytes; //what it reported when it hibernated
+	GdxScreenPool pool; //created on first use
+	
 	public GdxScreen(){
 		assetRefs = new Array<>();
+		tasks = new Array<>();
 	}
 	
 	/**
@@ -116,6 +124,74 @@ public class GdxScreen implements Screen{
 		return (float)readyAssets / (float)totalAssets;
 	}
 	
+	/**
+	 * Runs work in the background.  The callback is called on the render thread, at the start
+	 * of a frame, once the work is done.  If this screen is hidden or disposed first, the task
+	 * is cancelled and the callback is never called.
+	 * @param work The work, run on a background thread.
+	 * @param callback Receives the result or the error of the work.
+	 * @param <T> type of the result.
+	 * @return The task, to cancel it early.
+	 */
+	final public <T> GdxTask<T> runTask(GdxTask.Work<T> work, GdxTask.Callback<T> callback){
+		game.debug.assertNotNull("task work is not null", work);
+		game.debug.assertNotNull("task callback is not null", callback);
+		return game.tasks.submit(this, work, callback);
+	}
+	
+	/**
+	 * Cancels every task this screen started that has not delivered its result yet.
+	 */
+	final public void cancelTasks(){
+		while(tasks.size > 0) if(!tasks.peek().cancel()) tasks.pop(); //cancel() removes the task from the array itself
+	}
+	
+	/**
+	 * Called by the framework after it hid the screen.
+	 */
+	final void hidden(){
+		cancelTasks();
+		if(pool != null) pool.reclaim(true);
+		hiddenAt = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Gets a temporary object from the pool of this screen.  It goes back by itself when the
+	 * screen is hidden, or at the start of the next frame if frame reset is on.  Only call this
+	 * method inside render().
+	 * @param type A class with an empty constructor.
+	 * @param <T> type of object.
+	 * @return An object of the class, reset if it implements Pool.Poolable.
+	 */
+	final public <T> T obtain(Class<T> type){
+		game.debug.assertEqual("method called in rendering", game.currentState, GdxGame.State.Rendering);
+		return getPool().obtain(type);
+	}
+	
+	/**
+	 * Puts an object obtained from this screen back before the screen is hidden.
+	 * @param object The object, which must not be used afterwards.
+	 */
+	final public void free(Object object){
+		getPool().free(object);
+	}
+	
+	/**
+	 * @return The pool of this screen, to configure it or read its statistics.
+	 */
+	final public GdxScreenPool getPool(){
+		if(pool == null) pool = new GdxScreenPool(this);
+		return pool;
+	}
+	
+	/**
+	 * Receives the events posted to this screen with GdxGame.postEvent.  Called on the
+	 * render thread at the start of a frame, before the screen renders.
+	 * @param event The event code given to postEvent.
+	 * @param payload The payload given to postEvent.
+	 */
+	public void receive(int event, Object payload){}
+	
 	/**
 	 * This method is called absolutely once.  Any variable you initialize here will remain
 	 * initialized until the game ends.
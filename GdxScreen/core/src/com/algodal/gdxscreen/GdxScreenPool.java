@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import com.badlogic.gdx.utils.ArrayMap;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.ReflectionPool;
+
+/**
+ * The temporary objects of one screen (vectors, rectangles, event objects...), recycled in
+ * bulk.  Objects obtained with GdxScreen.obtain stay out until they are freed, until the frame
+ * ends if frame reset is on, or until the screen is hidden, whichever comes first.  Objects
+ * that implement Pool.Poolable are reset when they go back.
+ *
+ * In debug mode the pool watches for leaks: without frame reset, more objects of one class
+ * out at once than the leak limit fails an assertion, and the objects still out when the
+ * screen is hidden are reported.
+ */
+public final class GdxScreenPool {
+	private final GdxScreen screen;
+	private final ArrayMap<Class<?>, TypePool> pools;
+	private final IdentityMap<Object, TypePool> lent; //every object out, with the pool it goes back to
+	private boolean frameReset;
+	private int leakLimit;
+	private long obtained, created, freed, reclaimed, reclaimedAtHide;
+	private int out, peakOut;
+
+	GdxScreenPool(GdxScreen screen){
+		this.screen = screen;
+		pools = new ArrayMap<>();
+		lent = new IdentityMap<>();
+		leakLimit = 10000;
+	}
+
+	/**
+	 * @param frameReset true puts every object back at the start of each frame, before render.
+	 */
+	public GdxScreenPool setFrameReset(boolean frameReset){
+		this.frameReset = frameReset;
+		return this;
+	}
+
+	public boolean isFrameReset(){
+		return frameReset;
+	}
+
+	/**
+	 * @param leakLimit In debug mode, the most objects of one class that may be out at once.
+	 */
+	public GdxScreenPool setLeakLimit(int leakLimit){
+		this.leakLimit = leakLimit;
+		return this;
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> T obtain(Class<T> type){
+		TypePool pool = pool(type);
+		Object object = pool.obtain();
+		lent.put(object, pool);
+		pool.out ++;
+		obtained ++;
+		if(++ out > peakOut) peakOut = out;
+		if(!frameReset && pool.out > leakLimit) //checked first so the tag is only built when it fails
+			screen.getGame().debug.assertTrue("screen pool of " + type.getSimpleName() + " is not leaking", false);
+		return (T)object;
+	}
+
+	void free(Object object){
+		TypePool pool = lent.remove(object);
+		screen.getGame().debug.assertTrue("object was obtained from the screen pool", pool != null);
+		if(pool == null) return;
+		pool.out --;
+		pool.free(object);
+		freed ++;
+		out --;
+	}
+
+	/**
+	 * Puts every object that is out back.
+	 * @param hiding true when the screen is being hidden: objects still out are counted and,
+	 * in debug mode, reported.
+	 */
+	void reclaim(boolean hiding){
+		if(lent.size == 0) return;
+		for(int i = 0; i < pools.size; i ++){
+			TypePool pool = pools.getValueAt(i);
+			if(hiding && pool.out > 0){
+				reclaimedAtHide += pool.out;
+				if(screen.getGame().debug.isOn()) screen.getGame().debug.report("GdxScreenPool", pool.out + " " + pool.type.getSimpleName() + " still out when " + screen.ref + " was hidden");
+			}
+			pool.out = 0;
+		}
+		reclaimed += lent.size;
+		for(IdentityMap.Entry<Object, TypePool> entry : lent.entries()) entry.value.free(entry.key);
+		lent.clear();
+		out = 0;
+	}
+
+	/**
+	 * Drops every pooled object, for example when the screen is disposed.
+	 */
+	void clear(){
+		reclaim(false);
+		for(int i = 0; i < pools.size; i ++) pools.getValueAt(i).clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private TypePool pool(Class<?> type){
+		int index = pools.indexOfKey(type);
+		if(index != -1) return pools.getValueAt(index);
+		screen.getGame().debug.assertContructorEmpty(type.getSimpleName() + " has an empty constructor", type);
+		TypePool pool = new TypePool((Class<Object>)type);
+		pools.put(type, pool);
+		return pool;
+	}
+
+	/**
+	 * @return Objects obtained.
+	 */
+	public long getObtained(){
+		return obtained;
+	}
+
+	/**
+	 * @return Objects that had to be created because the pool was empty.
+	 */
+	public long getCreated(){
+		return created;
+	}
+
+	/**
+	 * @return Objects freed one by one.
+	 */
+	public long getFreed(){
+		return freed;
+	}
+
+	/**
+	 * @return Objects put back in bulk, at frame resets and when the screen was hidden.
+	 */
+	public long getReclaimed(){
+		return reclaimed;
+	}
+
+	/**
+	 * @return Objects that were still out when the screen was hidden.
+	 */
+	public long getReclaimedAtHide(){
+		return reclaimedAtHide;
+	}
+
+	/**
+	 * @return Objects out right now.
+	 */
+	public int getOut(){
+		return out;
+	}
+
+	/**
+	 * @return The most objects that were out at once.
+	 */
+	public int getPeakOut(){
+		return peakOut;
+	}
+
+	@Override
+	public String toString() {
+		return screen.ref + ": obtained " + obtained + ", created " + created + ", freed " + freed + ", reclaimed " + reclaimed
+				+ " (" + reclaimedAtHide + " at hide), out " + out + ", peak " + peakOut;
+	}
+
+	private final class TypePool extends ReflectionPool<Object>{
+		final Class<Object> type;
+		int out; //objects of the type out right now
+
+		TypePool(Class<Object> type){
+			super(type);
+			this.type = type;
+		}
+
+		@Override
+		protected Object newObject() {
+			created ++;
+			return super.newObject();
+		}
+	}
+}
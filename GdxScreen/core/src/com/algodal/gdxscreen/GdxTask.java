@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A piece of background work started by a screen with GdxScreen.runTask.  The work runs on
+ * the shared executor of GdxTasks and its result is handed to the callback on the render
+ * thread.  A task is cancelled by itself when its screen is hidden or disposed, and the
+ * callback of a cancelled task is never called, so a result can not reach a screen that is
+ * no longer showing.
+ *
+ * @param <T> type of the result.
+ */
+public final class GdxTask<T> implements Runnable{
+	static final int QUEUED = 0, RUNNING = 1, DONE = 2, CANCELLED = 3, DELIVERED = 4;
+
+	private final GdxTasks tasks;
+	final GdxScreen screen;
+	private final Work<T> work;
+	private final Callback<T> callback;
+	private final AtomicInteger state;
+	private volatile Future<?> future;
+	private T result;
+	private Throwable error;
+
+	GdxTask(GdxTasks tasks, GdxScreen screen, Work<T> work, Callback<T> callback){
+		this.tasks = tasks;
+		this.screen = screen;
+		this.work = work;
+		this.callback = callback;
+		state = new AtomicInteger(QUEUED);
+	}
+
+	final void setFuture(Future<?> future){
+		this.future = future;
+		if(state.get() == CANCELLED) future.cancel(true); //cancelled before it was submitted
+	}
+
+	@Override
+	public final void run() {
+		if(!state.compareAndSet(QUEUED, RUNNING)) return; //cancelled while queued
+		tasks.started();
+		try{
+			result = work.run();
+		}catch(Throwable t){
+			error = t;
+		}
+		if(state.compareAndSet(RUNNING, DONE)){
+			tasks.finished(this);
+		}else{
+			result = null; //cancelled while running, nobody will read it
+			error = null;
+		}
+	}
+
+	/**
+	 * Called on the render thread once the work is done.
+	 */
+	final void deliver(){
+		if(!state.compareAndSet(DONE, DELIVERED)) return; //cancelled after the work was done
+		screen.tasks.removeValue(this, true);
+		if(error == null) callback.done(result);
+		else callback.failed(error);
+		result = null;
+		error = null;
+	}
+
+	/**
+	 * Cancels the task.  Work that is already running is interrupted, and a result that has not
+	 * been delivered yet is thrown away.  Call it from the render thread.
+	 * @return false if the result was already delivered or the task was already cancelled.
+	 */
+	public final boolean cancel(){
+		int was = state.get();
+		while(was == QUEUED || was == RUNNING || was == DONE){
+			if(state.compareAndSet(was, CANCELLED)){
+				Future<?> future = this.future;
+				if(future != null && was != DONE) future.cancel(true);
+				tasks.cancelled(was);
+				screen.tasks.removeValue(this, true);
+				return true;
+			}
+			was = state.get();
+		}
+		return false;
+	}
+
+	public final boolean isCancelled(){
+		return state.get() == CANCELLED;
+	}
+
+	/**
+	 * @return true once the work has finished, even if its result was not delivered yet.
+	 */
+	public final boolean isDone(){
+		int now = state.get();
+		return now == DONE || now == DELIVERED;
+	}
+
+	public static interface Work<T>{
+		/**
+		 * Runs on a background thread.  Check Thread.interrupted() in long loops: a cancelled
+		 * task is interrupted.
+		 */
+		T run() throws Exception;
+	}
+
+	public static interface Callback<T>{
+		/**
+		 * Called on the render thread with the result of the work.
+		 */
+		void done(T result);
+
+		/**
+		 * Called on the render thread with what the work threw.
+		 */
+		void failed(Throwable error);
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GdxTasks runs the background work of the screens of a game (see GdxScreen.runTask) and
+ * hands the results back on the render thread at the start of each frame.  Every game
+ * shares one executor: virtual threads when the JVM has them (Java 21 and later), otherwise
+ * a fixed pool of daemon threads, one per core.
+ */
+public final class GdxTasks {
+	private static ExecutorService executor;
+	private static boolean virtual;
+
+	private final ConcurrentLinkedQueue<GdxTask<?>> finished;
+	private final AtomicInteger queued, running;
+	private final AtomicLong submitted, completed, cancelled;
+
+	GdxTasks(){
+		finished = new ConcurrentLinkedQueue<>();
+		queued = new AtomicInteger();
+		running = new AtomicInteger();
+		submitted = new AtomicLong();
+		completed = new AtomicLong();
+		cancelled = new AtomicLong();
+	}
+
+	private static synchronized ExecutorService executor(){
+		if(executor != null) return executor;
+		executor = virtualExecutor("newVirtualThreadPerTaskExecutor");
+		virtual = executor != null;
+		if(!virtual) executor = platformExecutor();
+		return executor;
+	}
+
+	/**
+	 * Looked up by reflection so the library still runs on Java 8 and Android.
+	 * @param factory name of the method of Executors that creates the executor.
+	 * @return the executor, or null if this JVM has no such method.
+	 */
+	static ExecutorService virtualExecutor(String factory){
+		try{
+			return (ExecutorService)Executors.class.getMethod(factory).invoke(null);
+		}catch(Exception e){
+			return null;
+		}
+	}
+
+	/**
+	 * @return a fixed pool of daemon threads, one per core and at least two.
+	 */
+	static ExecutorService platformExecutor(){
+		final AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GdxTasks " + count.incrementAndGet());
+				thread.setDaemon(true); //never keep the application alive
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return true if the tasks run on virtual threads.
+	 */
+	public static boolean isVirtual(){
+		executor();
+		return virtual;
+	}
+
+	<T> GdxTask<T> submit(GdxScreen screen, GdxTask.Work<T> work, GdxTask.Callback<T> callback){
+		GdxTask<T> task = new GdxTask<>(this, screen, work, callback);
+		screen.tasks.add(task);
+		queued.incrementAndGet();
+		submitted.incrementAndGet();
+		task.setFuture(executor().submit(task));
+		return task;
+	}
+
+	/**
+	 * Hands the results that arrived since the last call to their callbacks.  Render thread only.
+	 */
+	void deliver(){
+		GdxTask<?> task;
+		while((task = finished.poll()) != null) task.deliver();
+	}
+
+	void started(){
+		queued.decrementAndGet();
+		running.incrementAndGet();
+	}
+
+	void finished(GdxTask<?> task){
+		running.decrementAndGet();
+		completed.incrementAndGet();
+		finished.add(task);
+	}
+
+	void cancelled(int was){
+		if(was == GdxTask.RUNNING) running.decrementAndGet();
+		else if(was == GdxTask.QUEUED) queued.decrementAndGet();
+		cancelled.incrementAndGet();
+	}
+
+	/**
+	 * @return tasks waiting for a thread.
+	 */
+	public int getQueued(){
+		return queued.get();
+	}
+
+	/**
+	 * @return tasks whose work is running right now.
+	 */
+	public int getRunning(){
+		return running.get();
+	}
+
+	public long getSubmitted(){
+		return submitted.get();
+	}
+
+	/**
+	 * @return tasks whose work finished, whether it returned or threw.
+	 */
+	public long getCompleted(){
+		return completed.get();
+	}
+
+	public long getCancelled(){
+		return cancelled.get();
+	}
+}
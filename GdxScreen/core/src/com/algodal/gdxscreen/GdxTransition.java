@@ -15,7 +15,7 @@
  ******************************************************************************/
 package com.algodal.gdxscreen;
 
-import com.badlogic.gdx.utils.Array;
+import com.algodal.gdxscreen.utils.GdxTrace;
 
 /**
  * The transition screen delivers the new screen and removes the old screen.
@@ -37,12 +37,18 @@ public class GdxTransition extends GdxScreen{
 	public final void removeOldScreen(){
 		getGame().debug.assertEqual("this method is called inside the render method", getGame().currentState, GdxGame.State.Rendering);
 		if(!transfered){
-			if(oldScreen.showed) oldScreen.hide();
-			oldScreen.showed = false;
-			if(oldScreen.loaded) unloadAssets(new GdxScreen[]{this, newScreen}, new GdxScreen[]{oldScreen});
-			oldScreen.loaded = false;
-			showing = newScreen;
-			transfered = true;
+			GdxTrace.begin("GdxTransition.removeOldScreen");
+			try{
+				if(oldScreen.showed) oldScreen.hide();
+				oldScreen.hidden();
+				oldScreen.showed = false;
+				if(oldScreen.loaded) unloadAssets(this, newScreen, oldScreen, null);
+				oldScreen.loaded = false;
+				showing = newScreen;
+				transfered = true;
+			}finally{
+				GdxTrace.end();
+			}
 			//getGame().debug.report("removeOldScreen", oldScreen.getClass().toString());
 		}
 	}
@@ -54,12 +60,18 @@ public class GdxTransition extends GdxScreen{
 	public final void deliverNewScreen(){
 		getGame().debug.assertEqual("this method is called inside the render method", getGame().currentState, GdxGame.State.Rendering);
 		removeOldScreen();
-		if(showed) hide();
-		showed = false;
-		if(loaded) unloadAssets(new GdxScreen[]{newScreen}, new GdxScreen[]{this});
-		loaded = false;
-		getGame().setScreen(newScreen);
-		transfered = false; //reset transfered
+		GdxTrace.begin("GdxTransition.deliverNewScreen");
+		try{
+			if(showed) hide();
+			hidden();
+			showed = false;
+			if(loaded) unloadAssets(newScreen, null, this, null);
+			loaded = false;
+			getGame().setScreen(newScreen);
+			transfered = false; //reset transfered
+		}finally{
+			GdxTrace.end();
+		}
 		//getGame().debug.report("deliverNewScreen", newScreen.getClass().toString());
 	}
 	
@@ -94,16 +106,27 @@ public class GdxTransition extends GdxScreen{
 		return newScreen.assetProgress();
 	}
 	
-	final void unloadAssets(GdxScreen[] visible, GdxScreen[] hidden){
-		Array<String> visibleAssets = new Array<>();
-		Array<String> hiddenAssets = new Array<>();
-		
-		for(GdxScreen screen : visible) visibleAssets.addAll(screen.assetRefs);
-		for(GdxScreen screen : hidden) hiddenAssets.addAll(screen.assetRefs);
-		
-		for(String assetRef : hiddenAssets)
-			if(!visibleAssets.contains(assetRef, false)) 
-				if(getGame().assetMap.get(assetRef).isloaded())
-					getGame().assetMap.get(assetRef).unload(); 
+	/**
+	 * Unloads the assets of the hidden screens that no visible screen uses.  Takes the screens
+	 * one by one, null for none, so a screen switch allocates nothing.
+	 */
+	final void unloadAssets(GdxScreen visible, GdxScreen alsoVisible, GdxScreen hidden, GdxScreen alsoHidden){
+		int previous = getGame().beginNestedPhase(GdxAllocations.UNLOAD); //runs inside removeOldScreen and deliverNewScreen
+		try{
+			unloadAssetsOf(hidden, visible, alsoVisible);
+			if(alsoHidden != null) unloadAssetsOf(alsoHidden, visible, alsoVisible);
+		}finally{
+			getGame().endNestedPhase(previous);
+		}
+	}
+	
+	private void unloadAssetsOf(GdxScreen hidden, GdxScreen visible, GdxScreen alsoVisible){
+		for(int i = 0; i < hidden.assetRefs.size; i ++){
+			String assetRef = hidden.assetRefs.get(i);
+			if(visible.assetRefs.contains(assetRef, false)) continue;
+			if(alsoVisible != null && alsoVisible.assetRefs.contains(assetRef, false)) continue;
+			GdxAsset<?> asset = getGame().assetMap.get(assetRef);
+			if(asset.isloaded()) asset.unload();
+		}
 	}
 }
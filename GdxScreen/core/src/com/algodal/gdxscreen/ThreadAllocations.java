@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the allocated-bytes counter HotSpot keeps for each thread.  Kept apart from
+ * GdxAllocations so that platforms without com.sun.management, such as Android, only fail
+ * when profiling is turned on, not when the game loads.
+ */
+final class ThreadAllocations {
+	private final com.sun.management.ThreadMXBean bean;
+
+	/**
+	 * @throws Throwable if the JVM does not count allocated bytes.
+	 */
+	ThreadAllocations() throws Throwable{
+		bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!bean.isThreadAllocatedMemorySupported()) throw new UnsupportedOperationException("thread allocated memory");
+		if(!bean.isThreadAllocatedMemoryEnabled()) bean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * @return bytes the thread has allocated since it started.
+	 */
+	long read(long threadId){
+		return bean.getThreadAllocatedBytes(threadId);
+	}
+}
@@ -0,0 +1,160 @@
+package com.algodal.gdxscreen.entity;
+
+import com.algodal.gdxscreen.entity.GdxEntity.Entropy;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.Animation.PlayMode;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * GdxAnimationClock steps a crowd of entities that play the same animation.  Instead of one
+ * time per entropy, the crowd shares one clock and each member only keeps an offset in
+ * frames, so the crowd does not move in lockstep.  advance(delta) works out the key frame
+ * of every member at once and writes the indices into an int array the renderer reads.
+ *
+ * For the looping play modes the key frame is computed once per advance and each member
+ * only adds its offset.  The other play modes are computed for each member.  The clock
+ * does not play sounds; entropies with a sound keep using Entropy.nextFrame.
+ */
+public class GdxAnimationClock {
+	private final Animation animation;
+	private final TextureRegion[] keyFrames;
+	private float time;
+	private int[] offsets;
+	private int[] frames;
+	private int size;
+
+	public GdxAnimationClock(Animation animation, int capacity){
+		GdxEntity.debug.assertNotNull("animation", animation);
+		this.animation = animation;
+		keyFrames = animation.getKeyFrames();
+		offsets = new int[capacity];
+		frames = new int[capacity];
+	}
+
+	/**
+	 * @param entropy the entropy whose animation the crowd plays.
+	 */
+	public GdxAnimationClock(Entropy entropy, int capacity){
+		this(entropy.getAnimation(), capacity);
+	}
+
+	/**
+	 * Adds a member to the crowd.
+	 * @param offset how many frames the member is ahead of the shared clock.
+	 * @return index of the member.
+	 */
+	public final int add(int offset){
+		if(size == offsets.length){
+			int capacity = Math.max(8, size * 2);
+			int[] bigger = new int[capacity];
+			System.arraycopy(offsets, 0, bigger, 0, size);
+			offsets = bigger;
+			bigger = new int[capacity];
+			System.arraycopy(frames, 0, bigger, 0, size);
+			frames = bigger;
+		}
+		int i = size ++;
+		offsets[i] = offset;
+		frames[i] = frameOf(offset);
+		return i;
+	}
+
+	/**
+	 * Removes a member.  The last member takes its index, like GdxEntityWorld.remove.
+	 */
+	public final void remove(int index){
+		GdxEntity.debug.assertTrue("member index is in the clock", index >= 0 && index < size);
+		int last = -- size;
+		offsets[index] = offsets[last];
+		frames[index] = frames[last];
+	}
+
+	public final void clear(){
+		size = 0;
+	}
+
+	public final int size(){
+		return size;
+	}
+
+	public final void setOffset(int index, int offset){
+		offsets[index] = offset;
+		frames[index] = frameOf(offset);
+	}
+
+	public final int getOffset(int index){
+		return offsets[index];
+	}
+
+	/**
+	 * Moves the shared clock forward and updates the key frame index of every member.
+	 * @param delta time since the last frame.
+	 */
+	public final void advance(float delta){
+		time += delta;
+		PlayMode mode = animation.getPlayMode();
+		if(mode == PlayMode.LOOP || mode == PlayMode.LOOP_REVERSED){
+			float duration = animation.getAnimationDuration();
+			if(duration > 0.0f && time >= duration) time %= duration; //keeps the float precise in long sessions
+		}
+		int n = keyFrames.length;
+		if(n == 1){
+			for(int i = 0; i < size; i ++) frames[i] = 0;
+		}else if(mode == PlayMode.LOOP){
+			int base = animation.getKeyFrameIndex(time);
+			for(int i = 0; i < size; i ++){
+				int frame = (base + offsets[i]) % n;
+				frames[i] = frame < 0 ? frame + n : frame;
+			}
+		}else if(mode == PlayMode.LOOP_REVERSED){
+			int base = animation.getKeyFrameIndex(time);
+			for(int i = 0; i < size; i ++){
+				int frame = (base - offsets[i]) % n;
+				frames[i] = frame < 0 ? frame + n : frame;
+			}
+		}else{
+			for(int i = 0; i < size; i ++) frames[i] = frameOf(offsets[i]);
+		}
+	}
+
+	private int frameOf(int offset){
+		return animation.getKeyFrameIndex(Math.max(0.0f, time + offset * animation.getFrameDuration()));
+	}
+
+	/**
+	 * Starts the shared clock over.
+	 */
+	public final void restart(){
+		time = 0.0f;
+		for(int i = 0; i < size; i ++) frames[i] = frameOf(offsets[i]);
+	}
+
+	public final float getTime(){
+		return time;
+	}
+
+	/**
+	 * @return key frame index of a member, as of the last advance.
+	 */
+	public final int getFrameIndex(int index){
+		return frames[index];
+	}
+
+	/**
+	 * @return the key frame to draw for a member.
+	 */
+	public final TextureRegion getFrame(int index){
+		return keyFrames[frames[index]];
+	}
+
+	/**
+	 * The raw arrays are for tight loops over the first size() entries.  Do not keep them:
+	 * adding members may replace them with bigger arrays.
+	 */
+	public final int[] getFrameIndices(){ return frames; }
+	public final TextureRegion[] getKeyFrames(){ return keyFrames; }
+
+	public final Animation getAnimation(){
+		return animation;
+	}
+}
@@ -0,0 +1,193 @@
+package com.algodal.gdxscreen.entity;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * GdxDrawQueue collects what the entities want to draw during a frame and draws it sorted
+ * by layer first and texture second, so a batch only has to flush when the texture really
+ * changes instead of whenever two neighbouring entities use different textures.  Within the
+ * same layer and texture the regions are drawn in the order they were added.
+ *
+ * The sort is a radix sort over reused arrays, so a frame allocates nothing once the queue
+ * has grown to the number of regions drawn per frame.  Textures are numbered in the order
+ * they first show up in a frame and forgotten once it is drawn, so the queue keeps no
+ * texture reachable between frames.
+ */
+public class GdxDrawQueue {
+	public static final int MIN_LAYER = -32768, MAX_LAYER = 32767;
+	private static final int MAX_TEXTURES = 65536;
+
+	private TextureRegion[] regions;
+	private float[] x, y, width, height;
+	private int[] keys, order, sorted;
+	private final int[] counts;
+	private int size;
+	private final ObjectIntMap<Texture> textureIds; //textures of the frame being queued
+	private int lastDrawn, lastSwitches;
+	private long totalSwitches;
+
+	public GdxDrawQueue(int capacity){
+		capacity = Math.max(1, capacity);
+		regions = new TextureRegion[capacity];
+		x = new float[capacity];
+		y = new float[capacity];
+		width = new float[capacity];
+		height = new float[capacity];
+		keys = new int[capacity];
+		order = new int[capacity];
+		sorted = new int[capacity];
+		counts = new int[256];
+		textureIds = new ObjectIntMap<>();
+	}
+
+	public GdxDrawQueue(){
+		this(256);
+	}
+
+	/**
+	 * Queues a region.
+	 * @param layer lower layers are drawn first, from MIN_LAYER to MAX_LAYER.
+	 */
+	public final GdxDrawQueue add(TextureRegion region, float x, float y, float width, float height, int layer){
+		if(size == regions.length) grow(size * 2);
+		int i = size ++;
+		regions[i] = region;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.width[i] = width;
+		this.height[i] = height;
+		int l = layer < MIN_LAYER ? MIN_LAYER : layer > MAX_LAYER ? MAX_LAYER : layer;
+		keys[i] = ((l - MIN_LAYER) << 16) | textureId(region.getTexture());
+		return this;
+	}
+
+	/**
+	 * Queues the next frame of the current entropy of an entity at its position and size.
+	 * @param delta time since the last frame, passed on to GdxEntity.nextFrame.
+	 */
+	public final GdxDrawQueue add(GdxEntity entity, float delta, int layer){
+		TextureRegion frame = entity.nextFrame(delta);
+		return add(frame, entity.getPosition().getX(), entity.getPosition().getY(), entity.getSize().getWidth(), entity.getSize().getHeight(), layer);
+	}
+
+	/**
+	 * Sorts and draws everything queued, then empties the queue.
+	 * @param batch a batch between begin() and end().
+	 * @return the number of texture switches, which is the number of flushes the sort could not avoid.
+	 */
+	public final int draw(Batch batch){
+		sort();
+		int switches = 0;
+		Texture previous = null;
+		for(int k = 0; k < size; k ++){
+			int i = order[k];
+			Texture texture = regions[i].getTexture();
+			if(texture != previous){
+				if(previous != null) switches ++;
+				previous = texture;
+			}
+			batch.draw(regions[i], x[i], y[i], width[i], height[i]);
+			regions[i] = null;
+		}
+		lastDrawn = size;
+		lastSwitches = switches;
+		totalSwitches += switches;
+		size = 0;
+		textureIds.clear();
+		return switches;
+	}
+
+	/**
+	 * Empties the queue without drawing.
+	 */
+	public final void clear(){
+		for(int i = 0; i < size; i ++) regions[i] = null;
+		size = 0;
+		textureIds.clear();
+	}
+
+	public final int size(){
+		return size;
+	}
+
+	/**
+	 * @return regions drawn by the last draw.
+	 */
+	public final int getLastDrawn(){
+		return lastDrawn;
+	}
+
+	/**
+	 * @return texture switches of the last draw.
+	 */
+	public final int getLastTextureSwitches(){
+		return lastSwitches;
+	}
+
+	public final long getTotalTextureSwitches(){
+		return totalSwitches;
+	}
+
+	private int textureId(Texture texture){
+		int id = textureIds.get(texture, -1);
+		if(id != -1) return id;
+		if(textureIds.size == MAX_TEXTURES - 1) return MAX_TEXTURES - 1; //the rest of such a frame shares the last id; ids already given stay valid
+		id = textureIds.size;
+		textureIds.put(texture, id);
+		return id;
+	}
+
+	/**
+	 * Stable least significant digit radix sort of the indices by key, one byte per pass.
+	 * A pass is skipped when every key has the same byte there.
+	 */
+	private void sort(){
+		for(int i = 0; i < size; i ++) order[i] = i;
+		for(int shift = 0; shift < 32; shift += 8){
+			for(int d = 0; d < 256; d ++) counts[d] = 0;
+			for(int i = 0; i < size; i ++) counts[(keys[i] >>> shift) & 0xff] ++;
+			if(counts[(keys[0] >>> shift) & 0xff] == size) continue; //nothing to reorder on this byte
+			int total = 0;
+			for(int d = 0; d < 256; d ++){
+				int count = counts[d];
+				counts[d] = total;
+				total += count;
+			}
+			for(int k = 0; k < size; k ++){
+				int i = order[k];
+				sorted[counts[(keys[i] >>> shift) & 0xff] ++] = i;
+			}
+			int[] swap = order;
+			order = sorted;
+			sorted = swap;
+		}
+	}
+
+	private void grow(int capacity){
+		TextureRegion[] biggerRegions = new TextureRegion[capacity];
+		System.arraycopy(regions, 0, biggerRegions, 0, size);
+		regions = biggerRegions;
+		x = copy(x, capacity);
+		y = copy(y, capacity);
+		width = copy(width, capacity);
+		height = copy(height, capacity);
+		keys = copy(keys, capacity);
+		order = new int[capacity];
+		sorted = new int[capacity];
+	}
+
+	private float[] copy(float[] array, int capacity){
+		float[] bigger = new float[capacity];
+		System.arraycopy(array, 0, bigger, 0, size);
+		return bigger;
+	}
+
+	private int[] copy(int[] array, int capacity){
+		int[] bigger = new int[capacity];
+		System.arraycopy(array, 0, bigger, 0, size);
+		return bigger;
+	}
+}
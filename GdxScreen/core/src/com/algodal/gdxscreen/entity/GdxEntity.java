@@ -8,6 +8,7 @@ import com.badlogic.gdx.graphics.g2d.Animation.PlayMode;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.utils.ArrayMap;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntIntMap;
 
 /**
  * GdxEntity is a 2d game object that can be anything as long as
@@ -15,17 +16,59 @@ import com.badlogic.gdx.utils.GdxRuntimeException;
  * and a input processor.
  */
 public class GdxEntity {
-	private InputProcessor inputProccessor;
+	InputProcessor inputProccessor;
 	public final ArrayMap<String, Entropy> entropyMap;
-	private Entropy nowEntropy;
+	Entropy nowEntropy;
+	int nowIndex = -1; //index of nowEntropy in the entropy map
+	private IntIntMap stateIndices; //ordinal of a state to the index of its entropy, see putEntropy(Enum, Entropy)
 	public static GdxDebug debug = new GdxDebug();//better than creating one for each instance
+	public static GdxSoundScheduler sounds = new GdxSoundScheduler();//every entropy plays its sound through it
 	private final Position position;
 	private final Size size;
 	
+	GdxEntityGrid grid; //spatial index the entity is in, if any
+	int cellMinX, cellMinY, cellMaxX, cellMaxY; //cells it occupies in that index
+	int queryStamp; //last grid query that reported it
+	boolean boundsDirty; //bounds changed while the grid was deferred
+	private boolean holdBounds; //setPosition and setSize report both values as one change
+	long gridOrder; //when it was added to that index, later is on top
+	private int inputPriority;
+	GdxEntityInput input; //input that focused or captured it, if any
+	GdxEntityPool<?> pool; //pool the entity came from, if any
+	boolean free; //waiting in that pool
+	
 	public GdxEntity(){
-		entropyMap = new ArrayMap<>();
-		position = new Position();
-		size = new Size();
+		this(new ArrayMap<String, Entropy>(), new Position(), new Size());
+	}
+	
+	/**
+	 * For entities whose state lives somewhere else, like the views of a GdxEntityWorld.
+	 * @param entropyMap the entropies of the entity, may be shared with other entities.
+	 * @param position the position of the entity.
+	 * @param size the size of the entity.
+	 */
+	protected GdxEntity(ArrayMap<String, Entropy> entropyMap, Position position, Size size){
+		this.entropyMap = entropyMap;
+		this.position = position;
+		this.size = size;
+		position.owner = this;
+		size.owner = this;
+	}
+	
+	/**
+	 * Called after the position or size changed.
+	 */
+	final void boundsChanged(){
+		if(grid == null || holdBounds) return;
+		if(grid.deferred) boundsDirty = true; //GdxEntityUpdater puts it in its cells later
+		else grid.update(this);
+	}
+	
+	/**
+	 * @return The spatial index the entity was added to, or null.
+	 */
+	public final GdxEntityGrid getGrid(){
+		return grid;
 	}
 	
 	public Position getPosition() {
@@ -37,14 +80,20 @@ public class GdxEntity {
 	}
 	
 	public final GdxEntity setPosition(float x, float y){
+		holdBounds = true;
 		position.setX(x);
 		position.setY(y);
+		holdBounds = false;
+		boundsChanged();
 		return this;
 	}
 	
 	public final GdxEntity setSize(float width, float height){
+		holdBounds = true;
 		size.setWidth(width);
 		size.setHeight(height);
+		holdBounds = false;
+		boundsChanged();
 		return this;
 	}
 	
@@ -57,21 +106,170 @@ public class GdxEntity {
 		this.inputProccessor = inputProccessor;
 	}
 
+	/**
+	 * Among the entities under a pointer, GdxEntityInput offers an event to the one with the
+	 * higher priority first, and for equal priorities to the one added to the grid last.
+	 * @param priority 0 by default.
+	 */
+	public final GdxEntity setInputPriority(int priority){
+		inputPriority = priority;
+		return this;
+	}
+	
+	public final int getInputPriority(){
+		return inputPriority;
+	}
+
+	/**
+	 * Convenience for setEntropy(indexOfEntropy(entropyRef)).  Looks the reference up on every
+	 * call; entities that switch state often should resolve the index once and keep it.
+	 */
 	public final GdxEntity setEntropy(String entropyRef){
-		debug.assertTrue("found entropy by reference", entropyMap.containsKey(entropyRef));
-		nowEntropy = entropyMap.get(entropyRef);
+		int index = indexOfEntropy(entropyRef);
+		if(index != -1) return setEntropy(index);
+		nowEntropy = null;
+		nowIndex = -1;
+		entropyChanged(-1);
 		return this;
 	}
 	
+	/**
+	 * Makes an entropy current without a lookup.
+	 * @param index index of the entropy, from indexOfEntropy or the order it was put in.
+	 */
+	public final GdxEntity setEntropy(int index){
+		debug.assertTrue("entropy index is in the entropy map", index >= 0 && index < entropyMap.size);
+		nowEntropy = entropyMap.getValueAt(index);
+		nowIndex = index;
+		entropyChanged(index);
+		return this;
+	}
+	
+	/**
+	 * Makes the entropy of a state current.  The entropy must have been put with putEntropy(Enum, Entropy).
+	 */
+	public final GdxEntity setEntropy(Enum<?> state){
+		int index = stateIndices == null ? -1 : stateIndices.get(state.ordinal(), -1);
+		if(index == -1) throw new GdxRuntimeException("No entropy put for state " + state.name() + "!");
+		return setEntropy(index);
+	}
+	
+	/**
+	 * @param entropyRef reference of an entropy of this entity.
+	 * @return its index, valid until an entropy is removed from the map.
+	 */
+	public final int indexOfEntropy(String entropyRef){
+		int index = entropyMap.indexOfKey(entropyRef);
+		debug.assertTrue("found entropy by reference", index != -1);
+		return index;
+	}
+	
+	/**
+	 * @return index of the current entropy, or -1 if there is none.
+	 */
+	public final int getEntropyIndex(){
+		return nowIndex;
+	}
+	
+	/**
+	 * Called after the current entropy changed.
+	 * @param index index of the new entropy in the entropy map.
+	 */
+	void entropyChanged(int index){}
+	
+	/**
+	 * The entropy may be shared with other entities, for example by the views of a
+	 * GdxEntityWorld; animate the entity with nextFrame(delta) of the entity then.
+	 */
 	public final Entropy getEntropy(){
 		debug.assertTrue("entropy is not null", nowEntropy != null);
 		return nowEntropy;
 	}
 	
+	/**
+	 * Advances the animation of the current entropy, playing its sound when it starts.
+	 * @param delta time since the last frame.
+	 * @return the frame to draw.
+	 */
+	public final TextureRegion nextFrame(float delta){
+		return advance(delta);
+	}
+	
+	/**
+	 * Called by nextFrame.  Entities whose animation time lives somewhere else override it.
+	 */
+	TextureRegion advance(float delta){
+		return getEntropy().nextFrame(delta);
+	}
+	
+	/**
+	 * The frame nextFrame would return, without advancing the animation or playing a sound.
+	 * Used by GdxEntityUpdater.Commands.nextFrame; overridden along with advance.
+	 */
+	TextureRegion frame(){
+		return getEntropy().frame();
+	}
+	
 	public final GdxEntity putEntropy(String entropyRef, Entropy entropy){
 		entropyMap.put(entropyRef, entropy);
 		return this;
 	}
+	
+	/**
+	 * Puts the entropy of a state under the name of the state, and remembers its index so that
+	 * setEntropy(state) needs no lookup by name.  Use states of one enum per entity.
+	 */
+	public final GdxEntity putEntropy(Enum<?> state, Entropy entropy){
+		entropyMap.put(state.name(), entropy);
+		if(stateIndices == null) stateIndices = new IntIntMap();
+		stateIndices.put(state.ordinal(), entropyMap.indexOfKey(state.name()));
+		return this;
+	}
+	
+	/**
+	 * Puts the entity back in the state a pool hands it out in: at the origin with no size,
+	 * the first entropy current, every animation at its start and no longer focused or
+	 * capturing a pointer.  The entropies, the input processor and its priority and the
+	 * objects themselves are kept, so reuse allocates nothing.  Called by
+	 * GdxEntityPool when the entity is freed; override onReset to reset your own fields too.
+	 * Not public, so subclasses stay free to have a reset of their own.
+	 */
+	final void recycle(){
+		if(grid != null) grid.remove(this);
+		if(input != null) input.forget(this);
+		position.setX(0.0f);
+		position.setY(0.0f);
+		size.setWidth(0.0f);
+		size.setHeight(0.0f);
+		restartAnimations();
+		nowIndex = entropyMap.size == 0 ? -1 : 0;
+		nowEntropy = nowIndex == -1 ? null : entropyMap.getValueAt(0);
+		entropyChanged(nowIndex);
+		onReset();
+	}
+	
+	/**
+	 * Called when a GdxEntityPool takes the entity back, once the entity itself is reset.  Reset the fields of your
+	 * subclass here.
+	 */
+	protected void onReset(){}
+	
+	/**
+	 * Called by recycle.  Entities that share their entropies keep their animation time elsewhere
+	 * and override it, so one of them does not restart the animations of all the others.
+	 */
+	void restartAnimations(){
+		for(int i = 0; i < entropyMap.size; i ++) entropyMap.getValueAt(i).reset();
+	}
+	
+	/**
+	 * Gives the entity back to the pool it was obtained from.  Do not use it afterwards.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public final void release(){
+		debug.assertNotNull("entity came from a pool", pool);
+		((GdxEntityPool)pool).free(this);
+	}
 
 	public static class Entropy{
 		private Animation animation;
@@ -84,6 +282,15 @@ public class GdxEntity {
 			time = 0.0f;
 		}
 		
+		/**
+		 * Restarts the animation.
+		 * @return this entropy
+		 */
+		public final Entropy reset(){
+			time = 0.0f;
+			return this;
+		}
+		
 		private final boolean animating(){
 			if(animation == null) return false;
 			return true;
@@ -104,12 +311,26 @@ public class GdxEntity {
 			return nextFrame(delta, animation.getAnimationDuration());
 		}
 		
+		final Animation getAnimation(){
+			return animation;
+		}
+		
+		final Sound getSound(){
+			return sound;
+		}
+		
+		final TextureRegion frame(){
+			TextureRegion frame = animating() ? animation.getKeyFrame(time) : null;
+			if(frame == null) throw new GdxRuntimeException("No frame found!");
+			return frame;
+		}
+		
 		public final TextureRegion nextFrame(float delta, float soundLimit){
 			TextureRegion frame = null;
 			
 			if(animating()){
 				frame = animation.getKeyFrame(time);
-				if(sounding()) if(time == 0.0f) sound.play();
+				if(sounding()) if(time == 0.0f) sounds.play(sound);
 				time += delta;
 				if(time >= soundLimit) time = 0.0f;
 			}
@@ -121,6 +342,7 @@ public class GdxEntity {
 	
 	public static class Position{
 		private float x, y;
+		GdxEntity owner;
 
 		public float getX() {
 			return x;
@@ -128,6 +350,7 @@ public class GdxEntity {
 
 		public void setX(float x) {
 			this.x = x;
+			changed();
 		}
 
 		public float getY() {
@@ -136,19 +359,30 @@ public class GdxEntity {
 
 		public void setY(float y) {
 			this.y = y;
+			changed();
 		}
 		
 		public void addX(float dx){
 			x += dx;
+			changed();
 		}
 		
 		public void addY(float dy){
 			y += dy;
+			changed();
+		}
+		
+		/**
+		 * Subclasses that store the values elsewhere call this after every change.
+		 */
+		protected final void changed(){
+			if(owner != null) owner.boundsChanged();
 		}
 	}
 	
 	public static class Size{
 		private float width, height;
+		GdxEntity owner;
 
 		public float getWidth() {
 			return width;
@@ -156,6 +390,7 @@ public class GdxEntity {
 
 		public void setWidth(float width) {
 			this.width = width;
+			changed();
 		}
 
 		public float getHeight() {
@@ -164,14 +399,24 @@ public class GdxEntity {
 
 		public void setHeight(float height) {
 			this.height = height;
+			changed();
 		}
 		
 		public void addWidth(float displace){
 			width += displace;
+			changed();
 		}
 		
 		public void addHeight(float displace){
 			height += displace;
+			changed();
+		}
+		
+		/**
+		 * Subclasses that store the values elsewhere call this after every change.
+		 */
+		protected final void changed(){
+			if(owner != null) owner.boundsChanged();
 		}
 	}
 }
@@ -0,0 +1,161 @@
+package com.algodal.gdxscreen.entity;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * GdxEntityGrid is a uniform grid over a rectangular area that keeps track of which
+ * entities overlap which cells.  Entities added to the grid update their cells by
+ * themselves whenever their position or size changes, so culling and hit-testing only
+ * look at the entities near the area of interest instead of all of them.  Entities
+ * outside the area are kept in the border cells, so they are still found, just slower.
+ *
+ * Queries write into an array you supply and do not allocate, as long as the array is
+ * big enough.
+ */
+public class GdxEntityGrid {
+	private final float originX, originY, cellSize;
+	private final int columns, rows;
+	private final Array<GdxEntity>[] cells;
+	private int stamp;
+	private int count;
+	private long added; //entities added so far, their order is kept in GdxEntity.gridOrder
+	boolean deferred; //set by GdxEntityUpdater while entities move on several threads
+
+	/**
+	 * @param x left of the area covered by the grid.
+	 * @param y bottom of the area covered by the grid.
+	 * @param width width of the area.
+	 * @param height height of the area.
+	 * @param cellSize width and height of one cell.  About the size of a typical entity works well.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public GdxEntityGrid(float x, float y, float width, float height, float cellSize){
+		GdxEntity.debug.assertTrue("grid cell size is positive", cellSize > 0.0f);
+		originX = x;
+		originY = y;
+		this.cellSize = cellSize;
+		columns = Math.max(1, (int)Math.ceil(width / cellSize));
+		rows = Math.max(1, (int)Math.ceil(height / cellSize));
+		cells = new Array[columns * rows];
+		for(int i = 0; i < cells.length; i ++) cells[i] = new Array<>(false, 4, GdxEntity.class);
+	}
+
+	/**
+	 * Adds an entity to the grid.  An entity can only be in one grid at a time.
+	 */
+	public final void add(GdxEntity entity){
+		GdxEntity.debug.assertTrue("entity is not in a grid", entity.grid == null);
+		entity.grid = this;
+		entity.gridOrder = ++ added;
+		entity.cellMinX = column(entity.getPosition().getX());
+		entity.cellMinY = row(entity.getPosition().getY());
+		entity.cellMaxX = column(entity.getPosition().getX() + entity.getSize().getWidth());
+		entity.cellMaxY = row(entity.getPosition().getY() + entity.getSize().getHeight());
+		insert(entity, entity.cellMinX, entity.cellMinY, entity.cellMaxX, entity.cellMaxY);
+		count ++;
+	}
+
+	public final void remove(GdxEntity entity){
+		if(entity.grid != this) return;
+		erase(entity, entity.cellMinX, entity.cellMinY, entity.cellMaxX, entity.cellMaxY);
+		entity.grid = null;
+		count --;
+	}
+
+	/**
+	 * Moves the entity to the cells its bounds cover now.  Called by the entity itself;
+	 * only call it yourself if you changed the bounds of a subclassed Position or Size
+	 * without calling changed().  For the views of a GdxEntityWorld whose raw arrays you
+	 * wrote, use GdxEntityWorld.boundsChanged instead.
+	 */
+	public final void update(GdxEntity entity){
+		float x = entity.getPosition().getX(), y = entity.getPosition().getY();
+		int minX = column(x), minY = row(y);
+		int maxX = column(x + entity.getSize().getWidth()), maxY = row(y + entity.getSize().getHeight());
+		if(minX == entity.cellMinX && minY == entity.cellMinY && maxX == entity.cellMaxX && maxY == entity.cellMaxY) return; //still in the same cells
+		erase(entity, entity.cellMinX, entity.cellMinY, entity.cellMaxX, entity.cellMaxY);
+		insert(entity, minX, minY, maxX, maxY);
+		entity.cellMinX = minX;
+		entity.cellMinY = minY;
+		entity.cellMaxX = maxX;
+		entity.cellMaxY = maxY;
+	}
+
+	/**
+	 * Finds the entities whose bounds overlap a rectangle, for example the camera's view.
+	 * @param out cleared and then filled with the entities found.
+	 * @return number of entities found.
+	 */
+	public final int queryRect(float x, float y, float width, float height, Array<GdxEntity> out){
+		out.clear();
+		int stamp = ++ this.stamp;
+		int minX = column(x), minY = row(y), maxX = column(x + width), maxY = row(y + height);
+		for(int cy = minY; cy <= maxY; cy ++){
+			for(int cx = minX; cx <= maxX; cx ++){
+				Array<GdxEntity> cell = cells[cy * columns + cx];
+				for(int i = 0; i < cell.size; i ++){
+					GdxEntity entity = cell.items[i];
+					if(entity.queryStamp == stamp) continue; //already seen in another cell
+					entity.queryStamp = stamp;
+					if(overlaps(entity, x, y, width, height)) out.add(entity);
+				}
+			}
+		}
+		return out.size;
+	}
+
+	/**
+	 * Finds the entities whose bounds contain a point, for example a touch.  They are found
+	 * in no particular order.
+	 * @param out cleared and then filled with the entities found.
+	 * @return number of entities found.
+	 */
+	public final int queryPoint(float x, float y, Array<GdxEntity> out){
+		out.clear();
+		Array<GdxEntity> cell = cells[row(y) * columns + column(x)];
+		for(int i = 0; i < cell.size; i ++){
+			GdxEntity entity = cell.items[i];
+			if(contains(entity, x, y)) out.add(entity);
+		}
+		return out.size;
+	}
+
+	/**
+	 * @return number of entities in the grid.
+	 */
+	public final int size(){
+		return count;
+	}
+
+	static boolean contains(GdxEntity entity, float x, float y){
+		float ex = entity.getPosition().getX(), ey = entity.getPosition().getY();
+		return x >= ex && y >= ey && x <= ex + entity.getSize().getWidth() && y <= ey + entity.getSize().getHeight();
+	}
+
+	private static boolean overlaps(GdxEntity entity, float x, float y, float width, float height){
+		float ex = entity.getPosition().getX(), ey = entity.getPosition().getY();
+		return ex <= x + width && ex + entity.getSize().getWidth() >= x && ey <= y + height && ey + entity.getSize().getHeight() >= y;
+	}
+
+	private int column(float x){
+		int c = (int)Math.floor((x - originX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+
+	private int row(float y){
+		int r = (int)Math.floor((y - originY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+
+	private void insert(GdxEntity entity, int minX, int minY, int maxX, int maxY){
+		for(int cy = minY; cy <= maxY; cy ++)
+			for(int cx = minX; cx <= maxX; cx ++)
+				cells[cy * columns + cx].add(entity);
+	}
+
+	private void erase(GdxEntity entity, int minX, int minY, int maxX, int maxY){
+		for(int cy = minY; cy <= maxY; cy ++)
+			for(int cx = minX; cx <= maxX; cx ++)
+				cells[cy * columns + cx].removeValue(entity, true);
+	}
+}
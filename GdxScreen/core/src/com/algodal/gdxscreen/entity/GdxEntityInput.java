@@ -0,0 +1,270 @@
+package com.algodal.gdxscreen.entity;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * GdxEntityInput routes input to the input processors of entities.  Pointer events only
+ * go to the entities of a GdxEntityGrid whose bounds contain the pointer, found with a
+ * grid query instead of asking every entity.  Key events only go to the focused entities.
+ * An event goes to one entity after another until one of them handles it.  Under a pointer
+ * the entities with the higher input priority come first, then the ones added to the grid
+ * last, which are usually drawn on top.
+ *
+ * The entity that handles a touch down receives the drags and the touch up of that
+ * pointer, even when the pointer leaves its bounds.
+ *
+ * The cost of the last event, and the total cost of all events, is kept so the routing
+ * can be watched as the number of entities grows.
+ */
+public class GdxEntityInput implements InputProcessor{
+	private static final int MAX_POINTERS = 20;
+
+	private final GdxEntityGrid grid;
+	private Camera camera;
+	private final Vector3 point;
+	private final Array<GdxEntity> hits;
+	private final Array<GdxEntity> focus;
+	private final GdxEntity[] captured;
+
+	private long lastNanos, totalNanos, events;
+	private int lastCandidates, lastDelivered;
+
+	/**
+	 * @param grid the entities that can be touched.
+	 */
+	public GdxEntityInput(GdxEntityGrid grid){
+		GdxEntity.debug.assertNotNull("grid", grid);
+		this.grid = grid;
+		point = new Vector3();
+		hits = new Array<>(false, 16, GdxEntity.class);
+		focus = new Array<>(false, 4, GdxEntity.class);
+		captured = new GdxEntity[MAX_POINTERS];
+	}
+
+	/**
+	 * @param camera converts touch coordinates to the coordinates of the entities.  Null
+	 * only flips the y axis, for entities placed in screen pixels.
+	 */
+	public final GdxEntityInput setCamera(Camera camera){
+		this.camera = camera;
+		return this;
+	}
+
+	public final GdxEntityInput setFocus(GdxEntity entity){
+		focus.clear();
+		if(entity != null) addFocus(entity);
+		return this;
+	}
+
+	public final GdxEntityInput addFocus(GdxEntity entity){
+		if(!focus.contains(entity, true)) focus.add(entity);
+		entity.input = this;
+		return this;
+	}
+
+	public final GdxEntityInput removeFocus(GdxEntity entity){
+		focus.removeValue(entity, true);
+		return this;
+	}
+
+	public final Array<GdxEntity> getFocus(){
+		return focus;
+	}
+
+	/**
+	 * Forgets an entity that leaves the game, so it receives no more events.  Entities freed to
+	 * a GdxEntityPool are forgotten by themselves, by the input that focused or captured them last.
+	 */
+	public final void forget(GdxEntity entity){
+		focus.removeValue(entity, true);
+		for(int i = 0; i < MAX_POINTERS; i ++) if(captured[i] == entity) captured[i] = null;
+		if(entity.input == this) entity.input = null;
+	}
+
+	@Override
+	public boolean keyDown(int keycode) {
+		long begin = begin();
+		boolean handled = false;
+		for(int i = 0; i < focus.size && !handled; i ++) handled = deliver(focus.items[i]) && focus.items[i].inputProccessor.keyDown(keycode);
+		return end(begin, focus.size, handled);
+	}
+
+	@Override
+	public boolean keyUp(int keycode) {
+		long begin = begin();
+		boolean handled = false;
+		for(int i = 0; i < focus.size && !handled; i ++) handled = deliver(focus.items[i]) && focus.items[i].inputProccessor.keyUp(keycode);
+		return end(begin, focus.size, handled);
+	}
+
+	@Override
+	public boolean keyTyped(char character) {
+		long begin = begin();
+		boolean handled = false;
+		for(int i = 0; i < focus.size && !handled; i ++) handled = deliver(focus.items[i]) && focus.items[i].inputProccessor.keyTyped(character);
+		return end(begin, focus.size, handled);
+	}
+
+	@Override
+	public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+		long begin = begin();
+		int candidates = query(screenX, screenY);
+		boolean handled = false;
+		for(int i = 0; i < hits.size && !handled; i ++){
+			GdxEntity entity = hits.items[i];
+			handled = deliver(entity) && entity.inputProccessor.touchDown(screenX, screenY, pointer, button);
+			if(handled && pointer < MAX_POINTERS){
+				captured[pointer] = entity;
+				entity.input = this;
+			}
+		}
+		return end(begin, candidates, handled);
+	}
+
+	@Override
+	public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+		long begin = begin();
+		GdxEntity entity = pointer < MAX_POINTERS ? captured[pointer] : null;
+		if(entity != null){
+			captured[pointer] = null;
+			lastDelivered ++;
+			return end(begin, 1, entity.inputProccessor != null && entity.inputProccessor.touchUp(screenX, screenY, pointer, button));
+		}
+		int candidates = query(screenX, screenY);
+		boolean handled = false;
+		for(int i = 0; i < hits.size && !handled; i ++) handled = deliver(hits.items[i]) && hits.items[i].inputProccessor.touchUp(screenX, screenY, pointer, button);
+		return end(begin, candidates, handled);
+	}
+
+	@Override
+	public boolean touchDragged(int screenX, int screenY, int pointer) {
+		long begin = begin();
+		GdxEntity entity = pointer < MAX_POINTERS ? captured[pointer] : null;
+		if(entity != null){
+			lastDelivered ++;
+			return end(begin, 1, entity.inputProccessor != null && entity.inputProccessor.touchDragged(screenX, screenY, pointer));
+		}
+		int candidates = query(screenX, screenY);
+		boolean handled = false;
+		for(int i = 0; i < hits.size && !handled; i ++) handled = deliver(hits.items[i]) && hits.items[i].inputProccessor.touchDragged(screenX, screenY, pointer);
+		return end(begin, candidates, handled);
+	}
+
+	@Override
+	public boolean mouseMoved(int screenX, int screenY) {
+		long begin = begin();
+		int candidates = query(screenX, screenY);
+		boolean handled = false;
+		for(int i = 0; i < hits.size && !handled; i ++) handled = deliver(hits.items[i]) && hits.items[i].inputProccessor.mouseMoved(screenX, screenY);
+		return end(begin, candidates, handled);
+	}
+
+	/**
+	 * Scrolling has no position, so it goes to the focused entities like a key.
+	 */
+	@Override
+	public boolean scrolled(int amount) {
+		long begin = begin();
+		boolean handled = false;
+		for(int i = 0; i < focus.size && !handled; i ++) handled = deliver(focus.items[i]) && focus.items[i].inputProccessor.scrolled(amount);
+		return end(begin, focus.size, handled);
+	}
+
+	/**
+	 * Finds the entities under the pointer.
+	 * @return the number of entities found.
+	 */
+	private int query(int screenX, int screenY){
+		if(camera != null){
+			camera.unproject(point.set(screenX, screenY, 0.0f));
+		}else{
+			point.set(screenX, Gdx.graphics.getHeight() - 1 - screenY, 0.0f);
+		}
+		int found = grid.queryPoint(point.x, point.y, hits);
+		sortHits();
+		return found;
+	}
+
+	/**
+	 * Puts the entities found in the order the event is offered to them.  Insertion sort: there
+	 * are few of them, it keeps equal ones in place and allocates nothing.
+	 */
+	private void sortHits(){
+		GdxEntity[] items = hits.items;
+		for(int i = 1; i < hits.size; i ++){
+			GdxEntity entity = items[i];
+			int j = i - 1;
+			for(; j >= 0 && before(entity, items[j]); j --) items[j + 1] = items[j];
+			items[j + 1] = entity;
+		}
+	}
+
+	private static boolean before(GdxEntity a, GdxEntity b){
+		if(a.getInputPriority() != b.getInputPriority()) return a.getInputPriority() > b.getInputPriority();
+		return a.gridOrder > b.gridOrder;
+	}
+
+	private boolean deliver(GdxEntity entity){
+		if(entity.inputProccessor == null) return false;
+		lastDelivered ++;
+		return true;
+	}
+
+	private long begin(){
+		lastDelivered = 0;
+		return System.nanoTime();
+	}
+
+	private boolean end(long begin, int candidates, boolean handled){
+		lastNanos = System.nanoTime() - begin;
+		totalNanos += lastNanos;
+		lastCandidates = candidates;
+		events ++;
+		return handled;
+	}
+
+	/**
+	 * @return time spent routing the last event, including the time of the processors it reached.
+	 */
+	public final long getLastDispatchNanos(){
+		return lastNanos;
+	}
+
+	/**
+	 * @return entities the last event could go to: the ones under the pointer, or the focused ones.
+	 */
+	public final int getLastCandidates(){
+		return lastCandidates;
+	}
+
+	/**
+	 * @return input processors the last event was given to.
+	 */
+	public final int getLastDelivered(){
+		return lastDelivered;
+	}
+
+	public final long getEvents(){
+		return events;
+	}
+
+	public final long getTotalDispatchNanos(){
+		return totalNanos;
+	}
+
+	public final long getAverageDispatchNanos(){
+		return events == 0 ? 0 : totalNanos / events;
+	}
+
+	public final void resetStatistics(){
+		lastNanos = 0;
+		totalNanos = 0;
+		events = 0;
+		lastCandidates = 0;
+		lastDelivered = 0;
+	}
+}
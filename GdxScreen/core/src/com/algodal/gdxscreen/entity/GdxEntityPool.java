@@ -0,0 +1,145 @@
+package com.algodal.gdxscreen.entity;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * GdxEntityPool recycles the entities of one archetype (bullets, particles, pickups...).
+ * Fill it up front with the number you expect to be alive at once and spawning during
+ * gameplay creates nothing.  A freed entity is reset (see GdxEntity.onReset()) and keeps its
+ * entropies, position and size objects.  Freeing an entity that is already free is caught by
+ * GdxEntity.debug, and ignored when it is off.
+ *
+ * The statistics tell you how to size the pool: every miss is an entity that had to be
+ * created during gameplay, and the peak is the most entities of the archetype alive at once.
+ *
+ * @param <T> The entity type.
+ */
+public class GdxEntityPool<T extends GdxEntity> extends Pool<T>{
+	private final String archetype;
+	private final Factory<T> factory;
+	private int live, peakLive, misses, obtained, freed;
+
+	/**
+	 * @param archetype name of the kind of entity, used in reports.
+	 * @param factory creates a new entity of the archetype with its entropies.
+	 * @param initialCapacity number of entities to create right away.
+	 * @param max most free entities kept; more are left to the garbage collector.
+	 */
+	public GdxEntityPool(String archetype, Factory<T> factory, int initialCapacity, int max){
+		super(initialCapacity, max);
+		this.archetype = archetype;
+		this.factory = factory;
+		fill(initialCapacity);
+	}
+
+	/**
+	 * Creates entities until the pool has at least count free ones.
+	 */
+	public final void fill(int count){
+		Array<T> created = new Array<>(count);
+		for(int i = getFree(); i < count; i ++) created.add(newObject());
+		for(T entity : created){
+			entity.free = true;
+			super.free(entity);
+		}
+	}
+
+	@Override
+	protected final T newObject() {
+		T entity = factory.create();
+		entity.pool = this;
+		return entity;
+	}
+
+	@Override
+	public T obtain() {
+		if(getFree() == 0) misses ++;
+		obtained ++;
+		if(++ live > peakLive) peakLive = live;
+		T entity = super.obtain();
+		entity.free = false;
+		return entity;
+	}
+
+	@Override
+	public void free(T entity) {
+		GdxEntity.debug.assertTrue("entity belongs to this pool", entity.pool == this);
+		GdxEntity.debug.assertFalse("entity is not freed twice", entity.free);
+		if(entity.free) return; //a second free would count it twice and hand it out twice
+		entity.free = true;
+		freed ++;
+		live --;
+		super.free(entity);
+	}
+
+	/**
+	 * Resets an entity that was freed.  GdxEntity is not Poolable, so a reset method of a
+	 * subclass is never called by the pool.
+	 */
+	@Override
+	protected void reset(T entity) {
+		entity.recycle();
+	}
+
+	/**
+	 * Frees the entities one by one, so they are counted and checked like with free.
+	 */
+	@Override
+	public void freeAll(Array<T> entities) {
+		for(int i = 0; i < entities.size; i ++){
+			T entity = entities.get(i);
+			if(entity != null) free(entity);
+		}
+	}
+
+	public final String getArchetype(){
+		return archetype;
+	}
+
+	/**
+	 * @return Entities obtained and not freed yet.
+	 */
+	public final int getLive(){
+		return live;
+	}
+
+	/**
+	 * @return The most entities that were alive at once.
+	 */
+	public final int getPeakLive(){
+		return peakLive;
+	}
+
+	/**
+	 * @return How many times obtain() found the pool empty and had to create an entity.
+	 */
+	public final int getMisses(){
+		return misses;
+	}
+
+	public final int getObtained(){
+		return obtained;
+	}
+
+	public final int getFreed(){
+		return freed;
+	}
+
+	public final void resetStatistics(){
+		peakLive = live;
+		misses = 0;
+		obtained = 0;
+		freed = 0;
+	}
+
+	@Override
+	public String toString() {
+		return archetype + ": live " + live + ", peak " + peakLive + ", free " + getFree() + ", misses " + misses
+				+ ", obtained " + obtained + ", freed " + freed;
+	}
+
+	public static interface Factory<T extends GdxEntity>{
+		T create();
+	}
+}
@@ -0,0 +1,253 @@
+package com.algodal.gdxscreen.entity;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * GdxEntityUpdater runs the update logic of many entities on a fork-join pool.  The entities
+ * are split into chunks of a fixed size by their index, so the same entities always end up
+ * in the same chunk no matter how many threads there are.
+ *
+ * An update may change the position and size of its own entity and read anything else, but
+ * it must not change the current entropy, animate it or play sounds directly: nextFrame
+ * advances the time of the entropy and plays its sound, neither of which is safe on a worker
+ * thread.  It asks the Commands it is given instead.  Once every chunk is done, the commands are carried out on the calling
+ * thread, chunk after chunk and in the order they were given, so the outcome is the same
+ * as if the entities had been updated one after another.  Grids are not touched during the
+ * parallel phase either; the entities that moved are put in their cells afterwards.
+ */
+public class GdxEntityUpdater {
+	/**
+	 * Below this many entities per chunk the fork-join overhead costs more than it saves.
+	 */
+	public static final int MIN_CHUNK = 16;
+
+	private final int chunkSize;
+	private ForkJoinPool pool;
+	private boolean parallel;
+	private final Array<Commands> commands;
+	private final Array<GdxEntityGrid> grids;
+	private long lastNanos, lastMergeNanos;
+
+	/**
+	 * @param chunkSize entities per chunk.
+	 */
+	public GdxEntityUpdater(int chunkSize){
+		this.chunkSize = Math.max(MIN_CHUNK, chunkSize);
+		parallel = true;
+		commands = new Array<>(false, 16, Commands.class);
+		grids = new Array<>(false, 4, GdxEntityGrid.class);
+	}
+
+	public GdxEntityUpdater(){
+		this(64);
+	}
+
+	/**
+	 * @param pool the pool to run on, null for the common pool.
+	 */
+	public final GdxEntityUpdater setPool(ForkJoinPool pool){
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * @param parallel false updates every chunk on the calling thread, with the same result.
+	 */
+	public final GdxEntityUpdater setParallel(boolean parallel){
+		this.parallel = parallel;
+		return this;
+	}
+
+	public final boolean isParallel(){
+		return parallel;
+	}
+
+	public final int getChunkSize(){
+		return chunkSize;
+	}
+
+	/**
+	 * Updates every entity, then carries out the commands.  Call it from the render thread.
+	 * @param entities the entities to update; do not change the array until the call returns.
+	 * @param delta time since the last frame.
+	 * @param update the logic, called once for each entity.
+	 */
+	public final void update(Array<? extends GdxEntity> entities, float delta, Update update){
+		long begin = System.nanoTime();
+		int n = entities.size;
+		int chunks = (n + chunkSize - 1) / chunkSize;
+		while(commands.size < chunks) commands.add(new Commands());
+		for(int c = 0; c < chunks; c ++) commands.items[c].clear();
+
+		deferGrids(entities);
+		boolean done = false;
+		try{
+			Chunk all = new Chunk(entities, delta, update, 0, chunks);
+			if(!parallel || chunks <= 1) all.compute();
+			else (pool == null ? ForkJoinPool.commonPool() : pool).invoke(all);
+			done = true;
+		}finally{
+			long merge = System.nanoTime();
+			restoreGrids(entities);
+			for(int c = 0; c < chunks; c ++){
+				if(done) commands.items[c].apply();
+				else commands.items[c].clear(); //a failed update leaves no half applied side effects
+			}
+			lastMergeNanos = System.nanoTime() - merge;
+		}
+		lastNanos = System.nanoTime() - begin;
+	}
+
+	private void deferGrids(Array<? extends GdxEntity> entities){
+		grids.clear();
+		for(int i = 0; i < entities.size; i ++){
+			GdxEntityGrid grid = entities.get(i).grid;
+			if(grid == null || grid.deferred) continue;
+			grid.deferred = true;
+			grids.add(grid);
+		}
+	}
+
+	private void restoreGrids(Array<? extends GdxEntity> entities){
+		for(int i = 0; i < grids.size; i ++) grids.items[i].deferred = false;
+		grids.clear();
+		for(int i = 0; i < entities.size; i ++){
+			GdxEntity entity = entities.get(i);
+			if(!entity.boundsDirty) continue;
+			entity.boundsDirty = false;
+			entity.boundsChanged();
+		}
+	}
+
+	/**
+	 * @return time of the last update, parallel phase and merge together.
+	 */
+	public final long getLastNanos(){
+		return lastNanos;
+	}
+
+	/**
+	 * @return time the last update spent carrying out commands and updating grids on the calling thread.
+	 */
+	public final long getLastMergeNanos(){
+		return lastMergeNanos;
+	}
+
+	public static interface Update{
+		/**
+		 * @param entity the entity to update; only change this one.
+		 * @param delta time since the last frame.
+		 * @param commands where to ask for entropy changes, animation and sounds.
+		 */
+		void update(GdxEntity entity, float delta, Commands commands);
+	}
+
+	/**
+	 * The side effects an update asks for.  Each chunk records its own, so recording needs no lock.
+	 */
+	public static final class Commands{
+		private static final int ENTROPY = 0, SOUND = 1, FRAME = 2;
+
+		private int[] kinds = new int[16];
+		private int[] indices = new int[16]; //entropy index, or the bits of the delta of a frame
+		private Object[] targets = new Object[16];
+		private int size;
+
+		Commands(){}
+
+		/**
+		 * Makes an entropy current once the update is over.
+		 * @param index index of the entropy, see GdxEntity.indexOfEntropy.
+		 */
+		public void setEntropy(GdxEntity entity, int index){
+			add(ENTROPY, entity, index);
+		}
+
+		/**
+		 * The update's nextFrame.  Returns the frame the entity shows now and advances its
+		 * animation, playing the sound of its entropy if it starts, once the update is over.
+		 * @param delta time since the last frame.
+		 * @return the frame to draw.
+		 */
+		public TextureRegion nextFrame(GdxEntity entity, float delta){
+			add(FRAME, entity, Float.floatToRawIntBits(delta));
+			return entity.frame();
+		}
+
+		/**
+		 * Plays a sound through GdxEntity.sounds once the update is over.
+		 */
+		public void play(Sound sound){
+			add(SOUND, sound, 0);
+		}
+
+		private void add(int kind, Object target, int index){
+			if(size == kinds.length){
+				int capacity = size * 2;
+				int[] biggerKinds = new int[capacity];
+				System.arraycopy(kinds, 0, biggerKinds, 0, size);
+				kinds = biggerKinds;
+				int[] biggerIndices = new int[capacity];
+				System.arraycopy(indices, 0, biggerIndices, 0, size);
+				indices = biggerIndices;
+				Object[] biggerTargets = new Object[capacity];
+				System.arraycopy(targets, 0, biggerTargets, 0, size);
+				targets = biggerTargets;
+			}
+			kinds[size] = kind;
+			targets[size] = target;
+			indices[size] = index;
+			size ++;
+		}
+
+		void apply(){
+			for(int i = 0; i < size; i ++){
+				if(kinds[i] == ENTROPY) ((GdxEntity)targets[i]).setEntropy(indices[i]);
+				else if(kinds[i] == FRAME) ((GdxEntity)targets[i]).nextFrame(Float.intBitsToFloat(indices[i]));
+				else GdxEntity.sounds.play((Sound)targets[i]);
+			}
+			clear();
+		}
+
+		void clear(){
+			for(int i = 0; i < size; i ++) targets[i] = null;
+			size = 0;
+		}
+	}
+
+	private final class Chunk extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+
+		private final Array<? extends GdxEntity> entities;
+		private final float delta;
+		private final Update update;
+		private final int from, to; //chunk indices
+
+		Chunk(Array<? extends GdxEntity> entities, float delta, Update update, int from, int to){
+			this.entities = entities;
+			this.delta = delta;
+			this.update = update;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > 1 && parallel){
+				int middle = (from + to) >>> 1;
+				invokeAll(new Chunk(entities, delta, update, from, middle), new Chunk(entities, delta, update, middle, to));
+				return;
+			}
+			for(int c = from; c < to; c ++){
+				Commands recorded = commands.items[c];
+				int end = Math.min(entities.size, (c + 1) * chunkSize);
+				for(int i = c * chunkSize; i < end; i ++) update.update(entities.get(i), delta, recorded);
+			}
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package com.algodal.gdxscreen.entity;
+
+import com.algodal.gdxscreen.entity.GdxEntity.Entropy;
+import com.algodal.gdxscreen.entity.GdxEntity.Position;
+import com.algodal.gdxscreen.entity.GdxEntity.Size;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ArrayMap;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * GdxEntityWorld holds a large number of entities in packed primitive arrays instead of
+ * one GdxEntity object each: positions, sizes, the index of the current entropy and the
+ * animation time.  All entities of a world share one entropy map.  Loops over the world
+ * touch a few contiguous arrays and create no garbage.  Existing code that wants a
+ * GdxEntity can ask for a view of any entity; the view reads and writes the arrays.
+ *
+ * Removing an entity moves the last entity into its index, so indices are only stable
+ * until the next remove.
+ *
+ * A view can be added to a GdxEntityGrid.  Every method of the world that moves or resizes
+ * entities keeps the grid up to date; code that writes the raw arrays calls boundsChanged
+ * afterwards.
+ */
+public class GdxEntityWorld {
+	public final ArrayMap<String, Entropy> entropyMap;
+
+	private float[] x, y, width, height, time;
+	private int[] entropy;
+	private int size;
+	private final Array<View> views;
+
+	public GdxEntityWorld(int capacity){
+		entropyMap = new ArrayMap<>();
+		x = new float[capacity];
+		y = new float[capacity];
+		width = new float[capacity];
+		height = new float[capacity];
+		time = new float[capacity];
+		entropy = new int[capacity];
+		views = new Array<>();
+	}
+
+	public final GdxEntityWorld putEntropy(String entropyRef, Entropy entropy){
+		entropyMap.put(entropyRef, entropy);
+		return this;
+	}
+
+	/**
+	 * @param entropyRef reference of an entropy of this world.
+	 * @return its index, which is what the entropy arrays store.
+	 */
+	public final int indexOfEntropy(String entropyRef){
+		int index = entropyMap.indexOfKey(entropyRef);
+		GdxEntity.debug.assertTrue("found entropy by reference", index != -1);
+		return index;
+	}
+
+	/**
+	 * Adds an entity with the first entropy of the world.
+	 * @return the index of the new entity.
+	 */
+	public final int add(float x, float y, float width, float height){
+		if(size == this.x.length) grow(Math.max(8, size * 2));
+		int i = size ++;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.width[i] = width;
+		this.height[i] = height;
+		time[i] = 0.0f;
+		entropy[i] = 0;
+		return i;
+	}
+
+	/**
+	 * Removes an entity.  The last entity takes its index.
+	 * @param index index of the entity to remove.
+	 */
+	public final void remove(int index){
+		GdxEntity.debug.assertTrue("entity index is in the world", index >= 0 && index < size);
+		int last = -- size;
+		View removed = viewAt(index);
+		if(removed != null) forget(removed);
+		if(index != last){
+			x[index] = x[last];
+			y[index] = y[last];
+			width[index] = width[last];
+			height[index] = height[last];
+			time[index] = time[last];
+			entropy[index] = entropy[last];
+			View moved = viewAt(last);
+			if(moved != null) moved.index = index;
+			setView(index, moved);
+		}
+		setView(last, null);
+	}
+
+	public final int size(){
+		return size;
+	}
+
+	public final void clear(){
+		for(int i = 0; i < views.size; i ++) if(views.get(i) != null) forget(views.get(i));
+		views.clear();
+		size = 0;
+	}
+
+	/**
+	 * Detaches the view of a removed entity.  A stale view must not write into another entity,
+	 * and a grid must not find it.
+	 */
+	private void forget(View view){
+		if(view.grid != null) view.grid.remove(view);
+		view.index = -1;
+	}
+
+	private void grow(int capacity){
+		x = copy(x, capacity);
+		y = copy(y, capacity);
+		width = copy(width, capacity);
+		height = copy(height, capacity);
+		time = copy(time, capacity);
+		int[] bigger = new int[capacity];
+		System.arraycopy(entropy, 0, bigger, 0, size);
+		entropy = bigger;
+	}
+
+	private float[] copy(float[] array, int capacity){
+		float[] bigger = new float[capacity];
+		System.arraycopy(array, 0, bigger, 0, size);
+		return bigger;
+	}
+
+	public final float getX(int i){ return x[i]; }
+	public final float getY(int i){ return y[i]; }
+	public final float getWidth(int i){ return width[i]; }
+	public final float getHeight(int i){ return height[i]; }
+	public final int getEntropyIndex(int i){ return entropy[i]; }
+
+	public final void setPosition(int i, float x, float y){
+		this.x[i] = x;
+		this.y[i] = y;
+		boundsChanged(i);
+	}
+
+	public final void setSize(int i, float width, float height){
+		this.width[i] = width;
+		this.height[i] = height;
+		boundsChanged(i);
+	}
+
+	/**
+	 * Puts the view of an entity in the grid cells its bounds cover now.  Call it after
+	 * writing the position or size of the entity through the raw arrays.
+	 * @param i index of the entity.
+	 */
+	public final void boundsChanged(int i){
+		View view = viewAt(i);
+		if(view != null) view.boundsChanged();
+	}
+
+	/**
+	 * Same as boundsChanged for every entity, for after a loop over the raw arrays.
+	 */
+	public final void boundsChanged(){
+		for(int i = 0; i < views.size; i ++){
+			View view = views.get(i);
+			if(view != null) view.boundsChanged();
+		}
+	}
+
+	/**
+	 * Changes the current entropy of an entity and restarts its animation.
+	 */
+	public final void setEntropyIndex(int i, int entropyIndex){
+		entropy[i] = entropyIndex;
+		time[i] = 0.0f;
+		View view = viewAt(i);
+		if(view != null){
+			view.nowEntropy = entropyMap.getValueAt(entropyIndex);
+			view.nowIndex = entropyIndex;
+		}
+	}
+
+	/**
+	 * The raw arrays are for tight loops over the first size() entries.  Do not keep them:
+	 * adding entities may replace them with bigger arrays.  Writing positions or sizes
+	 * through them does not update grids; call boundsChanged when done.
+	 */
+	public final float[] getXs(){ return x; }
+	public final float[] getYs(){ return y; }
+	public final float[] getWidths(){ return width; }
+	public final float[] getHeights(){ return height; }
+	public final int[] getEntropyIndices(){ return entropy; }
+
+	/**
+	 * Moves every entity of the world.
+	 */
+	public final void translateAll(float dx, float dy){
+		for(int i = 0; i < size; i ++){
+			x[i] += dx;
+			y[i] += dy;
+		}
+		boundsChanged();
+	}
+
+	/**
+	 * Calls the updater once for each entity, in index order.  The updater may write the raw
+	 * arrays; the grids are brought up to date once it is done with every entity.
+	 */
+	public final void update(Updater updater, float delta){
+		for(int i = 0; i < size; i ++) updater.update(this, i, delta);
+		boundsChanged();
+	}
+
+	/**
+	 * Same as Entropy.nextFrame(delta) but with the animation time of the entity instead
+	 * of the time of the shared entropy.
+	 * @param i index of the entity.
+	 * @param delta time since the last frame.
+	 * @return the frame to draw.
+	 */
+	public final TextureRegion nextFrame(int i, float delta){
+		Entropy current = entropyMap.getValueAt(entropy[i]);
+		Animation animation = current.getAnimation();
+		if(animation == null) throw new GdxRuntimeException("No frame found!");
+		TextureRegion frame = animation.getKeyFrame(time[i]);
+		Sound sound = current.getSound();
+		if(sound != null) if(time[i] == 0.0f) GdxEntity.sounds.play(sound);
+		time[i] += delta;
+		if(time[i] >= animation.getAnimationDuration()) time[i] = 0.0f;
+		if(frame == null) throw new GdxRuntimeException("No frame found!");
+		return frame;
+	}
+
+	/**
+	 * Same as nextFrame(i, delta) without advancing the animation or playing a sound.
+	 */
+	final TextureRegion frame(int i){
+		Animation animation = entropyMap.getValueAt(entropy[i]).getAnimation();
+		TextureRegion frame = animation == null ? null : animation.getKeyFrame(time[i]);
+		if(frame == null) throw new GdxRuntimeException("No frame found!");
+		return frame;
+	}
+
+	/**
+	 * @param i index of the entity.
+	 * @return a GdxEntity backed by this world.  The same view is returned until the entity is removed.
+	 */
+	public final GdxEntity view(int i){
+		GdxEntity.debug.assertTrue("entity index is in the world", i >= 0 && i < size);
+		View view = viewAt(i);
+		if(view == null){
+			view = new View(this, i);
+			setView(i, view);
+		}
+		return view;
+	}
+
+	private View viewAt(int i){
+		return i < views.size ? views.get(i) : null;
+	}
+
+	private void setView(int i, View view){
+		if(i >= views.size){
+			if(view == null) return;
+			while(views.size <= i) views.add(null);
+		}
+		views.set(i, view);
+	}
+
+	public static interface Updater{
+		void update(GdxEntityWorld world, int index, float delta);
+	}
+
+	/**
+	 * A GdxEntity whose position, size, current entropy and animation time are stored in the world.
+	 */
+	static final class View extends GdxEntity{
+		final GdxEntityWorld world;
+		int index;
+
+		View(GdxEntityWorld world, int index){
+			super(world.entropyMap, new WorldPosition(), new WorldSize());
+			this.world = world;
+			this.index = index;
+			((WorldPosition)getPosition()).view = this;
+			((WorldSize)getSize()).view = this;
+			nowIndex = world.entropyMap.size == 0 ? -1 : world.entropy[index];
+			nowEntropy = nowIndex == -1 ? null : world.entropyMap.getValueAt(nowIndex);
+		}
+
+		@Override
+		void entropyChanged(int entropyIndex){
+			if(entropyIndex != -1) world.setEntropyIndex(index, entropyIndex);
+		}
+
+		@Override
+		TextureRegion advance(float delta){
+			return world.nextFrame(index, delta); //the entropy is shared, its time is not
+		}
+
+		@Override
+		TextureRegion frame(){
+			return world.frame(index);
+		}
+
+		@Override
+		void restartAnimations(){
+			world.time[index] = 0.0f;
+		}
+	}
+
+	private static final class WorldPosition extends Position{
+		View view;
+
+		@Override public float getX() { return view.world.x[view.index]; }
+		@Override public void setX(float x) { view.world.x[view.index] = x; changed(); }
+		@Override public float getY() { return view.world.y[view.index]; }
+		@Override public void setY(float y) { view.world.y[view.index] = y; changed(); }
+		@Override public void addX(float dx) { view.world.x[view.index] += dx; changed(); }
+		@Override public void addY(float dy) { view.world.y[view.index] += dy; changed(); }
+	}
+
+	private static final class WorldSize extends Size{
+		View view;
+
+		@Override public float getWidth() { return view.world.width[view.index]; }
+		@Override public void setWidth(float width) { view.world.width[view.index] = width; changed(); }
+		@Override public float getHeight() { return view.world.height[view.index]; }
+		@Override public void setHeight(float height) { view.world.height[view.index] = height; changed(); }
+		@Override public void addWidth(float displace) { view.world.width[view.index] += displace; changed(); }
+		@Override public void addHeight(float displace) { view.world.height[view.index] += displace; changed(); }
+	}
+}
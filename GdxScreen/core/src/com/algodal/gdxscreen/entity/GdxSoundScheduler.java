@@ -0,0 +1,232 @@
+package com.algodal.gdxscreen.entity;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.utils.IdentityMap;
+
+/**
+ * GdxSoundScheduler is what entropies play their sounds through.  It keeps hundreds of
+ * entities that share a sound from firing hundreds of overlapping plays: a sound is played
+ * at most once per frame, further triggers in the same frame are merged into it.  Limits on
+ * the voices are opt-in (see setMaxVoices): once set, a trigger is dropped when the sound
+ * already has as many voices as it may have, or when the scheduler as a whole does.
+ *
+ * libGDX does not tell when a play ends, so a voice is counted as playing for the duration
+ * set with setDuration (the default duration if none is set).  Every voice is kept with the
+ * id its play returned, so stopping one sound never frees the voices of another.  Call it
+ * from the render thread.
+ */
+public class GdxSoundScheduler {
+	public static final int UNLIMITED = 0;
+
+	private final IdentityMap<Sound, Channel> channels;
+	private int maxVoicesPerSound, maxVoices;
+	private float defaultDuration;
+	//every playing voice, first totalVoices entries used
+	private long[] voiceEnds, voiceIds;
+	private Channel[] voiceChannels;
+	private int totalVoices;
+	private long played, merged, dropped;
+
+	/**
+	 * @param maxVoicesPerSound most voices one sound can have at once, or UNLIMITED.
+	 * @param maxVoices most voices of all sounds together, or UNLIMITED.
+	 */
+	public GdxSoundScheduler(int maxVoicesPerSound, int maxVoices){
+		channels = new IdentityMap<>();
+		defaultDuration = 1.0f;
+		voiceEnds = new long[16];
+		voiceIds = new long[16];
+		voiceChannels = new Channel[16];
+		setMaxVoices(maxVoicesPerSound, maxVoices);
+	}
+
+	/**
+	 * A scheduler without voice limits; it only merges the plays of a sound within a frame.
+	 */
+	public GdxSoundScheduler(){
+		this(UNLIMITED, UNLIMITED);
+	}
+
+	/**
+	 * @param maxVoicesPerSound most voices one sound can have at once, or UNLIMITED.
+	 * @param maxVoices most voices of all sounds together, or UNLIMITED.
+	 */
+	public final GdxSoundScheduler setMaxVoices(int maxVoicesPerSound, int maxVoices){
+		GdxEntity.debug.assertTrue("voice limits are not negative", maxVoicesPerSound >= 0 && maxVoices >= 0);
+		this.maxVoicesPerSound = maxVoicesPerSound;
+		this.maxVoices = maxVoices;
+		return this; //voices above a lowered limit keep playing, they only block new ones
+	}
+
+	public final int getMaxVoicesPerSound(){
+		return maxVoicesPerSound;
+	}
+
+	public final int getMaxVoices(){
+		return maxVoices;
+	}
+
+	/**
+	 * @param sound the sound.
+	 * @param seconds how long one play of the sound lasts.
+	 */
+	public final GdxSoundScheduler setDuration(Sound sound, float seconds){
+		channel(sound).duration = seconds;
+		return this;
+	}
+
+	/**
+	 * @param seconds duration of the sounds that have none set.
+	 */
+	public final GdxSoundScheduler setDefaultDuration(float seconds){
+		defaultDuration = seconds;
+		return this;
+	}
+
+	/**
+	 * Plays the sound unless it was already played this frame or a voice limit is reached.
+	 * @return the id of the play, or -1 if the trigger was merged or dropped.
+	 */
+	public final long play(Sound sound){
+		Channel channel = channel(sound);
+		long frame = Gdx.graphics == null ? -1 : Gdx.graphics.getFrameId();
+		if(frame != -1 && channel.frame == frame){
+			merged ++;
+			return -1;
+		}
+		long now = System.nanoTime();
+		expire(now);
+		if((maxVoicesPerSound != UNLIMITED && channel.voices >= maxVoicesPerSound) || (maxVoices != UNLIMITED && totalVoices >= maxVoices)){
+			dropped ++;
+			return -1;
+		}
+		long id = sound.play();
+		channel.frame = frame;
+		played ++;
+		if(id == -1) return -1; //the backend had no voice either
+		if(totalVoices == voiceEnds.length) grow(totalVoices * 2);
+		voiceEnds[totalVoices] = now + (long)((channel.duration < 0.0f ? defaultDuration : channel.duration) * 1000000000L);
+		voiceIds[totalVoices] = id;
+		voiceChannels[totalVoices] = channel;
+		totalVoices ++;
+		channel.voices ++;
+		return id;
+	}
+
+	/**
+	 * Stops every voice of the sound and frees its voices.
+	 */
+	public final void stop(Sound sound){
+		sound.stop();
+		Channel channel = channels.get(sound);
+		if(channel == null) return;
+		for(int i = 0; i < totalVoices; i ++) if(voiceChannels[i] == channel) removeVoice(i --);
+	}
+
+	/**
+	 * Stops one voice of the sound and frees it.
+	 * @param id the id play returned.
+	 */
+	public final void stop(Sound sound, long id){
+		sound.stop(id);
+		Channel channel = channels.get(sound);
+		if(channel == null) return;
+		for(int i = 0; i < totalVoices; i ++){
+			if(voiceChannels[i] != channel || voiceIds[i] != id) continue;
+			removeVoice(i);
+			return;
+		}
+	}
+
+	/**
+	 * Forgets a sound, for example before it is disposed.
+	 */
+	public final void remove(Sound sound){
+		stop(sound);
+		channels.remove(sound);
+	}
+
+	/**
+	 * @return voices counted as playing right now.
+	 */
+	public final int getVoices(){
+		expire(System.nanoTime());
+		return totalVoices;
+	}
+
+	/**
+	 * @return voices of the sound counted as playing right now.
+	 */
+	public final int getVoices(Sound sound){
+		expire(System.nanoTime());
+		Channel channel = channels.get(sound);
+		return channel == null ? 0 : channel.voices;
+	}
+
+	public final long getPlayed(){
+		return played;
+	}
+
+	/**
+	 * @return triggers that came in the same frame as a play of the same sound.
+	 */
+	public final long getMerged(){
+		return merged;
+	}
+
+	/**
+	 * @return triggers that found no voice left.
+	 */
+	public final long getDropped(){
+		return dropped;
+	}
+
+	public final void resetCounters(){
+		played = 0;
+		merged = 0;
+		dropped = 0;
+	}
+
+	private void expire(long now){
+		for(int i = 0; i < totalVoices; i ++) if(voiceEnds[i] <= now) removeVoice(i --);
+	}
+
+	/**
+	 * Frees a voice by moving the last voice into its place.
+	 */
+	private void removeVoice(int i){
+		voiceChannels[i].voices --;
+		int last = -- totalVoices;
+		voiceEnds[i] = voiceEnds[last];
+		voiceIds[i] = voiceIds[last];
+		voiceChannels[i] = voiceChannels[last];
+		voiceChannels[last] = null;
+	}
+
+	private void grow(int capacity){
+		long[] ends = new long[capacity], ids = new long[capacity];
+		Channel[] owners = new Channel[capacity];
+		System.arraycopy(voiceEnds, 0, ends, 0, totalVoices);
+		System.arraycopy(voiceIds, 0, ids, 0, totalVoices);
+		System.arraycopy(voiceChannels, 0, owners, 0, totalVoices);
+		voiceEnds = ends;
+		voiceIds = ids;
+		voiceChannels = owners;
+	}
+
+	private Channel channel(Sound sound){
+		Channel channel = channels.get(sound);
+		if(channel == null){
+			channel = new Channel();
+			channels.put(sound, channel);
+		}
+		return channel;
+	}
+
+	private static final class Channel{
+		int voices;
+		long frame = -1;
+		float duration = -1.0f; //negative uses the default duration
+	}
+}
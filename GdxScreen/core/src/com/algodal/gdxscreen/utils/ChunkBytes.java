@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reusable byte buffer for one chunk of the compressed save container.  The same
+ * instance is refilled for every chunk so a save or load only allocates when a chunk
+ * is bigger than every chunk before it.
+ */
+final class ChunkBytes extends ByteArrayOutputStream{
+	private final CRC32 crc;
+
+	ChunkBytes(int size){
+		super(size);
+		crc = new CRC32();
+	}
+
+	byte[] bytes(){
+		return buf;
+	}
+
+	int checksum(){
+		crc.reset();
+		crc.update(buf, 0, count);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Replaces the content of this buffer with the compressed content of source.
+	 */
+	void deflate(Deflater deflater, ChunkBytes source){
+		reset();
+		deflater.reset();
+		deflater.setInput(source.buf, 0, source.count);
+		deflater.finish();
+		while(!deflater.finished()){
+			if(count == buf.length) grow();
+			count += deflater.deflate(buf, count, buf.length - count);
+		}
+	}
+
+	/**
+	 * Replaces the content of this buffer with the inflated content of source.
+	 * @param length the expected size of the inflated content.
+	 * @return false if source did not inflate to exactly length bytes.
+	 */
+	boolean inflate(Inflater inflater, ChunkBytes source, int length){
+		reset();
+		if(buf.length < length) buf = new byte[length];
+		inflater.reset();
+		inflater.setInput(source.buf, 0, source.count);
+		try{
+			count = inflater.inflate(buf, 0, length);
+		}catch(DataFormatException e){
+			return false;
+		}
+		return count == length && inflater.finished();
+	}
+
+	/**
+	 * Makes room for length bytes and marks them as the content, ready to be filled through bytes().
+	 */
+	void fill(int length){
+		reset();
+		if(buf.length < length) buf = new byte[length];
+		count = length;
+	}
+
+	private void grow(){
+		byte[] bigger = new byte[buf.length * 2];
+		System.arraycopy(buf, 0, bigger, 0, count);
+		buf = bigger;
+	}
+
+	/**
+	 * The header in front of every chunk: where its objects go, how big it is, the checksum of
+	 * its content and a checksum of the header itself.  A header is only trusted when its own
+	 * checksum matches, so a damaged length can not send the reader off into the wrong bytes.
+	 */
+	static final class Header{
+		private static final int SIZE = 24;
+
+		int firstUnit, unitCount, rawLength, storedLength, checksum;
+		private final byte[] bytes = new byte[SIZE];
+		private final CRC32 crc = new CRC32();
+
+		void write(DataOutputStream out) throws IOException{
+			put(0, firstUnit);
+			put(4, unitCount);
+			put(8, rawLength);
+			put(12, storedLength);
+			put(16, checksum);
+			put(20, ownChecksum());
+			out.write(bytes, 0, SIZE);
+		}
+
+		/**
+		 * @return false if the header does not match its own checksum.
+		 */
+		boolean read(DataInputStream in) throws IOException{
+			in.readFully(bytes, 0, SIZE);
+			firstUnit = get(0);
+			unitCount = get(4);
+			rawLength = get(8);
+			storedLength = get(12);
+			checksum = get(16);
+			return get(20) == ownChecksum();
+		}
+
+		private int ownChecksum(){
+			crc.reset();
+			crc.update(bytes, 0, SIZE - 4);
+			return (int)crc.getValue();
+		}
+
+		private void put(int offset, int value){
+			bytes[offset] = (byte)(value >>> 24);
+			bytes[offset + 1] = (byte)(value >>> 16);
+			bytes[offset + 2] = (byte)(value >>> 8);
+			bytes[offset + 3] = (byte)value;
+		}
+
+		private int get(int offset){
+			return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+		}
+	}
+}
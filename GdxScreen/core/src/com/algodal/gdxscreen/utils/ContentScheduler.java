@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.algodal.gdxscreen.utils.GdxLibrary.Content;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * Runs one step (initialize or load) of a batch of library contents in dependency order.
+ * A content only starts after every content it depends on has finished.  Contents that are
+ * ready at the same time run in parallel on the common fork-join pool, except the ones marked
+ * for the render thread, which always run on the calling thread.
+ */
+final class ContentScheduler {
+	static final int INITIALIZE = 0, LOAD = 1;
+
+	private final Array<String> refs;
+	private final Array<Content<?>> contents;
+	private final Array<IntArray> dependents;
+	private final Array<IntArray> dependencies; //the same edges the other way round
+	private final int[] dependencyCount;
+	private final int[] order; //topological order: always the earliest registered content that is ready
+
+	private final long[] start, end;
+	private long criticalPathNanos;
+	private long wallNanos;
+	private final Array<String> criticalPath;
+
+	/**
+	 * @param refs reference of each content in the batch.
+	 * @param contents the batch; dependencies outside of it count as already done.
+	 */
+	ContentScheduler(Array<String> refs, Array<Content<?>> contents){
+		this.refs = refs;
+		this.contents = contents;
+		int n = contents.size;
+		dependents = new Array<>(n);
+		dependencies = new Array<>(n);
+		dependencyCount = new int[n];
+		ObjectIntMap<String> indexMap = new ObjectIntMap<>(n);
+		for(int i = 0; i < n; i ++){
+			dependents.add(new IntArray());
+			dependencies.add(new IntArray());
+			indexMap.put(refs.get(i), i);
+		}
+		for(int i = 0; i < n; i ++){
+			for(String dependency : contents.get(i).dependencies){
+				int d = indexMap.get(dependency, -1);
+				if(d == -1) continue;
+				dependents.get(d).add(i);
+				dependencies.get(i).add(d);
+				dependencyCount[i] ++;
+			}
+		}
+
+		order = new int[n];
+		int[] remaining = dependencyCount.clone();
+		IntArray ready = new IntArray(n);
+		for(int i = n - 1; i >= 0; i --) if(remaining[i] == 0) ready.add(i);
+		int sorted = 0;
+		while(ready.size > 0){
+			int i = ready.pop();
+			order[sorted ++] = i;
+			complete(i, remaining, ready);
+		}
+		if(sorted != n) throw new GdxRuntimeException("failed: content dependencies have no cycle");
+
+		start = new long[n];
+		end = new long[n];
+		criticalPath = new Array<>();
+	}
+
+	/**
+	 * Runs the step on every content of the batch.  If a content fails, no further content
+	 * starts, the contents already running are waited for, and then the first failure is thrown.
+	 * @param step INITIALIZE or LOAD.
+	 * @param parallel false runs everything on the calling thread in topological order.
+	 */
+	void run(final int step, boolean parallel){
+		long begin = System.nanoTime();
+		int n = contents.size;
+		if(!parallel){
+			for(int i : order) execute(i, step);
+		}else{
+			final LinkedBlockingQueue<Integer> done = new LinkedBlockingQueue<>();
+			final Throwable[] failure = new Throwable[1];
+			final int[] failed = {-1};
+			int[] remaining = dependencyCount.clone();
+			IntArray ready = new IntArray(n);
+			for(int i = n - 1; i >= 0; i --) if(remaining[i] == 0) ready.add(i);
+
+			int finished = 0, running = 0;
+			boolean stopped = false, interrupted = false;
+			while(finished < n){
+				while(ready.size > 0 && !stopped){
+					final int i = ready.pop();
+					if(contents.get(i).isRenderThread()){
+						try{
+							execute(i, step);
+						}catch(Throwable t){
+							synchronized(failure){
+								if(failure[0] == null){
+									failure[0] = t;
+									failed[0] = i;
+								}
+							}
+							stopped = true;
+							break;
+						}
+						complete(i, remaining, ready);
+						finished ++;
+					}else{
+						running ++;
+						ForkJoinPool.commonPool().execute(new Runnable() {
+							@Override
+							public void run() {
+								try{
+									execute(i, step);
+								}catch(Throwable t){
+									synchronized(failure){
+										if(failure[0] == null){
+											failure[0] = t;
+											failed[0] = i;
+										}
+									}
+								}
+								done.add(i);
+							}
+						});
+					}
+				}
+				if(finished == n || running == 0) break; //running is only 0 here once stopped
+				int i;
+				try{
+					i = done.take();
+				}catch(InterruptedException e){
+					interrupted = stopped = true; //the contents still running must not outlive the step
+					continue;
+				}
+				running --;
+				synchronized(failure){
+					stopped |= failed[0] != -1;
+				}
+				if(stopped) continue; //drain the running contents, start nothing new
+				complete(i, remaining, ready);
+				finished ++;
+			}
+			if(interrupted) Thread.currentThread().interrupt();
+			synchronized(failure){
+				if(failed[0] != -1) throw new GdxRuntimeException("failed: content " + refs.get(failed[0]) + " step", failure[0]);
+			}
+			if(interrupted) throw new GdxRuntimeException("failed: content step was not interrupted");
+		}
+		wallNanos = System.nanoTime() - begin;
+		measureCriticalPath();
+	}
+
+	/**
+	 * Counts i as done and moves the contents it was the last dependency of to ready, which is
+	 * kept in descending registration order so pop() returns the earliest registered one.
+	 */
+	private void complete(int i, int[] remaining, IntArray ready){
+		IntArray next = dependents.get(i);
+		for(int j = 0; j < next.size; j ++){
+			int d = next.get(j);
+			if(-- remaining[d] != 0) continue;
+			int k = ready.size;
+			while(k > 0 && ready.get(k - 1) < d) k --;
+			ready.insert(k, d);
+		}
+	}
+
+	private void execute(int i, int step){
+		GdxTrace.begin(refs.get(i));
+		start[i] = System.nanoTime();
+		try{
+			if(step == INITIALIZE) contents.get(i).initialize();
+			else contents.get(i).load();
+		}finally{
+			end[i] = System.nanoTime();
+			GdxTrace.end();
+		}
+	}
+
+	/**
+	 * The critical path is the chain of dependent contents with the largest total time.
+	 * Even with unlimited workers the step can not finish faster than this chain.
+	 */
+	private void measureCriticalPath(){
+		int n = contents.size;
+		long[] finish = new long[n];
+		int[] previous = new int[n];
+		int last = -1;
+		for(int i : order){
+			previous[i] = -1;
+			IntArray before = dependencies.get(i);
+			for(int j = 0; j < before.size; j ++){
+				int d = before.get(j);
+				if(previous[i] == -1 || finish[d] > finish[previous[i]]) previous[i] = d;
+			}
+			finish[i] = (end[i] - start[i]) + (previous[i] == -1 ? 0 : finish[previous[i]]);
+			if(last == -1 || finish[i] > finish[last]) last = i;
+		}
+		criticalPathNanos = last == -1 ? 0 : finish[last];
+		criticalPath.clear();
+		for(int i = last; i != -1; i = previous[i]) criticalPath.insert(0, refs.get(i));
+	}
+
+	long getCriticalPathNanos(){
+		return criticalPathNanos;
+	}
+
+	Array<String> getCriticalPath(){
+		return criticalPath;
+	}
+
+	long getWallNanos(){
+		return wallNanos;
+	}
+}
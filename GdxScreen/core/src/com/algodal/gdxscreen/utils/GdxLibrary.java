@@ -15,9 +15,11 @@
  ******************************************************************************/
 package com.algodal.gdxscreen.utils;
 
-import com.badlogic.gdx.utils.ArrayMap;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
-import com.badlogic.gdx.utils.ObjectMap.Entry;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
 
 /**
  * The class allows for the storage, loading and disposing of data
@@ -25,45 +27,343 @@ import com.badlogic.gdx.utils.ObjectMap.Entry;
  * Game's life span.
  */
 public class GdxLibrary {
-	private final ArrayMap<String, Content<?>> contentMap;
+	private final Array<String> refs; //the ref and the content of one entry share an index
+	private final Array<Content<?>> contents;
+	private final ObjectIntMap<String> indexMap;
+	private final IdentityMap<Content<?>, Key<?>> keyMap; //a content may be stored in several libraries
+	private boolean parallel;
+	private ContentScheduler lastRun;
+	private long heapThreshold;
+	private long heapLowWater;
+	private long minIdleMillis = 1000;
+	private boolean relieving; //crossed the threshold, not yet back under the low-water mark
+	private long unloadCollections = -1; //collections when the last content was unloaded
+	private HeapPools heap;
+	private boolean heapChecked;
+	private long accessClock;
+	private int lazyLoads;
+	private int pressureUnloads;
 	
 	public final GdxDebug debug;
 	
 	public GdxLibrary(){
-		contentMap = new ArrayMap<>();
+		refs = new Array<>(String.class);
+		contents = new Array<>(Content.class);
+		indexMap = new ObjectIntMap<>();
+		keyMap = new IdentityMap<>();
 		debug = new GdxDebug().setOn(true);
 	}
 	
+	/**
+	 * Lets create() and load() run contents that do not depend on each other at the same time
+	 * on worker threads.  Contents marked with setRenderThread(true) still run on the calling
+	 * thread.  Either way a content never starts before the contents it depends on are done.
+	 * @param parallel true to use worker threads.
+	 * @return this library.
+	 */
+	public final GdxLibrary setParallel(boolean parallel){
+		this.parallel = parallel;
+		return this;
+	}
+	
+	public final boolean isParallel(){
+		return parallel;
+	}
+	
+	/**
+	 * The longest chain of dependent contents of the last create() or load().  No number of
+	 * worker threads makes the step faster than this chain, so it is what limits startup.
+	 * @return the time of the chain in nanoseconds.
+	 */
+	public final long getCriticalPathNanos(){
+		return lastRun == null ? 0 : lastRun.getCriticalPathNanos();
+	}
+	
+	/**
+	 * @return references of the contents on the critical path of the last create() or load(), in order.
+	 */
+	public final Array<String> getCriticalPath(){
+		return lastRun == null ? new Array<String>() : lastRun.getCriticalPath();
+	}
+	
+	/**
+	 * @return how long the last create() or load() took in nanoseconds.
+	 */
+	public final long getLastRunNanos(){
+		return lastRun == null ? 0 : lastRun.getWallNanos();
+	}
+	
+	/**
+	 * Sets the heap usage above which the library starts to unload lazy contents, least
+	 * recently used first, and keeps unloading until the heap is back under the same value.
+	 * @param bytes Used heap in bytes.  0, the default, never unloads anything.
+	 * @return this library.
+	 * @see #setHeapThreshold(long, long)
+	 */
+	public final GdxLibrary setHeapThreshold(long bytes){
+		return setHeapThreshold(bytes, bytes);
+	}
+	
+	/**
+	 * Sets the heap usage above which the library starts to unload lazy contents, least
+	 * recently used first, and the lower usage it unloads down to before it stops.  The gap
+	 * keeps a heap that hovers around one value from unloading and reloading the same
+	 * contents over and over.  The check happens every time a lazy content loads and
+	 * whenever relieve() is called.
+	 * 
+	 * The heap is measured as the last garbage collection left it, so garbage that is not
+	 * collected yet does not count.  Platforms without java.lang.management, such as Android,
+	 * measure totalMemory() - freeMemory() instead, which counts it.
+	 * @param bytes Used heap in bytes.  0, the default, never unloads anything.
+	 * @param lowWater Used heap in bytes, at most bytes.
+	 * @return this library.
+	 */
+	public final GdxLibrary setHeapThreshold(long bytes, long lowWater){
+		debug.assertTrue("low-water mark is not above the threshold", lowWater <= bytes);
+		heapThreshold = bytes;
+		heapLowWater = lowWater;
+		relieving = false;
+		return this;
+	}
+	
+	public final long getHeapThreshold(){
+		return heapThreshold;
+	}
+	
+	public final long getHeapLowWater(){
+		return heapLowWater;
+	}
+	
+	/**
+	 * A lazy content used less than this long ago is never unloaded, however full the heap.
+	 * @param millis Time since the last get() in milliseconds, 1000 by default.
+	 * @return this library.
+	 */
+	public final GdxLibrary setMinIdleMillis(long millis){
+		minIdleMillis = millis;
+		return this;
+	}
+	
+	public final long getMinIdleMillis(){
+		return minIdleMillis;
+	}
+	
+	/**
+	 * If the used heap is above the threshold, or has not yet come back under the low-water
+	 * mark since it was, unloads the least recently used lazy content that has been idle long
+	 * enough.  Only one content is unloaded per call, and none until the heap was collected
+	 * after the last one, because only a collection shows what unloading freed; call it
+	 * again later (for example when a screen is hidden) to free more.
+	 * A content that a loaded content depends on is never unloaded.
+	 * @return true if a content was unloaded.
+	 */
+	public final synchronized boolean relieve(){
+		return relieve(null);
+	}
+	
+	private boolean relieve(Content<?> keep){
+		if(heapThreshold <= 0) return false;
+		long collections = collections();
+		if(collections != -1 && collections == unloadCollections) return false; //not collected since the last unload
+		long used = usedHeap();
+		relieving = used > (relieving ? heapLowWater : heapThreshold);
+		if(!relieving) return false;
+		boolean[] needed = new boolean[contents.size];
+		for(Content<?> content : contents){
+			if(!content.loaded) continue;
+			for(String dependency : content.dependencies){
+				int index = indexMap.get(dependency, -1);
+				if(index != -1) needed[index] = true;
+			}
+		}
+		long now = millis();
+		Content<?> oldest = null;
+		for(int i = 0; i < contents.size; i ++){
+			Content<?> content = contents.get(i);
+			if(!content.lazy || !content.loaded || content == keep || needed[i]) continue;
+			if(now - content.lastAccessMillis < minIdleMillis) continue;
+			if(oldest == null || content.lastAccess < oldest.lastAccess) oldest = content;
+		}
+		if(oldest == null) return false;
+		oldest.unload();
+		pressureUnloads ++;
+		unloadCollections = collections;
+		return true;
+	}
+	
+	private HeapPools heap(){
+		if(!heapChecked){
+			heapChecked = true;
+			try{
+				heap = new HeapPools();
+			}catch(Throwable t){
+				heap = null; //no management beans on this platform
+			}
+		}
+		return heap;
+	}
+	
+	/**
+	 * @return bytes of the heap in use, as the last collection left it if the platform can tell.
+	 */
+	long usedHeap(){
+		HeapPools heap = heap();
+		if(heap != null) return heap.usedAfterCollection();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * @return garbage collections so far, or -1 if the platform cannot tell.
+	 */
+	long collections(){
+		HeapPools heap = heap();
+		return heap == null ? -1 : heap.collections();
+	}
+	
+	long millis(){
+		return System.nanoTime() / 1000000L;
+	}
+	
+	/**
+	 * Every get() of a lazy content.  Loads it if this is the first get() or the first after it
+	 * was unloaded, and remembers when it was used.
+	 */
+	private synchronized void access(Content<?> content){
+		if(!content.loaded){ //checked under the lock, another thread may have loaded it
+			loadLazy(content);
+			relieve(content);
+		}
+		content.lastAccess = ++ accessClock;
+		content.lastAccessMillis = millis();
+	}
+	
+	/**
+	 * Loads a content that is not loaded, after the contents it depends on.
+	 */
+	private void loadLazy(Content<?> content){
+		if(content.loaded) return;
+		debug.assertFalse("content dependencies have no cycle", content.loading);
+		content.loading = true;
+		try{
+			for(String dependency : content.dependencies){
+				int index = indexMap.get(dependency, -1);
+				debug.assertTrue("content dependency " + dependency + " exists", index != -1);
+				loadLazy(contents.get(index));
+			}
+			if(!content.initialized) content.initialize();
+			content.load();
+		}finally{
+			content.loading = false;
+		}
+		if(content.lazy){
+			lazyLoads ++;
+			content.lastAccess = ++ accessClock;
+			content.lastAccessMillis = millis();
+		}
+	}
+	
+	/**
+	 * @return How many times a lazy content was loaded by get().
+	 */
+	public final int getLazyLoads(){
+		return lazyLoads;
+	}
+	
+	/**
+	 * @return How many lazy contents were unloaded because the heap crossed the threshold.
+	 */
+	public final int getPressureUnloads(){
+		return pressureUnloads;
+	}
+	
+	private void schedule(int step){
+		Array<String> batchRefs = new Array<>(refs.size);
+		Array<Content<?>> batch = new Array<>(contents.size);
+		boolean[] eager = step == ContentScheduler.LOAD ? eager() : null;
+		for(int i = 0; i < contents.size; i ++){
+			Content<?> content = contents.get(i);
+			if(content.independent) continue;
+			if(step == ContentScheduler.LOAD && !eager[i]) continue; //loads on its first get()
+			for(String dependency : content.dependencies)
+				debug.assertTrue("content dependency " + dependency + " exists", indexMap.containsKey(dependency));
+			batchRefs.add(refs.get(i));
+			batch.add(content);
+		}
+		lastRun = new ContentScheduler(batchRefs, batch);
+		GdxTrace.begin(step == ContentScheduler.INITIALIZE ? "GdxLibrary.create" : "GdxLibrary.load");
+		try{
+			lastRun.run(step, parallel);
+		}finally{
+			GdxTrace.end();
+		}
+	}
+	
+	/**
+	 * @return which contents load() loads: the contents that are not lazy, and every lazy
+	 * content one of them depends on, directly or through other contents.
+	 */
+	private boolean[] eager(){
+		boolean[] eager = new boolean[contents.size];
+		IntArray open = new IntArray();
+		for(int i = 0; i < contents.size; i ++){
+			if(contents.get(i).lazy) continue;
+			eager[i] = true;
+			open.add(i);
+		}
+		while(open.size > 0){
+			for(String dependency : contents.get(open.pop()).dependencies){
+				int index = indexMap.get(dependency, -1);
+				if(index == -1 || eager[index]) continue;
+				eager[index] = true;
+				open.add(index);
+			}
+		}
+		return eager;
+	}
+	
 	/**
 	 * Disposes all its contents.
 	 */
 	public final void destroy(){
-		for(Entry<String, Content<?>> entry : contentMap) if(!entry.value.independent) entry.value.dispose();
+		GdxTrace.begin("GdxLibrary.destroy");
+		try{
+			for(Content<?> content : contents) if(!content.independent) content.dispose();
+		}finally{
+			GdxTrace.end();
+		}
 	}
 	
 	/**
-	 * Initializes all its contents.
+	 * Initializes all its contents.  A content is initialized after the contents it depends on.
 	 */
 	public final void create(){
-		for(Entry<String, Content<?>> entry : contentMap) if(!entry.value.independent) entry.value.initialize();
+		schedule(ContentScheduler.INITIALIZE);
 	}
 	
 	/**
-	 * Loads all its contents.
+	 * Loads all its contents.  A content is loaded after the contents it depends on.
+	 * Lazy contents are skipped; they load the first time get() is called on them.  A lazy
+	 * content that a content which is not lazy depends on is loaded here too.
 	 */
 	public final void load(){
-		for(Entry<String, Content<?>> entry : contentMap) if(!entry.value.independent) entry.value.load();
+		schedule(ContentScheduler.LOAD);
 	}
 	
 	/**
 	 * Unloads all its contents.
 	 */
 	public final void unload(){
-		for(Entry<String, Content<?>> entry : contentMap) if(!entry.value.independent) entry.value.unload();
+		for(Content<?> content : contents){
+			if(content.independent) continue;
+			if(content.lazy && !content.loaded) continue; //never loaded, nothing to unload
+			content.unload();
+		}
 	}
 	
 	/**
-	 * Get the content stored in the library.
+	 * Get the content stored in the library.  If you fetch the content often, for example
+	 * inside render, keep the key returned by addContent and use getContent(Key) instead.
 	 * @param ref Your unique defined reference string
 	 * @param <T> type of content - Any object.
 	 * @return the content you requested.
@@ -72,9 +372,32 @@ public class GdxLibrary {
 	public final <T> Content<T> getContent(String ref){
 		debug.assertNotNull("content ref is not null", ref);
 		debug.assertStringNotEmpty("content ref is not empty", (ref = ref.trim()));
-		debug.assertTrue("content ref exists", contentMap.containsKey(ref));
+		int index = indexMap.get(ref, -1);
+		debug.assertTrue("content ref exists", index != -1);
 		
-		return (Content<T>) contentMap.get(ref);
+		return (Content<T>) contents.get(index);
+	}
+	
+	/**
+	 * Get the content stored in the library by its key.  This is a plain array access.
+	 * @param key The key addContent or getKey returned.
+	 * @param <T> type of content - Any object.
+	 * @return the content you requested.
+	 */
+	@SuppressWarnings("unchecked")
+	public final <T> Content<T> getContent(Key<T> key){
+		debug.assertTrue("content key belongs to this library", key.library == this);
+		return (Content<T>) contents.items[key.index];
+	}
+	
+	/**
+	 * @param ref Your unique defined reference string
+	 * @param <T> type of content - Any object.
+	 * @return The key of the content with the reference.
+	 */
+	@SuppressWarnings("unchecked")
+	public final <T> Key<T> getKey(String ref){
+		return (Key<T>) keyMap.get(getContent(ref));
 	}
 	
 	//for convenience
@@ -82,15 +405,61 @@ public class GdxLibrary {
 		return getContent(ref);
 	}
 	
+	/**
+	 * Stores a content in the library.
+	 * @param ref Your unique defined reference string
+	 * @param content The content.
+	 * @param <T> type of content - Any object.
+	 */
 	public final <T> void setContent(String ref, Content<T> content){
+		addContent(ref, content);
+	}
+	
+	/**
+	 * Stores a content in the library like setContent and returns its key.  A content may be
+	 * stored in several libraries; if it is lazy, the first of them loads and unloads it.
+	 * @param ref Your unique defined reference string
+	 * @param content The content.
+	 * @param <T> type of content - Any object.
+	 * @return A key that gets the content back without a lookup by reference.
+	 */
+	public final <T> Key<T> addContent(String ref, Content<T> content){
 		debug.assertNotNull("content ref is not null", ref);
 		debug.assertNotNull("content is not null", content);
 		debug.assertStringNotEmpty("content ref is not empty", (ref = ref.trim())); //Space is not valid reference
-		debug.assertFalse("content ref is unique", contentMap.containsKey(ref)); //unique reference
-		debug.assertFalse("content object is unique", contentMap.containsValue(content, true));
+		debug.assertFalse("content ref is unique", indexMap.containsKey(ref)); //unique reference
+		debug.assertFalse("content object is unique", keyMap.containsKey(content)); //a content is stored once per library
 		
 		//add reference
-		contentMap.put(ref, content);
+		Key<T> key = new Key<>(this, contents.size, ref);
+		indexMap.put(ref, key.index);
+		keyMap.put(content, key);
+		refs.add(ref);
+		contents.add(content);
+		if(content.key == null) content.key = key;
+		return key;
+	}
+	
+	/**
+	 * Typed handle to a content of a library.  Resolving it is a plain array access, so it
+	 * is the cheapest way to fetch a content, for example inside a screen's render.
+	 * 
+	 * @param <T> type of content - Any object.
+	 */
+	public static final class Key <T>{
+		private final GdxLibrary library;
+		private final int index;
+		private final String ref;
+		
+		private Key(GdxLibrary library, int index, String ref){
+			this.library = library;
+			this.index = index;
+			this.ref = ref;
+		}
+		
+		public String getRef(){
+			return ref;
+		}
 	}
 	
 	/**
@@ -129,6 +498,63 @@ public class GdxLibrary {
 		
 		private boolean independent;
 		
+		private boolean renderThread;
+		
+		private Key<?> key;
+		
+		private boolean lazy;
+		
+		private long lastAccess;
+		
+		private long lastAccessMillis;
+		
+		private boolean loading;
+		
+		/**
+		 * A lazy content is not loaded by the library's load().  It loads on its first get()
+		 * instead, together with the contents it depends on, and may be unloaded again when the
+		 * heap crosses the library's threshold; the next get() then loads it again.  Good for
+		 * big optional data.  A content that is not lazy but depends on it makes it load with
+		 * load() after all.
+		 * @param lazy true to load on first access.
+		 * @return this content
+		 */
+		public final Content<T> setLazy(boolean lazy) {
+			this.lazy = lazy;
+			return this;
+		}
+		
+		public final boolean isLazy() {
+			return lazy;
+		}
+		
+		final Array<String> dependencies = new Array<>();
+		
+		/**
+		 * The library will initialize and load this content only after the given contents.
+		 * @param refs references of the contents this one needs.
+		 * @return this content
+		 */
+		public final Content<T> dependsOn(String... refs){
+			for(String ref : refs) dependencies.add(ref.trim());
+			return this;
+		}
+		
+		/**
+		 * Marks a content that must be initialized and loaded on the render (GL) thread,
+		 * for example anything that creates textures.  Only matters for a parallel library.
+		 * @param renderThread true if the content needs the GL context.
+		 * @return this content
+		 */
+		public final Content<T> setRenderThread(boolean renderThread) {
+			this.renderThread = renderThread;
+			return this;
+		}
+		
+		public final boolean isRenderThread() {
+			return renderThread;
+		}
+		
 		/**
 		 * Tells the library container not to process it when
 		 * it is processing contents in batch.
@@ -151,9 +577,13 @@ public class GdxLibrary {
 		
 		/**
 		 * 
-		 * @return content of object
+		 * @return content of object, loading it first if it is lazy and not loaded.
 		 */
 		public final T get(){
+			if(lazy){
+				if(key != null) key.library.access(this);
+				else if(!loaded) load(); //not stored in a library, nothing to keep track of
+			}
 			return object;
 		}
 		
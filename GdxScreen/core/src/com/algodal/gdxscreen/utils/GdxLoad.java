@@ -15,19 +15,39 @@
  ******************************************************************************/
 package com.algodal.gdxscreen.utils;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.zip.Inflater;
+
 import com.algodal.gdxscreen.utils.GdxDebug.Operation;
+import com.badlogic.gdx.Files.FileType;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.XmlReader;
 import com.badlogic.gdx.utils.XmlReader.Element;
 
 /**
- * Used for loading data from file created with a GdxSave object.
+ * Used for loading data from file created with a GdxSave object.  Both the XML format of
+ * GdxSave.save() and the compressed container of GdxSave.saveCompressed() are recognized.
  */
 public class GdxLoad {
+	static final int MAP_BYTES = 1 << 20; //smaller files are read into the heap instead of mapped
+	
 	public final GdxDebug debug;
 	private final FileHandle handle;
+	private boolean mapped;
+	private boolean parallel;
 	
 	public GdxLoad(FileHandle handle){
 		debug = new GdxDebug().setOn(true);
@@ -35,9 +55,64 @@ public class GdxLoad {
 		this.handle = handle;
 	}
 	
+	/**
+	 * Memory maps the file and reads each unit straight out of the mapped buffer instead of
+	 * parsing the whole file into a char array first.  Useful for large local saves.  Only
+	 * local, external and absolute handles can be mapped; classpath and internal handles
+	 * are always loaded the normal way.  The representation of the loaded data is not
+	 * built when the mapped path is used.
+	 * 
+	 * Files under a megabyte are read into a heap buffer instead: mapping them costs more than
+	 * it saves.  A mapping is released as soon as the file is loaded where the JVM allows it,
+	 * otherwise only once the buffer is garbage collected.  Until then Windows keeps the file
+	 * locked, and saving to it fails.
+	 * @param mapped true to read through a memory mapped buffer.
+	 * @return this object.
+	 */
+	public GdxLoad setMapped(boolean mapped){
+		this.mapped = mapped;
+		return this;
+	}
+	
+	public boolean isMapped(){
+		return mapped;
+	}
+	
+	/**
+	 * Converts the units back to objects in chunks on the common fork-join pool instead of
+	 * one after another.  The objects keep the order they were saved in.  Together with
+	 * setMapped, the units are read and converted a batch at a time, so the text of the
+	 * whole file still never has to be on the heap.
+	 * @param parallel true to convert the units in parallel.
+	 * @return this object.
+	 */
+	public GdxLoad setParallel(boolean parallel){
+		this.parallel = parallel;
+		return this;
+	}
+	
+	public boolean isParallel(){
+		return parallel;
+	}
+	
+	private boolean mappable(){
+		FileType type = handle.type();
+		return type == FileType.Local || type == FileType.External || type == FileType.Absolute;
+	}
+	
 	public LoadData load(){
+		GdxTrace.begin("GdxLoad.load");
+		try{
+			if(compressed()) return loadCompressed();
+			if(mapped && mappable()) return loadMapped();
+			return loadXml();
+		}finally{
+			GdxTrace.end();
+		}
+	}
+	
+	private LoadData loadXml(){
 		XmlReader xmlReader = new XmlReader();
-		Json json = new Json();
 		return debug.assertNoException("No exception during loading", new Operation<LoadData>() {
 			@Override
 			public LoadData resultOf() throws Exception {
@@ -46,26 +121,233 @@ public class GdxLoad {
 				data.setName(element.getAttribute(GdxSave.ROOT_NAME));
 				data.setTime(element.getAttribute(GdxSave.ROOT_TIME));
 				data.setCount(Integer.parseInt(element.getAttribute(GdxSave.ROOT_COUNT)));
-				data.setPlainOldJavaObjects(new Array<Object>());
 				data.setRepresentation(element.toString());
 				debug.assertEqual("root element is " + GdxSave.ROOT_ELEMENT, element.getName(), GdxSave.ROOT_ELEMENT);
+				String[] units = new String[element.getChildCount()];
 				for(int i = 0; i < element.getChildCount(); i ++){
 					Element child = element.getChild(i);
 					debug.assertEqual("child element is " + GdxSave.CHILD_ELEMENT, child.getName(), GdxSave.CHILD_ELEMENT);
-					Object childObject = json.fromJson(Object.class, child.getText());
-					data.getPlainOldJavaObjects().add(childObject);
+					units[i] = child.getText();
 				}
+				data.setPlainOldJavaObjects(readUnits(units, units.length));
 				return data;
 			}
 		});
 	}
 	
+	private Array<Object> readUnits(String[] units, int count){
+		Object[] objects = new Object[count];
+		SaveUnits.readAll(units, count, objects, parallel);
+		return new Array<Object>(objects);
+	}
+	
+	private boolean compressed(){
+		if(!handle.exists() || handle.length() < 4) return false;
+		return debug.assertNoException("No exception reading the save format", new Operation<Boolean>() {
+			@Override
+			public Boolean resultOf() throws Exception {
+				DataInputStream in = new DataInputStream(handle.read());
+				try{
+					return in.readInt() == GdxSave.COMPRESSED_MAGIC;
+				}finally{
+					in.close();
+				}
+			}
+		});
+	}
+	
+	private LoadData loadCompressed(){
+		return debug.assertNoException("No exception during compressed loading", new Operation<LoadData>() {
+			@Override
+			public LoadData resultOf() throws Exception {
+				InputStream stream = handle.read();
+				DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 8192));
+				Inflater inflater = new Inflater();
+				try{
+					in.readInt(); //magic
+					debug.assertEqualInt("compressed save version is supported", in.readInt(), GdxSave.COMPRESSED_VERSION);
+					ChunkBytes stored = new ChunkBytes(8192);
+					ChunkBytes raw = new ChunkBytes(8192);
+					int headerLength = in.readInt();
+					if(headerLength < 0 || headerLength > GdxSave.MAX_HEADER_BYTES) throw new IOException("the header of the save is damaged");
+					raw.fill(headerLength);
+					in.readFully(raw.bytes(), 0, headerLength);
+					if(in.readInt() != raw.checksum()) throw new IOException("the header of the save is damaged");
+					DataInputStream headerIn = new DataInputStream(new ByteArrayInputStream(raw.bytes(), 0, headerLength));
+					final LoadData data = new LoadData();
+					data.setName(headerIn.readUTF());
+					data.setTime(headerIn.readUTF());
+					data.setCount(headerIn.readInt());
+					
+					Object[] objects = new Object[data.getCount()];
+					long fileLength = handle.length();
+					ChunkBytes.Header header = new ChunkBytes.Header();
+					String[] units = new String[0];
+					boolean ended = false, lost = false; //lost: looking for the next marker after damage that was already counted
+					try{
+						while(true){
+							long marker = in.readLong();
+							if(marker != GdxSave.CHUNK_SYNC){
+								if(!lost) data.corruptChunks ++; //the chunk before did not end where its header said
+								while(marker != GdxSave.CHUNK_SYNC) marker = marker << 8 | in.readUnsignedByte();
+							}
+							lost = false;
+							if(!header.read(in) || !fits(header, objects.length, fileLength)){
+								data.corruptChunks ++; //without a header the chunk can not be placed, skip to the next marker
+								lost = true;
+								continue;
+							}
+							if(header.firstUnit == GdxSave.END_OF_CHUNKS){
+								ended = true;
+								break;
+							}
+							
+							stored.fill(header.storedLength);
+							in.readFully(stored.bytes(), 0, header.storedLength);
+							if(units.length < header.unitCount) units = new String[header.unitCount];
+							if(!raw.inflate(inflater, stored, header.rawLength) || raw.checksum() != header.checksum || !split(raw, header.unitCount, units)){
+								data.corruptChunks ++; //the objects of this chunk stay null
+								continue;
+							}
+							Object[] chunkObjects = new Object[header.unitCount];
+							SaveUnits.readAll(units, header.unitCount, chunkObjects, parallel);
+							System.arraycopy(chunkObjects, 0, objects, header.firstUnit, header.unitCount);
+						}
+					}catch(EOFException e){
+						//truncated file
+					}
+					if(!ended && !lost) data.corruptChunks ++; //count the unreadable tail as one lost chunk
+					
+					data.setPlainOldJavaObjects(new Array<Object>(objects));
+					return data;
+				}finally{
+					inflater.end();
+					in.close();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * @return true if the lengths of a header whose own checksum matched are possible, so they
+	 * can be allocated.  Deflate shrinks data by about 1032 times at most.
+	 */
+	private static boolean fits(ChunkBytes.Header header, int count, long fileLength){
+		if(header.firstUnit == GdxSave.END_OF_CHUNKS) return true;
+		return header.firstUnit >= 0 && header.unitCount > 0 && (long)header.firstUnit + header.unitCount <= count
+				&& header.storedLength >= 0 && header.storedLength <= fileLength
+				&& header.rawLength >= 0 && header.rawLength <= GdxSave.MAX_CHUNK_BYTES
+				&& header.rawLength <= header.storedLength * 1032L + 1024L;
+	}
+	
+	/**
+	 * Cuts the content of a chunk into the texts of its units.
+	 * @return false if the lengths of the units do not add up to the content.
+	 */
+	private static boolean split(ChunkBytes raw, int unitCount, String[] units) throws Exception{
+		byte[] bytes = raw.bytes();
+		int offset = 0;
+		for(int i = 0; i < unitCount; i ++){
+			if(offset + 4 > raw.size()) return false;
+			int length = (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+			if(length < 0 || length > raw.size() - offset - 4) return false;
+			units[i] = new String(bytes, offset + 4, length, "UTF-8");
+			offset += 4 + length;
+		}
+		return offset == raw.size();
+	}
+	
+	private LoadData loadMapped(){
+		return debug.assertNoException("No exception during mapped loading", new Operation<LoadData>() {
+			@Override
+			public LoadData resultOf() throws Exception {
+				FileInputStream stream = new FileInputStream(handle.file());
+				MappedByteBuffer mapping = null;
+				try{
+					FileChannel channel = stream.getChannel();
+					long size = channel.size();
+					ByteBuffer buffer;
+					if(size < MAP_BYTES){
+						buffer = ByteBuffer.allocate((int)size);
+						while(buffer.hasRemaining() && channel.read(buffer) != -1);
+						buffer.flip();
+					}else buffer = mapping = channel.map(MapMode.READ_ONLY, 0, size);
+					MappedUnitReader reader = new MappedUnitReader(buffer);
+					debug.assertEqual("root element is " + GdxSave.ROOT_ELEMENT, reader.readRoot(), GdxSave.ROOT_ELEMENT);
+					final LoadData data = new LoadData();
+					data.setName(reader.getRootAttribute(GdxSave.ROOT_NAME));
+					data.setTime(reader.getRootAttribute(GdxSave.ROOT_TIME));
+					data.setCount(Integer.parseInt(reader.getRootAttribute(GdxSave.ROOT_COUNT)));
+					data.setPlainOldJavaObjects(new Array<Object>(data.getCount()));
+					if(!parallel){ //decode as we go so only one unit text is on the heap at a time
+						while(reader.nextUnit()){
+							debug.assertEqual("child element is " + GdxSave.CHILD_ELEMENT, reader.getUnitName(), GdxSave.CHILD_ELEMENT);
+							data.getPlainOldJavaObjects().add(SaveUnits.read(reader.getUnitText()));
+						}
+						return data;
+					}
+					//decode a batch at a time so only the texts of one batch are on the heap at a time
+					String[] units = new String[SaveUnits.batchSize()];
+					Object[] objects = new Object[units.length];
+					int count = 0;
+					while(true){
+						boolean more = reader.nextUnit();
+						if(more){
+							debug.assertEqual("child element is " + GdxSave.CHILD_ELEMENT, reader.getUnitName(), GdxSave.CHILD_ELEMENT);
+							units[count ++] = reader.getUnitText();
+						}
+						if(count == units.length || (!more && count > 0)){
+							SaveUnits.readAll(units, count, objects, true);
+							data.getPlainOldJavaObjects().addAll(objects, 0, count);
+							for(int i = 0; i < count; i ++){
+								units[i] = null;
+								objects[i] = null;
+							}
+							count = 0;
+						}
+						if(!more) return data;
+					}
+				}finally{
+					stream.close();
+					if(mapping != null) unmap(mapping); //the units were copied out of it, nothing reads it any more
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Releases a mapping now instead of when the buffer is collected.  There is no public API
+	 * for it, so it goes through the cleaner of the buffer, and leaves the mapping to the
+	 * collector where the JVM does not allow that.  The buffer must never be read again.
+	 */
+	private static void unmap(MappedByteBuffer buffer){
+		try{
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try{
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //Java 9 and later
+			}catch(NoSuchMethodException e){
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //Java 8
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if(cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+				return;
+			}
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		}catch(Throwable t){
+			//no way to release it on this JVM, the collector will
+		}
+	}
+	
 	public static class LoadData{
 		private Array<Object> plainOldJavaObjects;
 		private String time;
 		private String name;
 		private int count;
 		private String representation;
+		private int corruptChunks;
 		
 		/**
 		 * List of java objects that was saved.  Their field values are specific to what
@@ -117,7 +399,8 @@ public class GdxLoad {
 		}
 
 		/**
-		 * @return the string representation of the data.
+		 * @return the string representation of the data, or null if it was loaded through the mapped path
+		 * or from a compressed save.
 		 */
 		public String getRepresentation() {
 			return representation;
@@ -126,5 +409,16 @@ public class GdxLoad {
 		final void setRepresentation(String representation) {
 			this.representation = representation;
 		}
+		
+		/**
+		 * Only compressed saves can lose part of their data.  The objects of a corrupt chunk
+		 * are null in the list of objects; every other object is still at its saved index.
+		 * A damaged chunk header or sync marker loses only its own chunk, the loader finds
+		 * the next chunk by its marker, and a cut off save counts its missing tail once.
+		 * @return Number of chunks that failed their integrity check.
+		 */
+		public final int getCorruptChunks() {
+			return corruptChunks;
+		}
 	}
 }
@@ -15,11 +15,15 @@
  ******************************************************************************/
 package com.algodal.gdxscreen.utils;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
 import com.algodal.gdxscreen.utils.GdxDebug.Operation;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Preferences;
-import com.badlogic.gdx.utils.reflect.ClassReflection;
-import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
 
 /**
  * GdxPrefs stores Preferences for a Java object and loads it back into the object.
@@ -31,8 +35,16 @@ import com.badlogic.gdx.utils.reflect.Field;
  * @param <PojoType> A type the mostly satisfies the POJO rule.
  */
 public class GdxPrefs<PojoType> {
+	private static final ObjectMap<Class<?>, Accessor[]> plans = new ObjectMap<>();
+	
 	private final Class<PojoType> clazz;
 	private final Preferences prefs;
+	private final Accessor[] accessors;
+	private final Object[] written; //boxed values as they are in the preferences, to find what changed
+	private final long[] writtenBits; //the same for primitive fields, read without boxing
+	private final boolean[] known; //false until a primitive field is saved or loaded once
+	private final boolean[] staged; //saved fields the flush has not put into the preferences yet
+	private final Object stageLock = new Object(); //guards written, writtenBits and staged between save and the flush
 	
 	public final PojoType object;
 	public final GdxDebug debug;
@@ -50,123 +62,292 @@ public class GdxPrefs<PojoType> {
 				return clazz.newInstance();
 			}
 		});
+		accessors = plan(clazz);
+		written = new Object[accessors.length];
+		writtenBits = new long[accessors.length];
+		known = new boolean[accessors.length];
+		staged = new boolean[accessors.length];
 		upload();
 	}
 	
-	private void download(){
-		Field[] fields = ClassReflection.getDeclaredFields(clazz);
-		for(Field field : fields) put(field);
+	/**
+	 * The fields of a class are looked up and made accessible once, no matter how
+	 * many GdxPrefs use the class or how often they save.
+	 */
+	private static Accessor[] plan(Class<?> clazz){
+		synchronized(plans){
+			Accessor[] accessors = plans.get(clazz);
+			if(accessors == null){
+				Array<Accessor> list = new Array<>(Accessor.class);
+				for(Field field : clazz.getDeclaredFields()){
+					if(Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+					int kind = kindOf(field.getType());
+					if(kind == -1) continue; //not a supported type: no effect, as documented
+					field.setAccessible(true); //allow private access, important unless the POJO has only public fields
+					list.add(new Accessor(field, kind));
+				}
+				accessors = list.toArray(Accessor.class);
+				plans.put(clazz, accessors);
+			}
+			return accessors;
+		}
 	}
 	
-	private void put(Field field){
-		field.setAccessible(true); //allow private access, important unless the POJO has only public fields
-		if(field.getType().equals(Integer.class))
-			prefs.putInteger(field.getName(), debug.assertNoException("get integer", getValue(field, Integer.class)));
-		if(field.getType().equals(Short.class))
-			prefs.putInteger(field.getName(), debug.assertNoException("get integer", getValue(field, Short.class)));
-		if(field.getType().equals(int.class))
-			prefs.putInteger(field.getName(), debug.assertNoException("get integer", getValue(field, int.class)));
-		if(field.getType().equals(short.class))
-			prefs.putInteger(field.getName(), debug.assertNoException("get integer", getValue(field, short.class)));
-		else if(field.getType().equals(Long.class))
-			prefs.putLong(field.getName(), debug.assertNoException("get long", getValue(field, Long.class)));
-		else if(field.getType().equals(long.class))
-			prefs.putLong(field.getName(), debug.assertNoException("get long", getValue(field, long.class)));
-		else if(field.getType().equals(Boolean.class))
-			prefs.putBoolean(field.getName(), debug.assertNoException("get boolean", getValue(field, Boolean.class)));
-		else if(field.getType().equals(boolean.class))
-			prefs.putBoolean(field.getName(), debug.assertNoException("get boolean", getValue(field, boolean.class)));
-		else if(field.getType().equals(Float.class) || field.getType().equals(Double.class) || field.getType().equals(float.class) || field.getType().equals(double.class))
-			prefs.putFloat(field.getName(), debug.assertNoException("get float", getValue(field, Float.class)));
-		else if(field.getType().equals(float.class))
-			prefs.putFloat(field.getName(), debug.assertNoException("get float", getValue(field, float.class)));
-		else if(field.getType().equals(String.class))
-			prefs.putString(field.getName(), debug.assertNoException("get string", getValue(field, String.class)));
-		if(field.getType().equals(Character.class) || field.getType().equals(char.class) || field.getType().equals(Byte.class) || field.getType().equals(byte.class))
-			prefs.putString(field.getName(), debug.assertNoException("get string", getStringValueFromCharacter(field)));
+	private static final int INTEGER = 0, LONG = 1, FLOAT = 2, BOOLEAN = 3, STRING = 4, CHARACTER = 5, BYTE = 6;
+	
+	private static int kindOf(Class<?> type){
+		if(type == Integer.class || type == int.class || type == Short.class || type == short.class) return INTEGER;
+		if(type == Long.class || type == long.class) return LONG;
+		if(type == Float.class || type == float.class || type == Double.class || type == double.class) return FLOAT;
+		if(type == Boolean.class || type == boolean.class) return BOOLEAN;
+		if(type == String.class) return STRING;
+		if(type == Character.class || type == char.class) return CHARACTER;
+		if(type == Byte.class || type == byte.class) return BYTE;
+		return -1;
 	}
 	
-	private GdxDebug.Operation<String> getStringValueFromCharacter(Field field){
-		return new Operation<String>() {
-			@Override
-			public String resultOf() throws Exception {
-				if(field.getType().equals(Character.class) || field.getType().equals(char.class)){
-					Character c = (Character)field.get(object);
-					return c.toString();
-				}else if(field.getType().equals(Byte.class) || field.getType().equals(byte.class)){
-					Byte b = (Byte)field.get(object);
-					return b.toString();
-				}
-				
-				return null;
-			}
-		};
+	/**
+	 * Saved your object to a preference file with the name you specify and under libGdx's default save
+	 * location for preferences.  Only the fields that changed since the last save are written, and
+	 * nothing is written or flushed at all if no field changed, so it is cheap to call often.
+	 * With a flush window set (see setFlushWindow) the file is written later on the render thread.
+	 * Then save only copies the changed values under a lock of its own and never waits for a
+	 * flush that is writing the file.
+	 */
+	public void save(){
+		boolean changed;
+		synchronized(stageLock){
+			changed = download();
+		}
+		if(changed) PrefsFlushQueue.request(this);
 	}
 	
-	private GdxDebug.Operation<Void> setStringValueFromCharacter(Field field, String value){
-		return new Operation<Void>() {
-			@Override
-			public Void resultOf() throws Exception {
-				if(field.getType().equals(Character.class) || field.getType().equals(char.class)){
-					Character c = (value == null ) ? 0 : value.toCharArray()[0];
-					field.set(object, c);
-				}else if(field.getType().equals(Byte.class) || field.getType().equals(byte.class)){
-					Byte b = (value == null ) ? 0 : value.getBytes()[0];
-					field.set(object, b);
-				}
-				
-				return null;
+	/**
+	 * Puts the values staged by save into the preferences.  Called by PrefsFlushQueue right
+	 * before it flushes them, with only the flush lock held.
+	 * @return The preferences to flush.
+	 */
+	Preferences apply(){
+		synchronized(stageLock){
+			for(int i = 0; i < accessors.length; i ++){
+				if(!staged[i]) continue;
+				if(accessors[i].primitive) accessors[i].putBits(prefs, writtenBits[i]);
+				else accessors[i].put(prefs, written[i]);
+				staged[i] = false;
 			}
-		};
+		}
+		return prefs;
 	}
 	
-	private <T> GdxDebug.Operation<T> getValue(Field field, Class<T> clazz){
-		return new Operation<T>() {
-			@SuppressWarnings("unchecked")
-			@Override
-			public T resultOf() throws Exception {
-				return (T) field.get(object);
-			}
-		};
+	/**
+	 * Lets the saves of all GdxPrefs share one delayed flush.  Every preferences saved within the
+	 * window is flushed once, together, when the window ends.  Only the timer runs on a
+	 * background thread; the flush is posted to the render thread with Gdx.app.postRunnable,
+	 * because Preferences is not thread-safe.  GdxGame
+	 * flushes whatever is still waiting when the game pauses or is disposed.
+	 * @param millis Length of the window.  0, the default, flushes on every save like before.
+	 */
+	public static void setFlushWindow(long millis){
+		PrefsFlushQueue.setWindow(millis);
 	}
 	
-	private GdxDebug.Operation<Void> setValue(Field field, Object value){
-		return new Operation<Void>() {
-			@Override
-			public Void resultOf() throws Exception {
-				field.set(object, value);
-				return null;
-			}
-		};
+	public static long getFlushWindow(){
+		return PrefsFlushQueue.getWindow();
 	}
 	
 	/**
-	 * Saved your object to a preference file with the name you specify and under libGdx's default save
-	 * location for preferences.
+	 * Flushes every saved but not yet flushed preferences on the calling thread.
 	 */
-	public void save(){
-		download();
-		prefs.flush();
+	public static void flushPending(){
+		PrefsFlushQueue.flushAll();
+	}
+	
+	/**
+	 * @return Number of preferences waiting for the flush window to end.
+	 */
+	public static int getPendingFlushes(){
+		return PrefsFlushQueue.pendingCount();
+	}
+	
+	/**
+	 * @return true if a field of the object has a different value than the one last saved or loaded.
+	 */
+	public boolean isDirty(){
+		for(int i = 0; i < accessors.length; i ++){
+			Accessor accessor = accessors[i];
+			if(accessor.primitive ? !known[i] || accessor.getBits(object) != writtenBits[i] : !same(accessor.get(object), written[i])) return true;
+		}
+		return false;
+	}
+	
+	private boolean download(){
+		boolean changed = false;
+		for(int i = 0; i < accessors.length; i ++){
+			Accessor accessor = accessors[i];
+			if(accessor.primitive){
+				long bits = accessor.getBits(object);
+				if(known[i] && bits == writtenBits[i]) continue;
+				writtenBits[i] = bits;
+				known[i] = true;
+			}else{
+				Object value = accessor.get(object);
+				if(same(value, written[i])) continue;
+				written[i] = value; //boxed values never change, keeping the reference is enough
+			}
+			staged[i] = true;
+			changed = true;
+		}
+		return changed;
 	}
 	
 	private void upload(){
-		Field[] fields = ClassReflection.getDeclaredFields(clazz);
-		for(Field field : fields) take(field);
+		for(int i = 0; i < accessors.length; i ++){
+			Accessor accessor = accessors[i];
+			if(!prefs.contains(accessor.name)) continue; //keep the default of the object
+			if(accessor.primitive){
+				long bits = accessor.takeBits(prefs);
+				accessor.setBits(object, bits);
+				writtenBits[i] = bits;
+				known[i] = true;
+			}else{
+				Object value = accessor.take(prefs);
+				accessor.set(object, value);
+				written[i] = value;
+			}
+		}
 	}
 	
-	private void take(Field field){
-		field.setAccessible(true); //allow private access, important unless the POJO has only public fields
-		if(field.getType().equals(Integer.class) || field.getType().equals(Short.class) || field.getType().equals(int.class) || field.getType().equals(short.class))
-			setValue(field, prefs.getInteger(field.getName(), 0));
-		else if(field.getType().equals(Long.class) || field.getType().equals(long.class))
-			setValue(field, prefs.getLong(field.getName(), 0));
-		else if(field.getType().equals(Boolean.class) || field.getType().equals(boolean.class))
-			setValue(field, prefs.getBoolean(field.getName(), false));
-		else if(field.getType().equals(Float.class) || field.getType().equals(Double.class) || field.getType().equals(float.class) || field.getType().equals(double.class))
-			setValue(field, prefs.getFloat(field.getName(), 0.0f));
-		else if(field.getType().equals(String.class))
-			setValue(field, prefs.getString(field.getName(), null));
-		if(field.getType().equals(Character.class) || field.getType().equals(char.class) || field.getType().equals(Byte.class) || field.getType().equals(byte.class))
-			setStringValueFromCharacter(field, prefs.getString(field.getName(), null));
+	private static boolean same(Object a, Object b){
+		return a == null ? b == null : a.equals(b);
+	}
+	
+	/**
+	 * Reads and writes one field of the POJO and knows how to store it in the preferences.
+	 * Primitive fields are read and written with the typed methods of Field and compared as
+	 * raw bits, so saving a POJO of primitives boxes nothing.
+	 */
+	private static final class Accessor{
+		final Field field;
+		final String name;
+		final Class<?> type;
+		final int kind;
+		final boolean primitive;
+		
+		Accessor(Field field, int kind){
+			this.field = field;
+			this.kind = kind;
+			name = field.getName();
+			type = field.getType();
+			primitive = type.isPrimitive();
+		}
+		
+		Object get(Object object){
+			try{
+				return field.get(object);
+			}catch(IllegalAccessException e){
+				throw new GdxRuntimeException("failed: get " + name, e);
+			}
+		}
+		
+		void set(Object object, Object value){
+			try{
+				field.set(object, value);
+			}catch(IllegalAccessException e){
+				throw new GdxRuntimeException("failed: set " + name, e);
+			}
+		}
+		
+		/**
+		 * @return the value of a primitive field as bits: floats by their raw bits, doubles by the
+		 * bits of the float the preferences keep, booleans as 0 or 1.
+		 */
+		long getBits(Object object){
+			try{
+				if(type == int.class) return field.getInt(object);
+				if(type == float.class) return Float.floatToRawIntBits(field.getFloat(object));
+				if(type == boolean.class) return field.getBoolean(object) ? 1 : 0;
+				if(type == long.class) return field.getLong(object);
+				if(type == double.class) return Float.floatToRawIntBits((float)field.getDouble(object));
+				if(type == short.class) return field.getShort(object);
+				if(type == char.class) return field.getChar(object);
+				return field.getByte(object);
+			}catch(IllegalAccessException e){
+				throw new GdxRuntimeException("failed: get " + name, e);
+			}
+		}
+		
+		void setBits(Object object, long bits){
+			try{
+				if(type == int.class) field.setInt(object, (int)bits);
+				else if(type == float.class) field.setFloat(object, Float.intBitsToFloat((int)bits));
+				else if(type == boolean.class) field.setBoolean(object, bits != 0);
+				else if(type == long.class) field.setLong(object, bits);
+				else if(type == double.class) field.setDouble(object, Float.intBitsToFloat((int)bits));
+				else if(type == short.class) field.setShort(object, (short)bits);
+				else if(type == char.class) field.setChar(object, (char)bits);
+				else field.setByte(object, (byte)bits);
+			}catch(IllegalAccessException e){
+				throw new GdxRuntimeException("failed: set " + name, e);
+			}
+		}
+		
+		/**
+		 * Stores a primitive field the way put stores its boxed value.
+		 */
+		void putBits(Preferences prefs, long bits){
+			if(type == float.class || type == double.class) prefs.putFloat(name, Float.intBitsToFloat((int)bits));
+			else if(type == boolean.class) prefs.putBoolean(name, bits != 0);
+			else if(type == long.class) prefs.putLong(name, bits);
+			else if(type == char.class) prefs.putString(name, String.valueOf((char)bits));
+			else if(type == byte.class) prefs.putString(name, Byte.toString((byte)bits));
+			else prefs.putInteger(name, (int)bits); //int and short
+		}
+		
+		long takeBits(Preferences prefs){
+			if(type == float.class || type == double.class) return Float.floatToRawIntBits(prefs.getFloat(name, 0.0f));
+			if(type == boolean.class) return prefs.getBoolean(name, false) ? 1 : 0;
+			if(type == long.class) return prefs.getLong(name, 0);
+			Object value = take(prefs); //characters and bytes are stored as strings
+			if(type == char.class) return (Character)value;
+			if(type == byte.class) return (Byte)value;
+			return ((Number)value).intValue();
+		}
+		
+		void put(Preferences prefs, Object value){
+			if(value == null){
+				prefs.remove(name);
+				return;
+			}
+			switch(kind){
+			case INTEGER: prefs.putInteger(name, ((Number)value).intValue()); break;
+			case LONG: prefs.putLong(name, (Long)value); break;
+			case FLOAT: prefs.putFloat(name, ((Number)value).floatValue()); break;
+			case BOOLEAN: prefs.putBoolean(name, (Boolean)value); break;
+			default: prefs.putString(name, value.toString()); //string, character and byte
+			}
+		}
+		
+		Object take(Preferences prefs){
+			switch(kind){
+			case INTEGER:
+				int i = prefs.getInteger(name, 0);
+				return (type == Short.class || type == short.class) ? (Object)Short.valueOf((short)i) : (Object)Integer.valueOf(i);
+			case LONG: return prefs.getLong(name, 0);
+			case FLOAT:
+				float f = prefs.getFloat(name, 0.0f);
+				return (type == Double.class || type == double.class) ? (Object)Double.valueOf(f) : (Object)Float.valueOf(f);
+			case BOOLEAN: return prefs.getBoolean(name, false);
+			case STRING: return prefs.getString(name, null);
+			case CHARACTER:
+				String c = prefs.getString(name, "");
+				return c.isEmpty() ? Character.valueOf((char)0) : Character.valueOf(c.charAt(0));
+			default:
+				try{
+					return Byte.valueOf(prefs.getString(name, "0"));
+				}catch(NumberFormatException e){
+					return Byte.valueOf((byte)0);
+				}
+			}
+		}
 	}
 }
@@ -15,12 +15,15 @@
  ******************************************************************************/
 package com.algodal.gdxscreen.utils;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.util.zip.Deflater;
 
 import com.algodal.gdxscreen.utils.GdxDebug.Operation;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.XmlWriter;
 
 /**
@@ -41,6 +44,9 @@ public class GdxSave {
 	private final FileHandle handle;
 	private final String dataName;
 	private final Array<Object> plainOldJavaObjects;
+	private boolean parallel;
+	private int chunkUnits;
+	private SaveReport report;
 	public final GdxDebug debug;
 	
 	public static final String ROOT_ELEMENT = "group";
@@ -50,6 +56,26 @@ public class GdxSave {
 	public static final String ROOT_COUNT = "count";
 	public static final String CHILD_ID = "id";
 	
+	/**
+	 * First four bytes of a compressed save ("GDXC").  GdxLoad uses it to tell the two formats apart.
+	 */
+	public static final int COMPRESSED_MAGIC = 0x47445843;
+	public static final int COMPRESSED_VERSION = 2;
+	/**
+	 * Written in front of every chunk header ("GDXCSYNC"), so a reader that lost its place
+	 * after a damaged header can find the start of the next chunk.
+	 */
+	static final long CHUNK_SYNC = 0x4744584353594e43L;
+	/**
+	 * First unit of the header that ends the chunks.
+	 */
+	static final int END_OF_CHUNKS = -1;
+	/**
+	 * Largest uncompressed chunk and largest file header.  A reader refuses bigger lengths
+	 * instead of allocating them.
+	 */
+	static final int MAX_CHUNK_BYTES = 1 << 28, MAX_HEADER_BYTES = 1 << 18;
+	
 	public GdxSave(FileHandle handle, String dataName){
 		debug = new GdxDebug().setOn(true);
 		debug.assertNotNull("handle is not null", handle);
@@ -58,6 +84,7 @@ public class GdxSave {
 		this.handle = handle;
 		this.dataName = dataName;
 		plainOldJavaObjects = new Array<>();
+		chunkUnits = 64;
 	}
 	
 	/**
@@ -68,25 +95,52 @@ public class GdxSave {
 		return plainOldJavaObjects;
 	}
 	
+	/**
+	 * Converts the objects to JSON in chunks on the common fork-join pool instead of one after
+	 * another.  Worth it for saves with many units on multi-core devices.  The units are still
+	 * written in list order.  Do not change the objects from another thread while saving.
+	 * @param parallel true to convert the objects in parallel.
+	 * @return this object.
+	 */
+	public GdxSave setParallel(boolean parallel){
+		this.parallel = parallel;
+		return this;
+	}
+	
+	public boolean isParallel(){
+		return parallel;
+	}
+	
 	/**
 	 * Saves all objects in the list to the file you specify.  The file is overwritten or created.
 	 * The save format possess additional information such as time of save and number of objects.
 	 * @return String version of the saved data.
 	 */
 	public String save(){
+		GdxTrace.begin("GdxSave.save");
+		try{
+			return saveXml();
+		}finally{
+			GdxTrace.end();
+		}
+	}
+	
+	private String saveXml(){
 		StringWriter stringWriter = new StringWriter();
 		XmlWriter xmlWriter = new XmlWriter(stringWriter);
-		Json json = new Json();
+		final String[] units = new String[plainOldJavaObjects.size];
 		
 		debug.assertNoException("No exception during save", new Operation<Void>() {
 			@Override
 			public Void resultOf() throws Exception {
+				for(int i = 0; i < plainOldJavaObjects.size; i++)
+					debug.assertContructorEmpty("object has null constructor class", plainOldJavaObjects.get(i).getClass());
+				SaveUnits.writeAll(plainOldJavaObjects, units, parallel);
 				xmlWriter.element(ROOT_ELEMENT).attribute(ROOT_NAME, dataName)
 				.attribute(ROOT_TIME, flashTime()).attribute(ROOT_COUNT, Integer.toString(plainOldJavaObjects.size));
-				for(int i = 0; i < plainOldJavaObjects.size; i++){
-					debug.assertContructorEmpty("object has null constructor class", plainOldJavaObjects.get(i).getClass());
+				for(int i = 0; i < units.length; i++){
 					xmlWriter.element(CHILD_ELEMENT).attribute(CHILD_ID, Integer.toString(i));
-					xmlWriter.text(json.toJson(plainOldJavaObjects.get(i), Object.class));
+					xmlWriter.text(units[i]);
 					xmlWriter.pop();
 				}
 				xmlWriter.pop();
@@ -100,6 +154,180 @@ public class GdxSave {
 		return xmlJsonString;
 	}
 	
+	/**
+	 * Sets how many objects are grouped into one chunk of a compressed save.  Smaller chunks lose
+	 * less data when one gets corrupted, bigger chunks compress better.
+	 * @param chunkUnits number of objects per chunk, at least 1.
+	 * @return this object.
+	 */
+	public GdxSave setChunkUnits(int chunkUnits){
+		debug.assertGreaterEqualInt("chunk units is at least 1", chunkUnits, 1);
+		this.chunkUnits = chunkUnits;
+		return this;
+	}
+	
+	public int getChunkUnits(){
+		return chunkUnits;
+	}
+	
+	/**
+	 * Saves all objects in the list to the file you specify as a compressed container.  The objects
+	 * are grouped into chunks which are Deflate compressed and checksummed on their own, so a corrupt
+	 * chunk only loses its own objects.  Every chunk starts with a marker and a header with its own
+	 * checksum, so even a damaged header only loses its chunk: the reader skips to the next marker.
+	 * Chunks are streamed to the file one at a time.  GdxLoad recognizes the format by itself.
+	 * @return The compression ratio and write throughput of this save.
+	 */
+	public SaveReport saveCompressed(){
+		GdxTrace.begin("GdxSave.saveCompressed");
+		try{
+			return saveChunks();
+		}finally{
+			GdxTrace.end();
+		}
+	}
+	
+	private SaveReport saveChunks(){
+		final long start = System.nanoTime();
+		final SaveReport report = new SaveReport();
+		
+		debug.assertNoException("No exception during compressed save", new Operation<Void>() {
+			@Override
+			public Void resultOf() throws Exception {
+				for(int i = 0; i < plainOldJavaObjects.size; i++)
+					debug.assertContructorEmpty("object has null constructor class", plainOldJavaObjects.get(i).getClass());
+				
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(handle.write(false), 8192));
+				Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+				try{
+					out.writeInt(COMPRESSED_MAGIC);
+					out.writeInt(COMPRESSED_VERSION);
+					ChunkBytes raw = new ChunkBytes(8192);
+					DataOutputStream rawOut = new DataOutputStream(raw);
+					rawOut.writeUTF(dataName);
+					rawOut.writeUTF(flashTime());
+					rawOut.writeInt(plainOldJavaObjects.size);
+					out.writeInt(raw.size());
+					out.write(raw.bytes(), 0, raw.size());
+					out.writeInt(raw.checksum());
+					
+					String[] units = new String[Math.min(chunkUnits, plainOldJavaObjects.size)];
+					ChunkBytes stored = new ChunkBytes(8192);
+					ChunkBytes.Header header = new ChunkBytes.Header();
+					for(int from = 0; from < plainOldJavaObjects.size; from += chunkUnits){
+						int to = Math.min(from + chunkUnits, plainOldJavaObjects.size);
+						SaveUnits.writeRange(plainOldJavaObjects.items, from, to, units, parallel);
+						
+						raw.reset();
+						for(int i = 0; i < to - from; i ++){
+							byte[] bytes = units[i].getBytes("UTF-8");
+							rawOut.writeInt(bytes.length);
+							rawOut.write(bytes);
+						}
+						if(raw.size() > MAX_CHUNK_BYTES) throw new IOException("a chunk of " + raw.size() + " bytes is too big, use fewer chunk units");
+						stored.deflate(deflater, raw);
+						
+						header.firstUnit = from;
+						header.unitCount = to - from;
+						header.rawLength = raw.size();
+						header.storedLength = stored.size();
+						header.checksum = raw.checksum();
+						out.writeLong(CHUNK_SYNC);
+						header.write(out);
+						out.write(stored.bytes(), 0, stored.size());
+						
+						report.rawBytes += raw.size();
+						report.storedBytes += stored.size();
+						report.chunks ++;
+					}
+					header.firstUnit = END_OF_CHUNKS;
+					header.unitCount = 0;
+					header.rawLength = 0;
+					header.storedLength = 0;
+					header.checksum = 0;
+					out.writeLong(CHUNK_SYNC);
+					header.write(out);
+				}finally{
+					deflater.end();
+					out.close();
+				}
+				return null;
+			}
+		});
+		
+		report.units = plainOldJavaObjects.size;
+		report.nanos = System.nanoTime() - start;
+		this.report = report;
+		return report;
+	}
+	
+	/**
+	 * @return The report of the last compressed save, or null if there was none.
+	 */
+	public SaveReport getLastReport(){
+		return report;
+	}
+	
+	/**
+	 * What a compressed save wrote and how long it took.
+	 */
+	public static class SaveReport{
+		private int units;
+		private int chunks;
+		private long rawBytes;
+		private long storedBytes;
+		private long nanos;
+		
+		public final int getUnits() {
+			return units;
+		}
+		
+		public final int getChunks() {
+			return chunks;
+		}
+		
+		/**
+		 * @return Size of the objects' JSON before compression.
+		 */
+		public final long getRawBytes() {
+			return rawBytes;
+		}
+		
+		/**
+		 * @return Size of the compressed chunks written to the file.
+		 */
+		public final long getStoredBytes() {
+			return storedBytes;
+		}
+		
+		/**
+		 * @return raw bytes / stored bytes, bigger is better.
+		 */
+		public final float getCompressionRatio() {
+			return storedBytes == 0 ? 1.0f : (float)rawBytes / (float)storedBytes;
+		}
+		
+		/**
+		 * @return Time the whole save took, conversion included.
+		 */
+		public final long getNanos() {
+			return nanos;
+		}
+		
+		/**
+		 * @return raw bytes saved per second.
+		 */
+		public final double getBytesPerSecond() {
+			return nanos == 0 ? 0.0 : rawBytes * 1000000000.0 / nanos;
+		}
+		
+		@Override
+		public String toString() {
+			return units + " units in " + chunks + " chunks, " + rawBytes + " -> " + storedBytes + " bytes (x"
+					+ getCompressionRatio() + "), " + (long)getBytesPerSecond() + " bytes/s";
+		}
+	}
+	
 	private String flashTime(){
 		return new java.util.Date().toString();
 	}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.SerializationException;
+
+/**
+ * Generated serializers for save units.  GdxSerializerProcessor, an annotation processor
+ * shipped apart in the gdxscreen-processor jar, writes a serializer class next to every
+ * class annotated with {@link Direct}.  Put that jar on the annotation processor path of
+ * your project; the game itself never needs it.  The generated code reads and writes the fields
+ * directly, without reflection and without boxing.  Fields of types other than primitives
+ * and String are handed to Json as usual.
+ *
+ * GdxSave uses the serializer of a Direct class by itself.  GdxLoad only trusts the class
+ * names of a save file once they belong to a registered serializer, so call register for
+ * every Direct class before loading, or the units are loaded by Json.  Classes without a
+ * serializer are saved and loaded by Json exactly as before.  A Direct class whose serializer
+ * cannot be found fails instead of falling back to Json.  The GdxScreen jar carries the keep
+ * rules ProGuard and R8 need for the generated classes, in META-INF/proguard/gdxscreen.pro;
+ * add them to your ProGuard configuration if your shrinker does not read them from the jar.
+ *
+ * The text that is written is standard JSON with every field and quoted names, class tag
+ * included.  It is not the same text Json writes, which is minimal and leaves out fields
+ * equal to those of a new object, but it is readable by Json, so files stay readable by the
+ * Json fallback, and the generated code reads what Json wrote.
+ */
+public final class GdxSerializers {
+	/**
+	 * Put this on a save class to have a serializer generated for it.  The class and its
+	 * empty constructor must not be private, nor may the fields that are saved: make a field
+	 * transient to leave it out.  Generic classes are not supported.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	public static @interface Direct{}
+
+	static final String CLASS_TAG = "class";
+	static final String SUFFIX = "_GdxSerializer";
+	private static final Serializer<?> NONE = new Serializer<Object>(Object.class) {
+		@Override
+		protected void writeFields(Object object, Json json, StringBuilder out) {
+		}
+
+		@Override
+		protected Object readFields(JsonValue value, Json json) {
+			return null;
+		}
+	};
+
+	//units are converted on fork-join workers too, so the registry must be safe to share
+	private static final ConcurrentHashMap<Class<?>, Serializer<?>> serializers = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, Serializer<?>> serializersByName = new ConcurrentHashMap<>();
+
+	private GdxSerializers(){}
+
+	/**
+	 * Registers the generated serializer of a Direct class, so GdxLoad uses it too.
+	 * @param clazz The save class.
+	 */
+	public static void register(Class<?> clazz){
+		Serializer<?> serializer = generated(clazz);
+		if(serializer == null) throw new GdxRuntimeException("failed: " + clazz.getName() + " has a generated serializer");
+		register(serializer);
+	}
+
+	/**
+	 * Registers a serializer written by hand.
+	 * @param serializer The serializer.
+	 */
+	public static void register(Serializer<?> serializer){
+		serializers.put(serializer.type, serializer);
+		serializersByName.put(serializer.type.getName(), serializer);
+	}
+
+	/**
+	 * Go back to saving the class with Json.
+	 * @param clazz The save class.
+	 */
+	public static void unregister(Class<?> clazz){
+		serializers.put(clazz, NONE);
+		serializersByName.remove(clazz.getName());
+	}
+
+	public static boolean isRegistered(Class<?> clazz){
+		return serializersByName.get(clazz.getName()) != null;
+	}
+
+	/**
+	 * @return the serializer to save an object of the class with, or null for Json.
+	 */
+	static Serializer<?> find(Class<?> clazz){
+		Serializer<?> serializer = serializers.get(clazz);
+		if(serializer == null){
+			boolean direct = clazz.isAnnotationPresent(Direct.class);
+			serializer = direct ? generated(clazz) : null;
+			if(direct && serializer == null) throw new GdxRuntimeException("failed: Direct class "
+					+ clazz.getName() + " has a generated serializer, is gdxscreen-processor on the annotation processor path and "
+					+ generatedName(clazz) + " kept by the shrinker?");
+			if(serializer != null) register(serializer);
+			else serializers.putIfAbsent(clazz, NONE); //remember the answer, the annotation lookup is not free
+			serializer = serializers.get(clazz);
+		}
+		return serializer == NONE ? null : serializer;
+	}
+
+	/**
+	 * Only registered serializers are found, a class name read from a file never loads a class.
+	 * @return the serializer to load a unit of the class with, or null for Json.
+	 */
+	static Serializer<?> find(String className){
+		return className == null ? null : serializersByName.get(className);
+	}
+
+	/**
+	 * @return the serializer GdxSerializerProcessor generated for the class, or null if there is none.
+	 */
+	private static Serializer<?> generated(Class<?> clazz){
+		try{
+			Class<?> generated = Class.forName(generatedName(clazz), true, clazz.getClassLoader());
+			return (Serializer<?>)generated.getConstructor().newInstance();
+		}catch(ClassNotFoundException e){
+			return null; //the processor did not run on this class
+		}catch(Exception e){
+			throw new GdxRuntimeException("failed: the generated serializer of " + clazz.getName() + " can be created", e);
+		}
+	}
+
+	/**
+	 * @return the binary name of the serializer generated for the class: its nested names joined
+	 * with '_' and SUFFIX added, in the package of the class.
+	 */
+	static String generatedName(Class<?> clazz){
+		String name = clazz.getName();
+		int dot = name.lastIndexOf('.');
+		return name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + SUFFIX;
+	}
+
+	/**
+	 * Reads and writes the fields of one class.  The class tag and the braces around the
+	 * fields are written by the base class; writeFields starts every field with field().
+	 */
+	public static abstract class Serializer<T>{
+		private final Class<T> type;
+		private final String prefix;
+
+		protected Serializer(Class<T> type){
+			this.type = type;
+			StringBuilder out = new StringBuilder();
+			out.append("{\"").append(CLASS_TAG).append("\":");
+			value(out, type.getName());
+			prefix = out.toString();
+		}
+
+		public final Class<T> getType(){
+			return type;
+		}
+
+		protected abstract void writeFields(T object, Json json, StringBuilder out);
+
+		/**
+		 * @param value the JSON object of a unit, class tag included.
+		 * @return a new object with the fields of value.
+		 */
+		protected abstract T readFields(JsonValue value, Json json);
+
+		final String write(Object object, Json json, StringBuilder out){
+			out.setLength(0);
+			out.append(prefix);
+			writeFields(type.cast(object), json, out);
+			return out.append('}').toString();
+		}
+
+		final Object read(JsonValue value, Json json){
+			return readFields(value, json);
+		}
+
+		/**
+		 * Fails the way Json does for a field the class does not have.
+		 */
+		protected final void unknownField(JsonValue child){
+			SerializationException e = new SerializationException("Field not found: " + child.name + " (" + type.getName() + ")");
+			e.addTrace(child.trace());
+			throw e;
+		}
+
+		protected static void field(StringBuilder out, String name){
+			out.append(",\"").append(name).append("\":");
+		}
+
+		protected static void value(StringBuilder out, int value){
+			out.append(value);
+		}
+
+		protected static void value(StringBuilder out, long value){
+			out.append(value);
+		}
+
+		/**
+		 * NaN and the infinities are written unquoted, exactly as Json writes them.  JsonReader
+		 * reads them back as strings, which asFloat turns into the same values again.
+		 */
+		protected static void value(StringBuilder out, float value){
+			out.append(value);
+		}
+
+		/**
+		 * @see #value(StringBuilder, float)
+		 */
+		protected static void value(StringBuilder out, double value){
+			out.append(value);
+		}
+
+		protected static void value(StringBuilder out, boolean value){
+			out.append(value);
+		}
+
+		protected static void value(StringBuilder out, char value){
+			quote(out, String.valueOf(value));
+		}
+
+		protected static void value(StringBuilder out, String value){
+			if(value == null) out.append("null");
+			else quote(out, value);
+		}
+
+		/**
+		 * Writes a value of any other type through Json.
+		 * @param type the declared type of the field.
+		 */
+		protected static void value(StringBuilder out, Json json, Object value, Class<?> type){
+			if(value == null) out.append("null");
+			else out.append(json.toJson(value, type));
+		}
+
+		/**
+		 * Writes a JSON string.  '&lt;' and '&amp;' are escaped too because the unit text ends up inside XML.
+		 */
+		private static void quote(StringBuilder out, String string){
+			out.append('"');
+			for(int i = 0, n = string.length(); i < n; i ++){
+				char c = string.charAt(i);
+				switch(c){
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				case '<': out.append("\\u003c"); break;
+				case '&': out.append("\\u0026"); break;
+				default:
+					if(c < 0x20){
+						String hex = Integer.toHexString(c);
+						out.append("\\u");
+						for(int p = hex.length(); p < 4; p ++) out.append('0');
+						out.append(hex);
+					}else out.append(c);
+				}
+			}
+			out.append('"');
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * GdxTrace records timed scopes for a timeline view.  Wrap the code to measure in
+ * begin(name) and end(); each thread records into its own ring buffer, created once with a
+ * fixed number of events, so recording neither locks nor allocates.  When the ring is full
+ * the oldest events are overwritten.  export() writes the Chrome trace event format, which
+ * chrome://tracing and Perfetto open.
+ *
+ * While tracing is off, begin and end only read one flag.  Pass names that already exist
+ * (constants, references) rather than building them, or the call allocates before the flag
+ * is even read.
+ *
+ * The buffer of a thread that ended is kept so its events can still be exported, but only
+ * a few of them (see setKeptEndedThreads): beyond that a new thread takes over the buffer of
+ * the thread that ended first, so short lived threads do not pile up buffers.
+ */
+public final class GdxTrace {
+	private static volatile boolean enabled;
+	//set on any thread, read by the threads that start recording
+	private static volatile int capacity = 16384;
+	private static volatile int keptEndedThreads = 8;
+	private static volatile long origin = System.nanoTime();
+	private static final Array<Buffer> buffers = new Array<>(); //in the order their threads started recording, guarded by itself
+	private static final ThreadLocal<Buffer> local = new ThreadLocal<Buffer>(){
+		@Override
+		protected Buffer initialValue() {
+			synchronized(buffers){
+				int events = capacity;
+				Buffer buffer = takeEnded(events);
+				if(buffer == null) buffer = new Buffer(events);
+				buffer.attach(Thread.currentThread());
+				buffers.add(buffer);
+				return buffer;
+			}
+		}
+	};
+
+	private GdxTrace(){}
+
+	/**
+	 * Turns tracing on or off for every thread.
+	 */
+	public static void setEnabled(boolean enabled){
+		GdxTrace.enabled = enabled;
+	}
+
+	public static boolean isEnabled(){
+		return enabled;
+	}
+
+	/**
+	 * @param events Size of the ring buffer of the threads that record for the first time from now on.
+	 */
+	public static void setCapacity(int events){
+		capacity = Math.max(16, events);
+	}
+
+	/**
+	 * @param threads How many buffers of threads that ended are kept for export before new
+	 * threads start to take them over.
+	 */
+	public static void setKeptEndedThreads(int threads){
+		keptEndedThreads = Math.max(0, threads);
+	}
+
+	/**
+	 * Takes the buffer of the thread that ended first out of the list, if more buffers of
+	 * ended threads are kept than allowed.  Buffers of another capacity are dropped instead.
+	 */
+	private static Buffer takeEnded(int capacity){
+		int ended = 0, first = -1;
+		for(int i = 0; i < buffers.size; i ++){
+			if(buffers.get(i).isAlive()) continue;
+			if(first == -1) first = i;
+			ended ++;
+		}
+		if(ended < keptEndedThreads || first == -1) return null;
+		Buffer buffer = buffers.removeIndex(first);
+		return buffer.names.length == capacity ? buffer : null;
+	}
+
+	/**
+	 * Starts a scope on the calling thread.
+	 * @param name Shown on the timeline.
+	 */
+	public static void begin(String name){
+		if(!enabled) return;
+		local.get().add(name, true);
+	}
+
+	/**
+	 * Ends the innermost scope of the calling thread.
+	 */
+	public static void end(){
+		if(!enabled) return;
+		local.get().add(null, false);
+	}
+
+	/**
+	 * Forgets everything recorded so far, and the buffers of the threads that ended.
+	 */
+	public static void clear(){
+		synchronized(buffers){
+			for(int i = buffers.size - 1; i >= 0; i --){
+				if(buffers.get(i).isAlive()) buffers.get(i).clear();
+				else buffers.removeIndex(i);
+			}
+		}
+		origin = System.nanoTime();
+	}
+
+	/**
+	 * Writes the Chrome trace JSON of everything recorded.  Export while the traced threads are
+	 * quiet; events recorded during the export may be cut off.
+	 */
+	public static void export(Writer writer) throws IOException{
+		writer.write("{\"traceEvents\":[");
+		boolean first = true;
+		synchronized(buffers){
+			for(int i = 0; i < buffers.size; i ++) first = buffers.get(i).export(writer, first);
+		}
+		writer.write("],\"displayTimeUnit\":\"ms\"}");
+	}
+
+	/**
+	 * Writes the Chrome trace JSON of everything recorded to a file.
+	 */
+	public static void export(FileHandle file){
+		Writer writer = file.writer(false, "UTF-8");
+		try{
+			export(writer);
+		}catch(IOException e){
+			throw new GdxRuntimeException(e);
+		}finally{
+			try{
+				writer.close();
+			}catch(IOException e){
+				//nothing left to do
+			}
+		}
+	}
+
+	private static final class Buffer{
+		private WeakReference<Thread> thread;
+		long tid;
+		String threadName;
+		final String[] names;
+		final long[] times;
+		final boolean[] begins;
+		int next, size;
+
+		Buffer(int capacity){
+			names = new String[capacity];
+			times = new long[capacity];
+			begins = new boolean[capacity];
+		}
+
+		/**
+		 * Makes the buffer record for a thread, dropping what another thread recorded.
+		 */
+		void attach(Thread thread){
+			this.thread = new WeakReference<>(thread);
+			tid = thread.getId();
+			threadName = thread.getName();
+			clear();
+		}
+
+		boolean isAlive(){
+			Thread owner = thread.get();
+			return owner != null && owner.isAlive();
+		}
+
+		void add(String name, boolean begin){
+			int i = next;
+			names[i] = name;
+			begins[i] = begin;
+			times[i] = System.nanoTime();
+			next = i + 1 == names.length ? 0 : i + 1;
+			if(size < names.length) size ++;
+		}
+
+		void clear(){
+			size = 0;
+			next = 0;
+		}
+
+		boolean export(Writer writer, boolean first) throws IOException{
+			int count = size, start = (next - count + names.length) % names.length;
+			if(count == 0) return first;
+			if(!first) writer.write(',');
+			writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + tid + ",\"args\":{\"name\":");
+			string(writer, threadName);
+			writer.write("}}");
+			int depth = 0;
+			for(int k = 0; k < count; k ++){
+				int i = (start + k) % names.length;
+				if(!begins[i] && depth == 0) continue; //its begin was overwritten
+				depth += begins[i] ? 1 : -1;
+				writer.write(",{\"ph\":\"");
+				writer.write(begins[i] ? 'B' : 'E');
+				writer.write("\",\"pid\":1,\"tid\":" + tid + ",\"ts\":" + (times[i] - origin) / 1000.0);
+				if(begins[i]){
+					writer.write(",\"name\":");
+					string(writer, names[i]);
+				}
+				writer.write('}');
+			}
+			return false;
+		}
+
+		private static void string(Writer writer, String value) throws IOException{
+			if(value == null){
+				writer.write("null");
+				return;
+			}
+			writer.write('"');
+			for(int i = 0; i < value.length(); i ++){
+				char c = value.charAt(i);
+				if(c == '"' || c == '\\') writer.write('\\');
+				if(c < 0x20) writer.write(String.format("\\u%04x", (int)c));
+				else writer.write(c);
+			}
+			writer.write('"');
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap as the last garbage collection left it, which is what is really
+ * live, unlike totalMemory() - freeMemory() that counts garbage too.  Kept apart from
+ * GdxLibrary so that platforms without java.lang.management, such as Android, only fall
+ * back to the runtime numbers.
+ */
+final class HeapPools {
+	private final MemoryPoolMXBean[] pools;
+	private final GarbageCollectorMXBean[] collectors;
+
+	HeapPools() throws Throwable{
+		List<MemoryPoolMXBean> list = new ArrayList<>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) list.add(pool);
+		if(list.isEmpty()) throw new UnsupportedOperationException("no heap pool reports its collection usage");
+		pools = list.toArray(new MemoryPoolMXBean[list.size()]);
+		List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+		collectors = beans.toArray(new GarbageCollectorMXBean[beans.size()]);
+	}
+
+	/**
+	 * @return bytes used in the heap right after the last collection of each pool, 0 before the first.
+	 */
+	long usedAfterCollection(){
+		long used = 0;
+		for(int i = 0; i < pools.length; i ++){
+			MemoryUsage usage = pools[i].getCollectionUsage();
+			if(usage != null) used += usage.getUsed();
+		}
+		return used;
+	}
+
+	/**
+	 * @return collections so far, over all collectors.
+	 */
+	long collections(){
+		long count = 0;
+		for(int i = 0; i < collectors.length; i ++) count += Math.max(0, collectors[i].getCollectionCount());
+		return count;
+	}
+}
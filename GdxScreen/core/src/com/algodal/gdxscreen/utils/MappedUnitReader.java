@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Walks the group / unit layout written by GdxSave directly over a (memory mapped)
+ * byte buffer.  Only the text of one unit at a time is copied out of the buffer, so
+ * the whole file never has to live on the heap.  This is not a general XML reader:
+ * it understands exactly what GdxSave writes and nothing more.
+ */
+final class MappedUnitReader {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+	private final int limit;
+	private final ObjectMap<String, String> rootAttributes;
+	private int position;
+	private byte[] scratch;
+	private String rootName;
+	private String unitName;
+	private String unitText;
+
+	MappedUnitReader(ByteBuffer buffer){
+		this.buffer = buffer;
+		limit = buffer.limit();
+		rootAttributes = new ObjectMap<>();
+		scratch = new byte[256];
+	}
+
+	/**
+	 * Reads the opening tag of the root element.  Must be called once before nextUnit().
+	 * @return the name of the root element.
+	 */
+	String readRoot(){
+		//skip a prolog or comments if someone added them by hand
+		while(true){
+			skipWhitespace();
+			if(position + 1 < limit && buffer.get(position) == '<' && (buffer.get(position + 1) == '?' || buffer.get(position + 1) == '!'))
+				position = indexOf('>', position) + 1;
+			else break;
+		}
+		rootName = readOpenTag(rootAttributes);
+		return rootName;
+	}
+
+	String getRootAttribute(String name){
+		return rootAttributes.get(name);
+	}
+
+	/**
+	 * Moves to the next child element of the root.
+	 * @return false when the closing tag of the root is reached.
+	 */
+	boolean nextUnit(){
+		skipWhitespace();
+		if(position + 1 >= limit || (buffer.get(position) == '<' && buffer.get(position + 1) == '/')) return false;
+		unitName = readOpenTag(null);
+		if(buffer.get(position - 2) == '/'){ //self closing unit, no text
+			unitText = "";
+			return true;
+		}
+		int textStart = position;
+		int textEnd = indexOfClosingTag(unitName, textStart);
+		unitText = decode(textStart, textEnd);
+		position = indexOf('>', textEnd) + 1;
+		return true;
+	}
+
+	String getUnitName(){
+		return unitName;
+	}
+
+	/**
+	 * @return The trimmed and unescaped text of the current unit.
+	 */
+	String getUnitText(){
+		return unitText;
+	}
+
+	private String readOpenTag(ObjectMap<String, String> attributes){
+		if(buffer.get(position) != '<') throw new IllegalStateException("expected '<' at byte " + position);
+		position ++;
+		int nameStart = position;
+		while(position < limit && !isWhitespace(buffer.get(position)) && buffer.get(position) != '>' && buffer.get(position) != '/') position ++;
+		String name = decode(nameStart, position);
+
+		while(true){
+			skipWhitespace();
+			byte b = buffer.get(position);
+			if(b == '/'){ position += 2; break; }
+			if(b == '>'){ position ++; break; }
+			int attributeStart = position;
+			int equals = indexOf('=', attributeStart);
+			int valueStart = indexOf('"', equals) + 1;
+			int valueEnd = indexOf('"', valueStart);
+			if(attributes != null) attributes.put(decode(attributeStart, equals).trim(), decode(valueStart, valueEnd));
+			position = valueEnd + 1;
+		}
+		return name;
+	}
+
+	private int indexOfClosingTag(String name, int from){
+		int length = name.length();
+		for(int i = from; i + length + 1 < limit; i ++){
+			if(buffer.get(i) != '<' || buffer.get(i + 1) != '/') continue;
+			boolean match = true;
+			for(int j = 0; j < length && match; j ++) match = buffer.get(i + 2 + j) == name.charAt(j);
+			if(match) return i;
+		}
+		throw new IllegalStateException("no closing tag for " + name);
+	}
+
+	private int indexOf(char c, int from){
+		for(int i = from; i < limit; i ++) if(buffer.get(i) == c) return i;
+		throw new IllegalStateException("expected '" + c + "' after byte " + from);
+	}
+
+	private void skipWhitespace(){
+		while(position < limit && isWhitespace(buffer.get(position))) position ++;
+	}
+
+	private static boolean isWhitespace(byte b){
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	private String decode(int start, int end){
+		while(start < end && isWhitespace(buffer.get(start))) start ++;
+		while(end > start && isWhitespace(buffer.get(end - 1))) end --;
+		int length = end - start;
+		if(scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.get(scratch, 0, length);
+		String text = new String(scratch, 0, length, UTF8);
+		return text.indexOf('&') == -1 ? text : unescape(text);
+	}
+
+	private static String unescape(String text){
+		return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+	}
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Collects the flush requests of every GdxPrefs and performs them together once the
+ * flush window has passed.  A Preferences that is saved several times inside one window
+ * is flushed once.
+ *
+ * Only the timer of the window runs on a background thread.  Preferences is not
+ * thread-safe, so when the window ends the flush is posted to the render thread with
+ * Gdx.app.postRunnable.  Only the flush puts values into the Preferences and writes them,
+ * one flush at a time under flushLock.  With a window GdxPrefs.save never takes flushLock,
+ * so a save from another thread never waits for the disk.
+ */
+final class PrefsFlushQueue {
+	private static final Object lock = new Object(); //guards pending and scheduled
+	private static final Object flushLock = new Object(); //held while preferences are written or flushed
+	private static final Array<GdxPrefs<?>> pending = new Array<>();
+	private static final Array<GdxPrefs<?>> flushing = new Array<>();
+	private static final Array<Preferences> flushed = new Array<>();
+	private static boolean scheduled;
+	private static long windowMillis;
+	private static ScheduledExecutorService executor;
+
+	private static final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushAll();
+		}
+	};
+	private static final Runnable windowEnded = new Runnable() {
+		@Override
+		public void run() {
+			Gdx.app.postRunnable(flushTask);
+		}
+	};
+
+	private PrefsFlushQueue(){}
+
+	static void setWindow(long millis){
+		synchronized(lock){
+			windowMillis = millis;
+		}
+		if(millis <= 0) flushAll(); //nothing may stay queued once the queue is turned off
+	}
+
+	static long getWindow(){
+		synchronized(lock){
+			return windowMillis;
+		}
+	}
+
+	/**
+	 * Flushes the preferences now if there is no window, otherwise queues it.
+	 */
+	static void request(GdxPrefs<?> prefs){
+		synchronized(lock){
+			if(windowMillis > 0){
+				if(!pending.contains(prefs, true)) pending.add(prefs);
+				if(!scheduled){
+					scheduled = true;
+					executor().schedule(windowEnded, windowMillis, TimeUnit.MILLISECONDS);
+				}
+				return;
+			}
+		}
+		synchronized(flushLock){ //waits only for a flush left over from a window
+			prefs.apply().flush();
+		}
+	}
+
+	/**
+	 * Writes every queued preferences on the calling thread, after a flush that is already
+	 * running on another thread.
+	 */
+	static void flushAll(){
+		synchronized(flushLock){
+			synchronized(lock){
+				flushing.addAll(pending);
+				pending.clear();
+				scheduled = false; //a task that is still scheduled will find nothing to do
+			}
+			for(int i = 0; i < flushing.size; i ++){
+				Preferences preferences = flushing.get(i).apply();
+				if(!flushed.contains(preferences, true)) flushed.add(preferences); //GdxPrefs of the same name share it
+			}
+			for(int i = 0; i < flushed.size; i ++) flushed.get(i).flush();
+			flushing.clear();
+			flushed.clear();
+		}
+	}
+
+	static int pendingCount(){
+		synchronized(lock){
+			return pending.size;
+		}
+	}
+
+	private static ScheduledExecutorService executor(){
+		if(executor == null) executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GdxPrefs flush window");
+				thread.setDaemon(true); //never keep the application alive
+				return thread;
+			}
+		});
+		return executor;
+	}
+}
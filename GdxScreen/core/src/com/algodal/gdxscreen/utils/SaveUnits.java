@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.algodal.gdxscreen.utils.GdxSerializers.Serializer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * Converts save units to and from their JSON text, either one after another on the
+ * calling thread or split into chunks on the common fork-join pool.  A conversion
+ * started from inside a fork-join pool runs on that pool instead, so the number of
+ * cores used can be chosen by the caller.  Json is not thread safe, so every thread
+ * gets its own instance.  The order of the units is
+ * always kept: unit i is written to slot i no matter which thread converted it.
+ * Classes with a generated serializer (see GdxSerializers) skip Json's reflection.
+ */
+final class SaveUnits {
+	/**
+	 * Below this many units per chunk the fork-join overhead costs more than it saves.
+	 */
+	static final int MIN_CHUNK = 16;
+
+	private static final ThreadLocal<Json> json = new ThreadLocal<Json>(){
+		@Override
+		protected Json initialValue() {
+			return new Json();
+		}
+	};
+
+	private static final ThreadLocal<JsonReader> reader = new ThreadLocal<JsonReader>(){
+		@Override
+		protected JsonReader initialValue() {
+			return new JsonReader();
+		}
+	};
+
+	private static final ThreadLocal<StringBuilder> builder = new ThreadLocal<StringBuilder>(){
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	private SaveUnits(){}
+
+	static String write(Object object) throws Exception{
+		Serializer<?> serializer = GdxSerializers.find(object.getClass());
+		if(serializer != null) return serializer.write(object, json.get(), builder.get());
+		return json.get().toJson(object, Object.class);
+	}
+
+	static Object read(String text) throws Exception{
+		JsonValue value = reader.get().parse(text);
+		Serializer<?> serializer = value.isObject() ? GdxSerializers.find(value.getString(GdxSerializers.CLASS_TAG, null)) : null;
+		if(serializer != null) return serializer.read(value, json.get());
+		return json.get().readValue(Object.class, null, value);
+	}
+
+	/**
+	 * @param objects the units to convert.
+	 * @param texts receives the JSON of unit i in slot i.
+	 * @param parallel split the work over the fork-join pool.
+	 */
+	static void writeAll(Array<Object> objects, String[] texts, boolean parallel){
+		writeRange(objects.items, 0, objects.size, texts, parallel);
+	}
+
+	/**
+	 * @param items the units to convert.
+	 * @param from first unit to convert.
+	 * @param to one past the last unit to convert.
+	 * @param texts receives the JSON of unit i in slot i - from.
+	 * @param parallel split the work over the fork-join pool.
+	 */
+	static void writeRange(Object[] items, int from, int to, String[] texts, boolean parallel){
+		run(new Chunk(items, texts, true, from, to, from, chunkSize(to - from, parallel)));
+	}
+
+	/**
+	 * @param texts the JSON of each unit.
+	 * @param count number of texts to convert.
+	 * @param objects receives the object of unit i in slot i.
+	 * @param parallel split the work over the fork-join pool.
+	 */
+	static void readAll(String[] texts, int count, Object[] objects, boolean parallel){
+		run(new Chunk(texts, objects, false, 0, count, 0, chunkSize(count, parallel)));
+	}
+
+	/**
+	 * @return how many units to convert at once to keep every core of the pool busy.
+	 */
+	static int batchSize(){
+		return parallelism() * 4 * MIN_CHUNK;
+	}
+
+	private static int parallelism(){
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		return pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+	}
+
+	private static int chunkSize(int count, boolean parallel){
+		if(!parallel) return Integer.MAX_VALUE;
+		int chunks = parallelism() * 4; //a few chunks per core keeps all cores busy
+		return Math.max(MIN_CHUNK, (count + chunks - 1) / chunks);
+	}
+
+	private static void run(Chunk chunk){
+		if(chunk.to - chunk.from <= chunk.size) chunk.compute(); //no need to involve the pool
+		else if(ForkJoinTask.inForkJoinPool()) chunk.invoke(); //forks go to the pool of the caller
+		else ForkJoinPool.commonPool().invoke(chunk);
+	}
+
+	private static class Chunk extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+
+		private final Object[] in;
+		private final Object[] out;
+		private final boolean writing;
+		private final int from, to, offset, size;
+
+		Chunk(Object[] in, Object[] out, boolean writing, int from, int to, int offset, int size){
+			this.in = in;
+			this.out = out;
+			this.writing = writing;
+			this.from = from;
+			this.to = to;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > size){
+				int middle = (from + to) >>> 1;
+				invokeAll(new Chunk(in, out, writing, from, middle, offset, size), new Chunk(in, out, writing, middle, to, offset, size));
+				return;
+			}
+			GdxTrace.begin(writing ? "SaveUnits.write" : "SaveUnits.read");
+			try{
+				if(writing) for(int i = from; i < to; i ++) out[i - offset] = write(in[i]);
+				else for(int i = from; i < to; i ++) out[i - offset] = read((String)in[i]);
+			}catch(Exception e){
+				throw new GdxRuntimeException(e);
+			}finally{
+				GdxTrace.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.SynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+public class GdxAllocationsTest {
+	public static class Marker{}
+
+	private static class MarkerLoader extends SynchronousAssetLoader<Marker, AssetLoaderParameters<Marker>>{
+		MarkerLoader(){
+			super(new InternalFileHandleResolver());
+		}
+
+		@Override
+		public Marker load(AssetManager assetManager, String fileName, FileHandle file, AssetLoaderParameters<Marker> parameter) {
+			return new Marker();
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, AssetLoaderParameters<Marker> parameter) {
+			return null;
+		}
+	}
+
+	public static class Counted extends GdxScreen{
+		int renders;
+
+		@Override
+		public void render(float delta) {
+			renders ++;
+		}
+	}
+
+	public static class First extends Counted{}
+	public static class Second extends Counted{}
+
+	/**
+	 * Two screens that share an asset, so switching between them unloads nothing and the
+	 * frames of a switch should allocate as little as any other.
+	 */
+	private static class Switching extends GdxGame{
+		@Override
+		public void initialize() {
+			assetManager.setLoader(Marker.class, new MarkerLoader());
+			registerAsset("marker", new AssetDescriptor<>("marker", Marker.class));
+			registerScreen("first", First.class);
+			registerScreen("second", Second.class);
+			registerTransition("cut", GdxTransition.class);
+			attachAssetToScreen("first", "marker");
+			attachAssetToScreen("second", "marker");
+		}
+	}
+
+	private static HeadlessApplication application;
+
+	@BeforeClass
+	public static void start(){
+		application = new HeadlessApplication(new ApplicationAdapter(){});
+		Gdx.gl = Gdx.gl20 = new HeadlessGL20();
+	}
+
+	@AfterClass
+	public static void stop(){
+		Gdx.gl = Gdx.gl20 = null;
+		application.exit();
+	}
+
+	/**
+	 * Renders a frame on this thread and switches to the other screen every few frames.
+	 */
+	private static void frames(GdxGame game, int count){
+		for(int i = 0; i < count; i ++){
+			if(i % 4 == 0) game.postLaunch("cut", game.getScreen() == game.screenMap.get("first") ? "second" : "first");
+			game.render();
+		}
+	}
+
+	@Test
+	public void switchingScreensAllocatesNothing(){
+		Switching game = new Switching();
+		game.create();
+		frames(game, 400); //warm up: load the asset, fill the caches and let the JIT settle
+		if(!game.allocations.setEnabled(true)) return; //the JVM cannot count allocations
+		Counted first = (Counted)game.screenMap.get("first"), second = (Counted)game.screenMap.get("second");
+		int renders = first.renders + second.renders;
+
+		frames(game, 100);
+		game.allocations.setEnabled(false);
+		assertEquals(100, game.allocations.getFrames());
+		assertEquals("every frame rendered a screen", renders + 100, first.renders + second.renders);
+		assertSame(game.screenMap.get("first"), game.getScreen());
+		game.allocations.assertSteadyState(100, 0);
+		game.dispose();
+	}
+}
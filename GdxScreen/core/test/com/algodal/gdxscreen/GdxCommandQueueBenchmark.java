@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.algodal.gdxscreen.GdxCommandQueue.Handler;
+
+/**
+ * Measures the throughput of GdxCommandQueue under contention: several producer threads post
+ * as fast as they can while one consumer thread drains, the way loader threads and the
+ * render thread share the queue of a game.  Posts that find the queue full are retried.
+ *
+ * Arguments (all optional): commands per producer, then the capacity of the queue.
+ */
+public class GdxCommandQueueBenchmark {
+	private static final int WARMUP = 2, ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int commandsPerProducer = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("producers  commands/s");
+		for(int producers = 1; producers <= Math.max(8, cores); producers *= 2){
+			double best = 0.0;
+			for(int i = 0; i < WARMUP + ROUNDS; i ++){
+				double rate = run(producers, commandsPerProducer, capacity);
+				if(i >= WARMUP) best = Math.max(best, rate);
+			}
+			System.out.println(String.format("%9d  %10.0f", producers, best));
+		}
+	}
+
+	/**
+	 * @return commands per second, from the first post to the last drain.
+	 */
+	private static double run(int producers, final int commandsPerProducer, int capacity) throws InterruptedException {
+		final GdxCommandQueue queue = new GdxCommandQueue(capacity);
+		final CountDownLatch start = new CountDownLatch(1);
+		final long total = (long)producers * commandsPerProducer;
+		final long[] received = new long[1];
+		Handler counter = new Handler() {
+			@Override
+			public void handle(int kind, String first, String second, int event, Object payload) {
+				received[0] ++;
+			}
+		};
+		Thread[] threads = new Thread[producers];
+		for(int p = 0; p < producers; p ++){
+			threads[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try{
+						start.await();
+					}catch(InterruptedException e){
+						return;
+					}
+					for(int i = 0; i < commandsPerProducer; i ++)
+						while(!queue.post(GdxCommandQueue.EVENT, null, null, i, null)) Thread.yield();
+				}
+			}, "GdxCommandQueue producer " + p);
+			threads[p].setDaemon(true);
+			threads[p].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		while(received[0] < total) if(queue.drain(counter) == 0) Thread.yield();
+		long nanos = System.nanoTime() - begin;
+		for(Thread thread : threads) thread.join();
+		if(queue.getDrained() != total) throw new IllegalStateException("drained " + queue.getDrained() + " of " + total);
+		return total * 1000000000.0 / Math.max(1, nanos);
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.utils.IntArray;
+
+public class GdxCommandQueueTest {
+	/**
+	 * Keeps the event of every command it is handed.
+	 */
+	private static class Events implements GdxCommandQueue.Handler{
+		final IntArray events = new IntArray();
+
+		@Override
+		public void handle(int kind, String first, String second, int event, Object payload) {
+			events.add(event);
+		}
+	}
+
+	private static boolean post(GdxCommandQueue queue, int event){
+		return queue.post(GdxCommandQueue.EVENT, null, null, event, null);
+	}
+
+	@Test
+	public void rejectsWhenFullAndDrainsInOrder(){
+		GdxCommandQueue queue = new GdxCommandQueue(3);
+		assertEquals("rounded up to a power of two", 4, queue.getCapacity());
+		Events handler = new Events();
+		assertEquals(0, queue.drain(handler));
+		for(int i = 0; i < 4; i ++) assertTrue(post(queue, i));
+		assertFalse(post(queue, 4));
+		assertEquals(1, queue.getRejected());
+		assertEquals(4, queue.getPending());
+
+		assertEquals(4, queue.drain(handler));
+		assertEquals(0, queue.drain(handler));
+		assertEquals(0, queue.getPending());
+		assertEquals("[0, 1, 2, 3]", handler.events.toString());
+		assertTrue("a drained slot is free again", post(queue, 5));
+	}
+
+	@Test
+	public void wrapsAroundTheRing(){
+		GdxCommandQueue queue = new GdxCommandQueue(4);
+		Events handler = new Events();
+		int next = 0;
+		for(int lap = 0; lap < 25; lap ++){
+			for(int i = 0; i < 3; i ++) assertTrue(post(queue, next ++));
+			assertEquals(3, queue.drain(handler));
+		}
+		assertEquals(75, queue.getDrained());
+		assertEquals(75, queue.getPosted());
+		for(int i = 0; i < handler.events.size; i ++) assertEquals(i, handler.events.get(i));
+	}
+
+	@Test
+	public void takesCommandsPostedWhileDraining(){
+		final GdxCommandQueue queue = new GdxCommandQueue(4);
+		final Events later = new Events();
+		post(queue, 0);
+		assertEquals(1, queue.drain(new GdxCommandQueue.Handler() {
+			@Override
+			public void handle(int kind, String first, String second, int event, Object payload) {
+				assertEquals(0, queue.getPending());
+				post(queue, event + 1); //waits for the next drain
+			}
+		}));
+		assertEquals(1, queue.drain(later));
+		assertEquals(1, later.events.get(0));
+	}
+
+	/**
+	 * Every producer posts its own range of events, retrying while the queue is full.
+	 * @return the producers, started.
+	 */
+	private static Thread[] produce(final GdxCommandQueue queue, int producers, final int perProducer){
+		Thread[] threads = new Thread[producers];
+		for(int p = 0; p < producers; p ++){
+			final int first = p * perProducer;
+			threads[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for(int i = 0; i < perProducer; i ++) while(!post(queue, first + i)) Thread.yield();
+				}
+			});
+			threads[p].start();
+		}
+		return threads;
+	}
+
+	/**
+	 * Checks that every event arrived exactly once and those of one producer in order.
+	 */
+	private static void assertComplete(IntArray events, int producers, int perProducer){
+		assertEquals(producers * perProducer, events.size);
+		int[] next = new int[producers];
+		for(int i = 0; i < events.size; i ++){
+			int event = events.get(i), producer = event / perProducer;
+			assertEquals("producer " + producer, producer * perProducer + next[producer], event);
+			next[producer] ++;
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void losesNothingFromSeveralProducers() throws InterruptedException{
+		GdxCommandQueue queue = new GdxCommandQueue(1 << 16);
+		Thread[] producers = produce(queue, 4, 10000);
+		for(Thread producer : producers) producer.join();
+		Events handler = new Events();
+		queue.drain(handler);
+		assertComplete(handler.events, 4, 10000);
+		assertEquals(0, queue.getRejected());
+	}
+
+	@Test(timeout = 10000)
+	public void drainsWhileProducersPost() throws InterruptedException{
+		GdxCommandQueue queue = new GdxCommandQueue(64);
+		Thread[] producers = produce(queue, 3, 20000);
+		Events handler = new Events();
+		while(handler.events.size < 3 * 20000){
+			if(queue.drain(handler) == 0) Thread.yield();
+			assertTrue(queue.getPending() >= 0 && queue.getPending() <= queue.getCapacity());
+		}
+		for(Thread producer : producers) producer.join();
+		assertEquals(0, queue.drain(handler));
+		assertComplete(handler.events, 3, 20000);
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class GdxHibernatorTest {
+	public static class Spot{
+		public int x, y;
+	}
+
+	public static class Home extends GdxScreen{}
+
+	public static class Map extends GdxScreen implements GdxHibernation{
+		int creates, disposes;
+		boolean failDispose;
+		Array<Object> awoken;
+
+		@Override
+		public void create() {
+			creates ++;
+		}
+
+		@Override
+		public void dispose() {
+			disposes ++;
+			if(failDispose) throw new GdxRuntimeException("half disposed");
+		}
+
+		@Override
+		public void hibernate(Array<Object> state) {
+			Spot spot = new Spot();
+			spot.x = 3;
+			spot.y = 4;
+			state.add(spot);
+		}
+
+		@Override
+		public void awaken(Array<Object> state) {
+			awoken = new Array<>(state);
+		}
+
+		@Override
+		public long getResidentBytes() {
+			return 1000;
+		}
+	}
+
+	private static class Atlas extends GdxGame{
+		@Override
+		public void initialize() {
+			registerScreen("home", Home.class);
+			registerScreen("map", Map.class);
+			registerTransition("cut", GdxTransition.class);
+		}
+	}
+
+	private static HeadlessApplication application;
+	private Atlas game;
+	private Map map;
+	private String directory;
+
+	@BeforeClass
+	public static void start(){
+		application = new HeadlessApplication(new ApplicationAdapter(){});
+		Gdx.gl = Gdx.gl20 = new HeadlessGL20();
+	}
+
+	@AfterClass
+	public static void stop(){
+		Gdx.gl = Gdx.gl20 = null;
+		application.exit();
+	}
+
+	@Before
+	public void visitTheMap(){
+		directory = "build/hibernation-" + System.nanoTime() + "/";
+		game = new Atlas();
+		game.create();
+		game.hibernator.setDirectory(directory);
+		map = (Map)game.screenMap.get("map");
+		show("map");
+		show("home");
+		assertTrue(map.created);
+	}
+
+	@After
+	public void deleteFiles(){
+		game.dispose();
+		Gdx.files.local(directory).deleteDirectory();
+	}
+
+	private void show(String ref){
+		game.postLaunch("cut", ref);
+		for(int i = 0; i < 4; i ++) game.render();
+		assertSame(game.screenMap.get(ref), game.getScreen());
+	}
+
+	private void sleep(){
+		game.hibernator.update(System.currentTimeMillis() + game.hibernator.getDelay());
+	}
+
+	private FileHandle file(){
+		return Gdx.files.local(directory + "map.sav");
+	}
+
+	@Test
+	public void restoresTheState(){
+		sleep();
+		assertFalse(map.created);
+		assertTrue(file().exists());
+		assertEquals(1, game.hibernator.getHibernations());
+		assertEquals(1000, game.hibernator.getBytesSaved());
+		assertEquals(file().length(), game.hibernator.getStoredBytes());
+
+		show("map");
+		assertEquals(2, map.creates);
+		assertEquals(1, map.awoken.size);
+		assertEquals(4, ((Spot)map.awoken.first()).y);
+		assertFalse(file().exists());
+		assertEquals(0, game.hibernator.getStoredBytes());
+		assertEquals(0, game.hibernator.getBytesSaved());
+		assertEquals(0, game.hibernator.getFailures());
+	}
+
+	@Test
+	public void keepsAFileWithCorruptChunks(){
+		sleep();
+		byte[] bytes = file().readBytes();
+		for(int i = bytes.length - 4; i < bytes.length; i ++) bytes[i] = 0; //the chunk that ends the file is damaged
+		file().writeBytes(bytes, false);
+
+		show("map");
+		assertEquals("no part of the state is handed over", 0, map.awoken.size);
+		assertEquals(1, game.hibernator.getFailures());
+		assertFalse(file().exists());
+		assertTrue(Gdx.files.local(directory + "map.failed.sav").exists());
+		assertEquals(0, game.hibernator.getStoredBytes());
+	}
+
+	@Test
+	public void recreatesAScreenThatFailedToDispose(){
+		map.failDispose = true;
+		sleep();
+		assertEquals(1, map.disposes);
+		assertEquals(1, game.hibernator.getFailures());
+		assertEquals(0, game.hibernator.getHibernations());
+		assertFalse("the saved state stands in for the half disposed screen", map.created);
+		assertTrue(file().exists());
+
+		map.failDispose = false;
+		show("map");
+		assertEquals(2, map.creates);
+		assertEquals(3, ((Spot)map.awoken.first()).x);
+		assertFalse(file().exists());
+	}
+
+	@Test
+	public void keepsTheScreenWhenTheSaveFails(){
+		Gdx.files.local(directory + "map.sav").mkdirs(); //a directory where the file should go
+		sleep();
+		assertTrue(map.created);
+		assertEquals(0, map.disposes);
+		assertEquals(1, game.hibernator.getFailures());
+		assertEquals(0, game.hibernator.getStoredBytes());
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GdxHitchesTest {
+	private static final long MS = 1000000L;
+
+	/**
+	 * Hitches on a clock and a garbage collector the test moves by hand.
+	 */
+	private static class Clocked extends GdxHitches{
+		long now, collections, collectionMillis;
+
+		Clocked(int capacity){
+			super(capacity);
+			setEnabled(true);
+			setTargetMillis(10);
+		}
+
+		@Override
+		long nanos(){
+			return now;
+		}
+
+		@Override
+		long gcCount(){
+			return collections;
+		}
+
+		@Override
+		long gcMillis(){
+			return collectionMillis;
+		}
+
+		/**
+		 * A frame that renders for renderMillis and then waits for the next one for idleMillis.
+		 */
+		void frame(String screen, long renderMillis, long idleMillis){
+			beginFrame();
+			phase(GdxAllocations.RENDER);
+			now += renderMillis * MS;
+			endFrame(screen);
+			now += idleMillis * MS;
+		}
+	}
+
+	@Test
+	public void measuresAFrameUpToTheStartOfTheNext(){
+		Clocked hitches = new Clocked(4);
+		hitches.frame("menu", 4, 20); //quick to render, slow to present
+		assertEquals("the frame goes on until the next begins", 0, hitches.getFrames());
+		hitches.beginFrame();
+		assertEquals(1, hitches.getFrames());
+		assertEquals(1, hitches.getHitches());
+		assertEquals(24 * MS, hitches.getNanos(0));
+		assertEquals(4 * MS, hitches.getPhaseNanos(0, GdxAllocations.RENDER));
+		assertEquals(20 * MS, hitches.getPhaseNanos(0, GdxAllocations.OTHER));
+		assertEquals(GdxAllocations.OTHER, hitches.getWorstPhase(0));
+	}
+
+	@Test
+	public void keepsFramesUnderTheTargetOutOfTheBuffer(){
+		Clocked hitches = new Clocked(4);
+		for(int i = 0; i < 5; i ++) hitches.frame("menu", 3, 6);
+		hitches.frame("level", 12, 1);
+		hitches.frame("level", 3, 6);
+		hitches.beginFrame();
+		assertEquals(7, hitches.getFrames());
+		assertEquals(1, hitches.size());
+		assertEquals(13 * MS, hitches.getNanos(0));
+		assertEquals(GdxAllocations.RENDER, hitches.getWorstPhase(0));
+		assertTrue(hitches.dump().contains("frame 6 13.0 ms screen level worst render"));
+	}
+
+	@Test
+	public void countsTheCollectionsBetweenTheRenders(){
+		Clocked hitches = new Clocked(4);
+		hitches.beginFrame();
+		hitches.now += 2 * MS;
+		hitches.endFrame("level");
+		hitches.collections += 2; //after the render, before the next
+		hitches.collectionMillis += 15;
+		hitches.now += 15 * MS;
+		hitches.beginFrame();
+		assertEquals(2, hitches.getGcCount(0));
+		assertEquals(15, hitches.getGcMillis(0));
+	}
+
+	@Test
+	public void tellsWhenThePlatformHasNoCollectors(){
+		Clocked hitches = new Clocked(4);
+		hitches.collections = hitches.collectionMillis = -1;
+		hitches.frame("level", 30, 0);
+		hitches.beginFrame();
+		assertEquals(-1, hitches.getGcCount(0));
+		assertEquals(-1, hitches.getGcMillis(0));
+	}
+
+	@Test
+	public void keepsTheLastHitches(){
+		Clocked hitches = new Clocked(2);
+		for(int i = 1; i <= 3; i ++) hitches.frame("level", 10 + i, 0);
+		hitches.beginFrame();
+		assertEquals(3, hitches.getHitches());
+		assertEquals(2, hitches.size());
+		assertEquals(13 * MS, hitches.getNanos(0));
+		assertEquals(12 * MS, hitches.getNanos(1));
+	}
+
+	@Test
+	public void leavesOutTheTimeItWasOff(){
+		Clocked hitches = new Clocked(4);
+		hitches.frame("menu", 2, 2);
+		hitches.setEnabled(false);
+		hitches.frame("menu", 2, 500); //a pause while it is off
+		hitches.setEnabled(true);
+		hitches.frame("menu", 2, 2);
+		hitches.beginFrame();
+		assertEquals("the frame it was turned off in is lost too", 1, hitches.getFrames());
+		assertEquals(0, hitches.getHitches());
+	}
+}
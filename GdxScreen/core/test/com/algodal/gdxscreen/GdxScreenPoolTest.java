@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Pool.Poolable;
+
+public class GdxScreenPoolTest {
+	public static class Hit implements Poolable{
+		int damage;
+
+		@Override
+		public void reset() {
+			damage = 0;
+		}
+	}
+
+	/**
+	 * Obtains a few objects every frame and never frees them.
+	 */
+	public static class Busy extends GdxScreen{
+		Hit last;
+
+		@Override
+		public void render(float delta) {
+			for(int i = 0; i < 3; i ++) obtain(Vector2.class);
+			last = obtain(Hit.class);
+			last.damage = 5;
+		}
+	}
+
+	private static class Arena extends GdxGame{
+		@Override
+		public void initialize() {
+			registerScreen("busy", Busy.class);
+			registerTransition("cut", GdxTransition.class);
+		}
+	}
+
+	private static HeadlessApplication application;
+
+	@BeforeClass
+	public static void start(){
+		application = new HeadlessApplication(new ApplicationAdapter(){});
+		Gdx.gl = Gdx.gl20 = new HeadlessGL20();
+	}
+
+	@AfterClass
+	public static void stop(){
+		Gdx.gl = Gdx.gl20 = null;
+		application.exit();
+	}
+
+	private static GdxScreenPool pool(){
+		return new GdxScreen().setGame(new GdxGame()).getPool();
+	}
+
+	@Test
+	public void reusesEverythingWithFrameReset(){
+		Arena game = new Arena();
+		game.create();
+		Busy busy = (Busy)game.screenMap.get("busy");
+		busy.getPool().setFrameReset(true);
+		game.postLaunch("cut", "busy");
+		for(int i = 0; i < 100; i ++) game.render();
+		GdxScreenPool pool = busy.getPool();
+		assertEquals(4, pool.getOut());
+		assertEquals("the objects of one frame, created once", 4, pool.getCreated());
+		assertEquals(pool.getObtained() - 4, pool.getReclaimed());
+		game.dispose();
+	}
+
+	@Test
+	public void failsPastTheLeakLimit(){
+		GdxScreenPool pool = pool().setLeakLimit(3);
+		for(int i = 0; i < 3; i ++) pool.obtain(Vector2.class);
+		pool.obtain(Hit.class); //the limit is per class
+		try{
+			pool.obtain(Vector2.class);
+			fail();
+		}catch(GdxRuntimeException e){
+			assertEquals(5, pool.getOut());
+		}
+	}
+
+	@Test
+	public void allowsAnyNumberOutWithFrameReset(){
+		GdxScreenPool pool = pool().setLeakLimit(3).setFrameReset(true);
+		for(int i = 0; i < 10; i ++) pool.obtain(Vector2.class);
+		pool.reclaim(false);
+		assertEquals(0, pool.getOut());
+		assertEquals(10, pool.getPeakOut());
+	}
+
+	@Test
+	public void freesObjectsOneByOne(){
+		GdxScreenPool pool = pool();
+		Hit first = pool.obtain(Hit.class), second = pool.obtain(Hit.class);
+		first.damage = 7;
+		pool.free(first);
+		assertEquals(0, first.damage);
+		assertEquals(1, pool.getOut());
+		assertSame("a freed object is handed out again", first, pool.obtain(Hit.class));
+		assertNotSame(first, second);
+		try{
+			pool.free(new Hit());
+			fail();
+		}catch(GdxRuntimeException e){
+			assertEquals(1, pool.getFreed());
+		}
+		pool.reclaim(true);
+		assertEquals(2, pool.getReclaimedAtHide());
+		assertEquals(0, pool.getOut());
+	}
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+
+public class GdxTaskTest {
+	/**
+	 * Remembers what the task handed back.
+	 */
+	private static class Result implements GdxTask.Callback<String>{
+		String done;
+		Throwable failed;
+		int calls;
+
+		@Override
+		public void done(String result) {
+			done = result;
+			calls ++;
+		}
+
+		@Override
+		public void failed(Throwable error) {
+			failed = error;
+			calls ++;
+		}
+	}
+
+	/**
+	 * Waits for the test to let it finish.
+	 */
+	private static class Gate implements GdxTask.Work<String>{
+		final CountDownLatch started = new CountDownLatch(1), open = new CountDownLatch(1);
+		volatile boolean interrupted;
+
+		@Override
+		public String run() throws Exception {
+			started.countDown();
+			try{
+				open.await();
+			}catch(InterruptedException e){
+				interrupted = true;
+				throw e;
+			}
+			return "late";
+		}
+	}
+
+	public static class Worker extends GdxScreen{
+		final Gate gate = new Gate();
+		final Result result = new Result();
+		GdxTask<String> task;
+
+		@Override
+		public void show() {
+			task = runTask(gate, result);
+		}
+	}
+
+	public static class Home extends GdxScreen{}
+
+	private static class Workshop extends GdxGame{
+		@Override
+		public void initialize() {
+			registerScreen("home", Home.class);
+			registerScreen("worker", Worker.class);
+			registerTransition("cut", GdxTransition.class);
+		}
+	}
+
+	private static HeadlessApplication application;
+
+	@BeforeClass
+	public static void start(){
+		application = new HeadlessApplication(new ApplicationAdapter(){});
+		Gdx.gl = Gdx.gl20 = new HeadlessGL20();
+	}
+
+	@AfterClass
+	public static void stop(){
+		Gdx.gl = Gdx.gl20 = null;
+		application.exit();
+	}
+
+	private static void waitUntilDone(GdxTask<?> task) throws InterruptedException{
+		while(!task.isDone()) Thread.sleep(1);
+	}
+
+	@Test(timeout = 10000)
+	public void deliversTheResultOnDeliver() throws InterruptedException{
+		GdxTasks tasks = new GdxTasks();
+		GdxScreen screen = new GdxScreen();
+		Result result = new Result();
+		GdxTask<String> task = tasks.submit(screen, new GdxTask.Work<String>() {
+			@Override
+			public String run() {
+				return "ready";
+			}
+		}, result);
+		waitUntilDone(task);
+		assertEquals("nothing is handed over off the render thread", 0, result.calls);
+		assertEquals(1, screen.tasks.size);
+
+		tasks.deliver();
+		assertEquals("ready", result.done);
+		assertEquals(0, screen.tasks.size);
+		assertTrue(task.isDone());
+		assertFalse("a delivered task can not be cancelled", task.cancel());
+		tasks.deliver();
+		assertEquals(1, result.calls);
+		assertEquals(1, tasks.getCompleted());
+		assertEquals(0, tasks.getCancelled());
+	}
+
+	@Test(timeout = 10000)
+	public void deliversWhatTheWorkThrew() throws InterruptedException{
+		GdxTasks tasks = new GdxTasks();
+		Result result = new Result();
+		GdxTask<String> task = tasks.submit(new GdxScreen(), new GdxTask.Work<String>() {
+			@Override
+			public String run() throws Exception {
+				throw new IllegalStateException("broken");
+			}
+		}, result);
+		waitUntilDone(task);
+		tasks.deliver();
+		assertNull(result.done);
+		assertEquals("broken", result.failed.getMessage());
+		assertEquals(1, tasks.getCompleted());
+	}
+
+	@Test(timeout = 10000)
+	public void interruptsWorkCancelledWhileRunning() throws InterruptedException{
+		GdxTasks tasks = new GdxTasks();
+		GdxScreen screen = new GdxScreen();
+		Gate gate = new Gate();
+		Result result = new Result();
+		GdxTask<String> task = tasks.submit(screen, gate, result);
+		gate.started.await();
+		assertEquals(1, tasks.getRunning());
+
+		assertTrue(task.cancel());
+		assertTrue(task.isCancelled());
+		assertFalse(task.cancel());
+		assertEquals(0, screen.tasks.size);
+		assertEquals(0, tasks.getRunning());
+		assertEquals(1, tasks.getCancelled());
+		while(!gate.interrupted) Thread.sleep(1);
+		tasks.deliver();
+		assertEquals(0, result.calls);
+		assertEquals("cancelled work does not complete", 0, tasks.getCompleted());
+	}
+
+	@Test(timeout = 10000)
+	public void dropsAResultCancelledBeforeDelivery() throws InterruptedException{
+		GdxTasks tasks = new GdxTasks();
+		Result result = new Result();
+		GdxTask<String> task = tasks.submit(new GdxScreen(), new GdxTask.Work<String>() {
+			@Override
+			public String run() {
+				return "unwanted";
+			}
+		}, result);
+		waitUntilDone(task);
+		assertTrue(task.cancel());
+		assertFalse(task.isDone());
+		tasks.deliver();
+		assertEquals(0, result.calls);
+	}
+
+	@Test(timeout = 10000)
+	public void cancelsTheTasksOfAHiddenScreen() throws InterruptedException{
+		Workshop game = new Workshop();
+		game.create();
+		show(game, "worker");
+		Worker worker = (Worker)game.screenMap.get("worker");
+		worker.gate.started.await();
+		show(game, "home");
+		assertTrue(worker.task.isCancelled());
+		assertEquals(0, worker.tasks.size);
+
+		worker.gate.open.countDown();
+		for(int i = 0; i < 4; i ++) game.render();
+		assertEquals(0, worker.result.calls);
+		game.dispose();
+	}
+
+	@Test(timeout = 10000)
+	public void cancelsTheTasksOfADisposedScreen() throws InterruptedException{
+		Workshop game = new Workshop();
+		game.create();
+		show(game, "worker");
+		Worker worker = (Worker)game.screenMap.get("worker");
+		worker.gate.started.await();
+		game.dispose();
+		assertTrue(worker.task.isCancelled());
+		while(!worker.gate.interrupted) Thread.sleep(1);
+		assertEquals(0, worker.result.calls);
+	}
+
+	private static void show(GdxGame game, String ref){
+		game.postLaunch("cut", ref);
+		for(int i = 0; i < 4; i ++) game.render();
+		assertSame(game.screenMap.get(ref), game.getScreen());
+	}
+
+	@Test(timeout = 10000)
+	public void fallsBackToPlatformThreads() throws Exception{
+		assertNull("no such factory on any JVM", GdxTasks.virtualExecutor("newNoSuchThreadPerTaskExecutor"));
+		ExecutorService executor = GdxTasks.platformExecutor();
+		try{
+			Future<Thread> thread = executor.submit(new Callable<Thread>() {
+				@Override
+				public Thread call() {
+					return Thread.currentThread();
+				}
+			});
+			assertTrue(thread.get(5, TimeUnit.SECONDS).isDaemon());
+			assertTrue(thread.get().getName().startsWith("GdxTasks "));
+		}finally{
+			executor.shutdown();
+		}
+		ExecutorService virtual = GdxTasks.virtualExecutor("newVirtualThreadPerTaskExecutor"); //Java 21 and later
+		if(virtual != null) virtual.shutdown();
+		assertEquals(virtual != null, GdxTasks.isVirtual());
+	}
+}
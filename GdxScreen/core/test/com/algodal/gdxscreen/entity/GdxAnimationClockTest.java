@@ -0,0 +1,89 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.Animation.PlayMode;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+public class GdxAnimationClockTest {
+	private static Animation animation(PlayMode mode){
+		Animation animation = new Animation(0.1f, new TextureRegion(), new TextureRegion(), new TextureRegion(), new TextureRegion());
+		animation.setPlayMode(mode);
+		return animation;
+	}
+
+	private static GdxAnimationClock crowd(Animation animation, int... offsets){
+		GdxAnimationClock clock = new GdxAnimationClock(animation, 2);
+		for(int offset : offsets) clock.add(offset);
+		return clock;
+	}
+
+	@Test
+	public void addsTheOffsetToTheSharedFrame(){
+		GdxAnimationClock clock = crowd(animation(PlayMode.LOOP), 0, 1, 3, 5, -1);
+		clock.advance(0.25f);
+		assertEquals(2, clock.getFrameIndex(0));
+		assertEquals(3, clock.getFrameIndex(1));
+		assertEquals(1, clock.getFrameIndex(2));
+		assertEquals("five frames ahead of four is one", 3, clock.getFrameIndex(3));
+		assertEquals(1, clock.getFrameIndex(4));
+		assertSame(clock.getKeyFrames()[1], clock.getFrame(2));
+	}
+
+	@Test
+	public void subtractsTheOffsetWhenReversed(){
+		GdxAnimationClock clock = crowd(animation(PlayMode.LOOP_REVERSED), 0, 1, 6);
+		clock.advance(0.05f);
+		assertEquals(3, clock.getFrameIndex(0));
+		assertEquals(2, clock.getFrameIndex(1));
+		assertEquals(1, clock.getFrameIndex(2));
+	}
+
+	@Test
+	public void sharesTheFrameOfTheAnimationOverTime(){
+		Animation animation = animation(PlayMode.LOOP);
+		GdxAnimationClock clock = crowd(animation, 0, 1, 2, 7, -11);
+		for(int step = 0; step < 200; step ++){
+			clock.advance(0.037f);
+			int base = animation.getKeyFrameIndex(clock.getTime());
+			for(int i = 0; i < clock.size(); i ++)
+				assertEquals("member " + i + " at step " + step,
+						((base + clock.getOffset(i)) % 4 + 4) % 4, clock.getFrameIndex(i));
+		}
+		assertEquals("the shared time wraps with the loop", true, clock.getTime() < 0.4f);
+	}
+
+	@Test
+	public void stopsEveryMemberAtTheLastFrame(){
+		GdxAnimationClock clock = crowd(animation(PlayMode.NORMAL), 0, 2, 30);
+		clock.advance(0.15f);
+		assertEquals(1, clock.getFrameIndex(0));
+		assertEquals(3, clock.getFrameIndex(1));
+		assertEquals(3, clock.getFrameIndex(2));
+		clock.advance(1.0f);
+		assertEquals(3, clock.getFrameIndex(0));
+	}
+
+	@Test
+	public void keepsTheOffsetsOfMembersThatMove(){
+		GdxAnimationClock clock = crowd(animation(PlayMode.LOOP), 0, 1, 2);
+		for(int i = 0; i < 10; i ++) clock.add(i % 4); //past the capacity
+		assertEquals(13, clock.size());
+		clock.remove(0);
+		assertEquals("the last member took the index", 1, clock.getOffset(0));
+		assertEquals(12, clock.size());
+		clock.setOffset(1, 2);
+		clock.advance(0.15f);
+		assertEquals(2, clock.getFrameIndex(0));
+		assertEquals(3, clock.getFrameIndex(1));
+
+		clock.restart();
+		assertEquals(0.0f, clock.getTime(), 0.0f);
+		assertEquals(1, clock.getFrameIndex(0));
+		assertEquals(2, clock.getFrameIndex(1));
+	}
+}
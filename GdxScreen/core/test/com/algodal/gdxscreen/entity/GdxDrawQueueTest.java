@@ -0,0 +1,133 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.algodal.gdxscreen.HeadlessGL20;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+
+public class GdxDrawQueueTest {
+	/**
+	 * Flushes whenever the texture changes, like SpriteBatch, and remembers what it drew.
+	 */
+	private static class CountingBatch implements Batch{
+		final Array<TextureRegion> drawn = new Array<>();
+		Texture last;
+		int flushes;
+
+		private void switchTo(Texture texture){
+			if(texture == last) return;
+			if(last != null) flushes ++;
+			last = texture;
+		}
+
+		@Override public void draw(TextureRegion region, float x, float y, float width, float height) { switchTo(region.getTexture()); drawn.add(region); }
+		@Override public void draw(TextureRegion region, float x, float y) { draw(region, x, y, 1, 1); }
+		@Override public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation) { draw(region, x, y, width, height); }
+		@Override public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, boolean clockwise) { draw(region, x, y, width, height); }
+		@Override public void draw(TextureRegion region, float width, float height, Affine2 transform) { draw(region, 0, 0, width, height); }
+		@Override public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) { switchTo(texture); }
+		@Override public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) { switchTo(texture); }
+		@Override public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight) { switchTo(texture); }
+		@Override public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2, float v2) { switchTo(texture); }
+		@Override public void draw(Texture texture, float x, float y) { switchTo(texture); }
+		@Override public void draw(Texture texture, float x, float y, float width, float height) { switchTo(texture); }
+		@Override public void draw(Texture texture, float[] spriteVertices, int offset, int count) { switchTo(texture); }
+		@Override public void flush() { flushes ++; }
+		@Override public void begin() {}
+		@Override public void end() {}
+		@Override public void dispose() {}
+		@Override public void setColor(Color tint) {}
+		@Override public void setColor(float r, float g, float b, float a) {}
+		@Override public void setColor(float color) {}
+		@Override public Color getColor() { return Color.WHITE; }
+		@Override public float getPackedColor() { return Color.WHITE.toFloatBits(); }
+		@Override public void disableBlending() {}
+		@Override public void enableBlending() {}
+		@Override public void setBlendFunction(int srcFunc, int dstFunc) {}
+		@Override public int getBlendSrcFunc() { return 0; }
+		@Override public int getBlendDstFunc() { return 0; }
+		@Override public Matrix4 getProjectionMatrix() { return null; }
+		@Override public Matrix4 getTransformMatrix() { return null; }
+		@Override public void setProjectionMatrix(Matrix4 projection) {}
+		@Override public void setTransformMatrix(Matrix4 transform) {}
+		@Override public void setShader(ShaderProgram shader) {}
+		@Override public ShaderProgram getShader() { return null; }
+		@Override public boolean isBlendingEnabled() { return true; }
+		@Override public boolean isDrawing() { return true; }
+	}
+
+	private static HeadlessApplication application;
+	private static Texture a, b;
+
+	@BeforeClass
+	public static void start(){
+		application = new HeadlessApplication(new ApplicationAdapter(){});
+		Gdx.gl = Gdx.gl20 = new HeadlessGL20();
+		a = texture();
+		b = texture();
+	}
+
+	@AfterClass
+	public static void stop(){
+		a.dispose();
+		b.dispose();
+		Gdx.gl = Gdx.gl20 = null;
+		application.exit();
+	}
+
+	private static Texture texture(){
+		Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+		Texture texture = new Texture(pixmap);
+		pixmap.dispose();
+		return texture;
+	}
+
+	@Test
+	public void flushesOncePerTextureAndLayer(){
+		GdxDrawQueue queue = new GdxDrawQueue(4);
+		TextureRegion ra = new TextureRegion(a), rb = new TextureRegion(b);
+		for(int i = 0; i < 100; i ++) queue.add(i % 2 == 0 ? ra : rb, i, 0, 1, 1, 0);
+		CountingBatch batch = new CountingBatch();
+		assertEquals(1, queue.draw(batch));
+		assertEquals(1, batch.flushes);
+		assertEquals(100, batch.drawn.size);
+
+		queue.add(ra, 0, 0, 1, 1, 1).add(rb, 0, 0, 1, 1, 0).add(ra, 0, 0, 1, 1, 0).add(rb, 0, 0, 1, 1, 1);
+		batch = new CountingBatch();
+		assertEquals(3, queue.draw(batch));
+		assertEquals(3, batch.flushes);
+		assertSame("lower layers first, then the texture seen first in the frame", ra, batch.drawn.get(0));
+		assertSame(rb, batch.drawn.get(1));
+		assertSame(ra, batch.drawn.get(2));
+		assertSame(rb, batch.drawn.get(3));
+	}
+
+	@Test
+	public void numbersTexturesPerFrame(){
+		GdxDrawQueue queue = new GdxDrawQueue();
+		TextureRegion ra = new TextureRegion(a), rb = new TextureRegion(b);
+		CountingBatch batch = new CountingBatch();
+		queue.add(ra, 0, 0, 1, 1, 0).add(rb, 0, 0, 1, 1, 0).draw(batch);
+		queue.add(rb, 0, 0, 1, 1, 0).add(ra, 0, 0, 1, 1, 0).add(rb, 0, 0, 1, 1, 0);
+		batch = new CountingBatch();
+		assertEquals(1, queue.draw(batch));
+		assertSame("b shows up first in this frame", rb, batch.drawn.get(0));
+		assertSame(rb, batch.drawn.get(1));
+	}
+}
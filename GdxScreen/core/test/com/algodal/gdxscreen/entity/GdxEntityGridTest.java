@@ -0,0 +1,70 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.utils.Array;
+
+public class GdxEntityGridTest {
+	private final GdxEntityGrid grid = new GdxEntityGrid(0, 0, 100, 100, 10);
+	private final Array<GdxEntity> found = new Array<>();
+
+	private GdxEntity entity(float x, float y, float width, float height){
+		GdxEntity entity = new GdxEntity().setPosition(x, y).setSize(width, height);
+		grid.add(entity);
+		return entity;
+	}
+
+	@Test
+	public void keepsEntitiesOutsideTheAreaInTheBorderCells(){
+		GdxEntity below = entity(-50, -50, 5, 5), above = entity(250, 250, 5, 5), across = entity(95, 95, 20, 20);
+		assertEquals(1, grid.queryPoint(-48, -48, found));
+		assertSame(below, found.first());
+		assertEquals(1, grid.queryRect(240, 240, 20, 20, found));
+		assertSame(above, found.first());
+		assertEquals("found past the edge, where it sticks out", 1, grid.queryPoint(110, 110, found));
+		assertSame(across, found.first());
+		assertEquals(0, grid.queryPoint(-10, -10, found));
+	}
+
+	@Test
+	public void followsEntitiesThatMove(){
+		GdxEntity entity = entity(5, 5, 2, 2);
+		entity.setPosition(55, 55);
+		assertEquals(0, grid.queryPoint(6, 6, found));
+		assertEquals(0, grid.queryRect(0, 0, 20, 20, found));
+		assertEquals(1, grid.queryPoint(56, 56, found));
+
+		entity.getPosition().addX(-30); //through the position object too
+		assertEquals(1, grid.queryPoint(26, 56, found));
+		assertEquals(0, grid.queryPoint(56, 56, found));
+
+		entity.setSize(40, 2); //grows into the cells to the right
+		assertEquals(1, grid.queryPoint(64, 56, found));
+
+		grid.remove(entity);
+		assertEquals(0, grid.queryPoint(26, 56, found));
+		assertEquals(0, grid.size());
+	}
+
+	@Test
+	public void reportsAnEntityOnceInEveryQuery(){
+		GdxEntity big = entity(5, 5, 30, 30); //in 16 cells
+		entity(60, 60, 2, 2);
+		for(int i = 0; i < 3; i ++){
+			assertEquals(1, grid.queryRect(0, 0, 50, 50, found));
+			assertSame(big, found.first());
+		}
+		assertEquals(2, grid.queryRect(0, 0, 100, 100, found));
+	}
+
+	@Test
+	public void leavesOutEntitiesOfACellThatDoNotOverlap(){
+		entity(1, 1, 2, 2);
+		assertEquals(0, grid.queryPoint(8, 8, found));
+		assertEquals(0, grid.queryRect(5, 5, 2, 2, found));
+		assertEquals(1, grid.queryRect(2, 2, 4, 4, found));
+	}
+}
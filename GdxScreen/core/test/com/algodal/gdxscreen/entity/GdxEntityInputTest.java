@@ -0,0 +1,145 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.Vector3;
+
+public class GdxEntityInputTest {
+	/**
+	 * Writes its name to the log for every event it is offered.
+	 */
+	private static class Logger extends InputAdapter{
+		final String name;
+		final StringBuilder log;
+		boolean handles;
+
+		Logger(String name, StringBuilder log, boolean handles){
+			this.name = name;
+			this.log = log;
+			this.handles = handles;
+		}
+
+		@Override
+		public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+			log.append(name).append("down ");
+			return handles;
+		}
+
+		@Override
+		public boolean touchDragged(int screenX, int screenY, int pointer) {
+			log.append(name).append("drag ");
+			return handles;
+		}
+
+		@Override
+		public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+			log.append(name).append("up ");
+			return handles;
+		}
+
+		@Override
+		public boolean keyDown(int keycode) {
+			log.append(name).append("key ");
+			return handles;
+		}
+	}
+
+	private final StringBuilder log = new StringBuilder();
+	private final GdxEntityGrid grid = new GdxEntityGrid(0, 0, 100, 100, 10);
+	private final GdxEntityInput input = new GdxEntityInput(grid).setCamera(new OrthographicCamera(){
+		@Override
+		public Vector3 unproject(Vector3 screenCoords) {
+			return screenCoords; //touches are in the coordinates of the entities
+		}
+	});
+
+	private GdxEntity entity(String name, float x, float y, float size, boolean handles){
+		GdxEntity entity = new GdxEntity().setPosition(x, y).setSize(size, size);
+		entity.setInputProccessor(new Logger(name, log, handles));
+		grid.add(entity);
+		return entity;
+	}
+
+	private String log(){
+		String text = log.toString().trim();
+		log.setLength(0);
+		return text;
+	}
+
+	@Test
+	public void routesToTheEntitiesUnderThePointer(){
+		entity("a", 0, 0, 5, true);
+		entity("b", 50, 50, 5, true);
+		assertTrue(input.touchDown(52, 52, 0, 0));
+		assertEquals("b", log().substring(0, 1));
+		assertEquals(1, input.getLastCandidates());
+		assertFalse("nothing is there", input.touchDown(30, 30, 1, 0));
+		assertEquals("", log());
+	}
+
+	@Test
+	public void offersOverlappingEntitiesTopFirst(){
+		GdxEntity a = entity("a", 0, 0, 20, false);
+		entity("b", 0, 0, 20, false);
+		entity("c", 0, 0, 20, false);
+		a.setPosition(30, 30).setPosition(0, 0); //moving puts a last in its cells, but it was still added first
+		input.touchDown(5, 5, 0, 0);
+		assertEquals("cdown bdown adown", log());
+
+		a.setInputPriority(1);
+		input.touchDown(5, 5, 0, 0);
+		assertEquals("adown cdown bdown", log());
+	}
+
+	@Test
+	public void stopsAtTheEntityThatHandlesIt(){
+		entity("a", 0, 0, 20, true);
+		entity("b", 0, 0, 20, false);
+		assertTrue(input.touchDown(5, 5, 0, 0));
+		assertEquals("bdown adown", log());
+		assertEquals(2, input.getLastDelivered());
+	}
+
+	@Test
+	public void capturesThePointerUntilTouchUp(){
+		entity("a", 0, 0, 5, true);
+		entity("b", 50, 50, 5, true);
+		input.touchDown(2, 2, 0, 0);
+		input.touchDragged(52, 52, 0);
+		input.touchUp(52, 52, 0, 0);
+		assertEquals("adown adrag aup", log());
+		input.touchDragged(52, 52, 0);
+		assertEquals("the capture ended with the touch up", "bdrag", log());
+	}
+
+	@Test
+	public void forgetsAnEntityFreedToItsPool(){
+		final StringBuilder log = this.log;
+		GdxEntityPool<GdxEntity> pool = new GdxEntityPool<>("button", new GdxEntityPool.Factory<GdxEntity>() {
+			@Override
+			public GdxEntity create() {
+				GdxEntity entity = new GdxEntity();
+				entity.setInputProccessor(new Logger("a", log, true));
+				return entity;
+			}
+		}, 1, 1);
+		GdxEntity a = pool.obtain().setPosition(0, 0).setSize(5, 5);
+		grid.add(a);
+		input.setFocus(a);
+		input.touchDown(2, 2, 0, 0);
+		a.release();
+		log();
+
+		assertFalse(input.keyDown(0));
+		assertFalse(input.touchDragged(2, 2, 0));
+		assertEquals("", log());
+		assertEquals(0, input.getFocus().size);
+		assertEquals(0, grid.size());
+	}
+}
@@ -0,0 +1,81 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class GdxEntityPoolTest {
+	private static class Bullet extends GdxEntity{
+		int damage = 1;
+		int resets;
+
+		@Override
+		protected void onReset(){
+			damage = 1;
+		}
+
+		//a method of the game's own, the pool must not take it for its reset
+		public void reset(){
+			resets ++;
+		}
+	}
+
+	private final GdxEntityPool<Bullet> pool = new GdxEntityPool<>("bullet", new GdxEntityPool.Factory<Bullet>() {
+		@Override
+		public Bullet create() {
+			return new Bullet();
+		}
+	}, 2, 8);
+
+	@After
+	public void debugOff(){
+		GdxEntity.debug.setOn(false);
+	}
+
+	@Test
+	public void resetsTheFieldsOfSubclasses(){
+		Bullet bullet = pool.obtain();
+		bullet.damage = 5;
+		bullet.setPosition(3, 4);
+		bullet.release();
+		assertEquals(1, bullet.damage);
+		assertEquals(0.0f, bullet.getPosition().getX(), 0.0f);
+	}
+
+	@Test
+	public void leavesAResetOfSubclassesAlone(){
+		Bullet bullet = pool.obtain();
+		bullet.damage = 5;
+		bullet.release();
+		assertEquals(1, bullet.damage);
+		assertEquals(0, bullet.resets);
+	}
+
+	@Test
+	public void catchesADoubleFree(){
+		GdxEntity.debug.setOn(true);
+		Bullet bullet = pool.obtain();
+		pool.free(bullet);
+		try{
+			pool.free(bullet);
+			fail();
+		}catch(GdxRuntimeException e){
+			assertEquals(0, pool.getLive());
+		}
+	}
+
+	@Test
+	public void ignoresADoubleFreeWithoutDebug(){
+		Bullet bullet = pool.obtain();
+		pool.free(bullet);
+		pool.free(bullet);
+		assertEquals(0, pool.getLive());
+		assertEquals(1, pool.getFreed());
+		assertNotSame("the entity is handed out once", pool.obtain(), pool.obtain());
+	}
+}
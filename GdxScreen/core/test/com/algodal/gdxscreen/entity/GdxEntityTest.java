@@ -0,0 +1,42 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.algodal.gdxscreen.entity.GdxEntity.Entropy;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class GdxEntityTest {
+	private enum State{ IDLE, WALK, JUMP }
+
+	private static Entropy entropy(){
+		return new Entropy(new Animation(1.0f, new TextureRegion()), null);
+	}
+
+	@Test
+	public void findsStatesPutInAnyOrder(){
+		Entropy idle = entropy(), walk = entropy(), jump = entropy();
+		GdxEntity entity = new GdxEntity().putEntropy("spawn", entropy())
+				.putEntropy(State.JUMP, jump).putEntropy(State.IDLE, idle).putEntropy(State.WALK, walk);
+		assertSame(idle, entity.setEntropy(State.IDLE).getEntropy());
+		assertSame(walk, entity.setEntropy(State.WALK).getEntropy());
+		assertSame(jump, entity.setEntropy(State.JUMP).getEntropy());
+		assertEquals(1, entity.getEntropyIndex());
+	}
+
+	@Test
+	public void failsOnAStateNeverPut(){
+		GdxEntity entity = new GdxEntity().putEntropy(State.IDLE, entropy());
+		try{
+			entity.setEntropy(State.JUMP);
+			fail();
+		}catch(GdxRuntimeException e){
+			assertEquals(-1, entity.getEntropyIndex());
+		}
+	}
+}
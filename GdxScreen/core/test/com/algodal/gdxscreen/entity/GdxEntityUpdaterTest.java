@@ -0,0 +1,85 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.algodal.gdxscreen.entity.GdxEntity.Entropy;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+
+public class GdxEntityUpdaterTest {
+	private static class ThreadSound implements Sound{
+		final Thread expected = Thread.currentThread();
+		int plays, playsElsewhere;
+
+		@Override public long play() { if(Thread.currentThread() == expected) plays ++; else playsElsewhere ++; return plays; }
+		@Override public long play(float volume) { return play(); }
+		@Override public long play(float volume, float pitch, float pan) { return play(); }
+		@Override public long loop() { return play(); }
+		@Override public long loop(float volume) { return play(); }
+		@Override public long loop(float volume, float pitch, float pan) { return play(); }
+		@Override public void stop() {}
+		@Override public void pause() {}
+		@Override public void resume() {}
+		@Override public void dispose() {}
+		@Override public void stop(long soundId) {}
+		@Override public void pause(long soundId) {}
+		@Override public void resume(long soundId) {}
+		@Override public void setLooping(long soundId, boolean looping) {}
+		@Override public void setPitch(long soundId, float pitch) {}
+		@Override public void setVolume(long soundId, float volume) {}
+		@Override public void setPan(long soundId, float pan, float volume) {}
+	}
+
+	private final TextureRegion first = new TextureRegion(), second = new TextureRegion();
+	private final ThreadSound sound = new ThreadSound();
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+	private Graphics graphics;
+
+	@Before
+	public void noFrames(){
+		graphics = Gdx.graphics; //left behind by headless tests; without it plays are not merged per frame
+		Gdx.graphics = null;
+	}
+
+	@After
+	public void shutdown(){
+		pool.shutdown();
+		GdxEntity.sounds = new GdxSoundScheduler();
+		Gdx.graphics = graphics;
+	}
+
+	@Test
+	public void animatesAndPlaysOnTheCallingThread(){
+		final Array<GdxEntity> entities = new Array<>();
+		for(int i = 0; i < 1000; i ++) entities.add(new GdxEntity().putEntropy("walk", new Entropy(new Animation(1.0f, first, second), sound)).setEntropy(0));
+		final Array<TextureRegion> frames = new Array<>();
+		for(int i = 0; i < entities.size; i ++) frames.add(null);
+		GdxEntityUpdater updater = new GdxEntityUpdater(16).setPool(pool);
+		GdxEntityUpdater.Update update = new GdxEntityUpdater.Update() {
+			@Override
+			public void update(GdxEntity entity, float delta, GdxEntityUpdater.Commands commands) {
+				frames.set(entities.indexOf(entity, true), commands.nextFrame(entity, delta));
+			}
+		};
+
+		updater.update(entities, 1.0f, update);
+		assertEquals(1000, sound.plays);
+		assertEquals(0, sound.playsElsewhere);
+		assertSame(first, frames.get(999));
+
+		updater.update(entities, 1.0f, update);
+		assertEquals("the animation advanced once per update", 1000, sound.plays);
+		assertSame(second, frames.get(0));
+	}
+}
@@ -0,0 +1,112 @@
+package com.algodal.gdxscreen.entity;
+
+import com.algodal.gdxscreen.entity.GdxEntity.Entropy;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Measures one frame of work over many entities, once with a GdxEntity object for each
+ * entity and once with the packed arrays of a GdxEntityWorld.  A frame moves every entity
+ * and advances its animation.  Every figure is the best of a few rounds after a warm up.
+ *
+ * Arguments (all optional): the entity counts to measure, for example "10000 100000 1000000".
+ */
+public class GdxEntityWorldBenchmark {
+	private static final int WARMUP = 3, ROUNDS = 10;
+	private static final float DELTA = 1.0f / 60.0f;
+
+	public static void main(String[] args) {
+		int[] counts = {10000, 100000, 1000000};
+		if(args.length > 0){
+			counts = new int[args.length];
+			for(int i = 0; i < args.length; i ++) counts[i] = Integer.parseInt(args[i]);
+		}
+		Animation animation = new Animation(0.1f, new TextureRegion(), new TextureRegion(), new TextureRegion(), new TextureRegion());
+
+		System.out.println("entities  objects move ns  world move ns  objects animate ns  world animate ns  move speedup  animate speedup");
+		for(int count : counts){
+			Array<GdxEntity> objects = new Array<>(count);
+			for(int i = 0; i < count; i ++) objects.add(new GdxEntity().putEntropy("idle", new Entropy(animation, null)).setEntropy(0).setPosition(i, i));
+			long objectsMove = best(new ObjectsMove(objects));
+			long objectsAnimate = best(new ObjectsAnimate(objects));
+			objects = null; //let the objects go before the world is built
+
+			GdxEntityWorld world = new GdxEntityWorld(count).putEntropy("idle", new Entropy(animation, null));
+			for(int i = 0; i < count; i ++) world.add(i, i, 1, 1);
+			long worldMove = best(new WorldMove(world));
+			long worldAnimate = best(new WorldAnimate(world));
+
+			System.out.println(String.format("%8d  %15.1f  %13.1f  %18.1f  %16.1f  %12.2f  %15.2f", count,
+					(double)objectsMove / count, (double)worldMove / count, (double)objectsAnimate / count, (double)worldAnimate / count,
+					(double)objectsMove / worldMove, (double)objectsAnimate / worldAnimate));
+		}
+	}
+
+	private static long best(Runnable frame){
+		long best = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP + ROUNDS; i ++){
+			long begin = System.nanoTime();
+			frame.run();
+			long nanos = System.nanoTime() - begin;
+			if(i >= WARMUP) best = Math.min(best, nanos);
+		}
+		return best;
+	}
+
+	private static final class ObjectsMove implements Runnable{
+		private final Array<GdxEntity> objects;
+
+		ObjectsMove(Array<GdxEntity> objects){
+			this.objects = objects;
+		}
+
+		@Override
+		public void run() {
+			for(int i = 0; i < objects.size; i ++){
+				GdxEntity entity = objects.get(i);
+				entity.getPosition().addX(1.0f);
+				entity.getPosition().addY(-1.0f);
+			}
+		}
+	}
+
+	private static final class ObjectsAnimate implements Runnable{
+		private final Array<GdxEntity> objects;
+
+		ObjectsAnimate(Array<GdxEntity> objects){
+			this.objects = objects;
+		}
+
+		@Override
+		public void run() {
+			for(int i = 0; i < objects.size; i ++) objects.get(i).nextFrame(DELTA);
+		}
+	}
+
+	private static final class WorldMove implements Runnable{
+		private final GdxEntityWorld world;
+
+		WorldMove(GdxEntityWorld world){
+			this.world = world;
+		}
+
+		@Override
+		public void run() {
+			world.translateAll(1.0f, -1.0f);
+		}
+	}
+
+	private static final class WorldAnimate implements Runnable{
+		private final GdxEntityWorld world;
+
+		WorldAnimate(GdxEntityWorld world){
+			this.world = world;
+		}
+
+		@Override
+		public void run() {
+			for(int i = 0; i < world.size(); i ++) world.nextFrame(i, DELTA);
+		}
+	}
+}
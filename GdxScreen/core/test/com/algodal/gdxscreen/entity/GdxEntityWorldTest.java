@@ -0,0 +1,63 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.algodal.gdxscreen.entity.GdxEntity.Entropy;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+
+public class GdxEntityWorldTest {
+	private final TextureRegion first = new TextureRegion(), second = new TextureRegion();
+	private final GdxEntityWorld world = new GdxEntityWorld(4).putEntropy("walk", new Entropy(new Animation(1.0f, first, second), null));
+
+	@Test
+	public void animatesEveryViewWithItsOwnTime(){
+		GdxEntity a = world.view(world.add(0, 0, 1, 1));
+		GdxEntity b = world.view(world.add(0, 0, 1, 1));
+		assertSame(first, a.nextFrame(1.0f));
+		assertSame(first, b.nextFrame(0.5f));
+		assertSame(second, a.nextFrame(0.5f));
+		assertSame("b is still half way through its first frame", first, b.nextFrame(0.5f));
+		assertSame(second, b.nextFrame(0.5f));
+	}
+
+	@Test
+	public void resetsOnlyTheAnimationOfItsView(){
+		GdxEntity a = world.view(world.add(0, 0, 1, 1));
+		GdxEntity b = world.view(world.add(0, 0, 1, 1));
+		a.nextFrame(1.0f);
+		b.nextFrame(1.0f);
+		a.recycle();
+		assertSame(first, a.nextFrame(0.0f));
+		assertSame(second, b.nextFrame(0.0f));
+	}
+
+	@Test
+	public void keepsTheGridUpToDate(){
+		GdxEntityGrid grid = new GdxEntityGrid(0, 0, 100, 100, 10);
+		Array<GdxEntity> found = new Array<>();
+		int i = world.add(5, 5, 1, 1);
+		GdxEntity view = world.view(i);
+		grid.add(view);
+
+		world.setPosition(i, 55, 55);
+		assertEquals(1, grid.queryPoint(55.5f, 55.5f, found));
+		world.translateAll(20, 0);
+		assertEquals(1, grid.queryPoint(75.5f, 55.5f, found));
+		world.setSize(i, 15, 1);
+		assertEquals(1, grid.queryPoint(89.5f, 55.5f, found));
+
+		world.getYs()[i] = 5;
+		world.boundsChanged(i);
+		assertEquals(1, grid.queryPoint(75.5f, 5.5f, found));
+		assertSame(view, found.first());
+
+		world.remove(i);
+		assertEquals(0, grid.size());
+		assertEquals(0, grid.queryPoint(75.5f, 5.5f, found));
+	}
+}
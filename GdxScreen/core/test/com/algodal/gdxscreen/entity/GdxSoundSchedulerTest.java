@@ -0,0 +1,89 @@
+package com.algodal.gdxscreen.entity;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.utils.LongArray;
+
+public class GdxSoundSchedulerTest {
+	private static class FakeSound implements Sound{
+		private static long nextId;
+		final LongArray stopped = new LongArray();
+		int plays;
+
+		@Override public long play() { plays ++; return nextId ++; }
+		@Override public long play(float volume) { return play(); }
+		@Override public long play(float volume, float pitch, float pan) { return play(); }
+		@Override public long loop() { return play(); }
+		@Override public long loop(float volume) { return play(); }
+		@Override public long loop(float volume, float pitch, float pan) { return play(); }
+		@Override public void stop() {}
+		@Override public void pause() {}
+		@Override public void resume() {}
+		@Override public void dispose() {}
+		@Override public void stop(long soundId) { stopped.add(soundId); }
+		@Override public void pause(long soundId) {}
+		@Override public void resume(long soundId) {}
+		@Override public void setLooping(long soundId, boolean looping) {}
+		@Override public void setPitch(long soundId, float pitch) {}
+		@Override public void setVolume(long soundId, float volume) {}
+		@Override public void setPan(long soundId, float pan, float volume) {}
+	}
+
+	private final FakeSound shot = new FakeSound(), step = new FakeSound();
+	private Graphics graphics;
+
+	@Before
+	public void noFrames(){
+		graphics = Gdx.graphics; //left behind by headless tests; without it plays are not merged per frame
+		Gdx.graphics = null;
+	}
+
+	@After
+	public void restoreGraphics(){
+		Gdx.graphics = graphics;
+	}
+
+	@Test
+	public void dropsNothingByDefault(){
+		GdxSoundScheduler sounds = new GdxSoundScheduler();
+		for(int i = 0; i < 100; i ++) sounds.play(shot);
+		assertEquals(100, shot.plays);
+		assertEquals(0, sounds.getDropped());
+		assertEquals(100, sounds.getVoices(shot));
+	}
+
+	@Test
+	public void dropsOnceALimitIsSet(){
+		GdxSoundScheduler sounds = new GdxSoundScheduler().setMaxVoices(2, 3);
+		for(int i = 0; i < 3; i ++) sounds.play(shot);
+		sounds.play(step);
+		sounds.play(step);
+		assertEquals(2, shot.plays);
+		assertEquals(1, step.plays);
+		assertEquals(2, sounds.getDropped());
+	}
+
+	@Test
+	public void stopsOnlyTheVoicesOfItsSound(){
+		GdxSoundScheduler sounds = new GdxSoundScheduler().setMaxVoices(0, 4);
+		sounds.setDefaultDuration(60.0f);
+		sounds.play(shot);
+		sounds.play(step);
+		sounds.play(shot);
+		sounds.stop(step);
+		assertEquals(2, sounds.getVoices(shot));
+		assertEquals(0, sounds.getVoices(step));
+
+		long id = sounds.play(step);
+		sounds.stop(step, id);
+		assertEquals(id, step.stopped.first());
+		assertEquals(2, sounds.getVoices());
+	}
+}
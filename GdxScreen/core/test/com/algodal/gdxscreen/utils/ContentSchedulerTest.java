@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.algodal.gdxscreen.utils.GdxLibrary.Content;
+import com.algodal.gdxscreen.utils.GdxLibrary.ContentAdaptor;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class ContentSchedulerTest {
+	private final Array<String> refs = new Array<>();
+	private final Array<Content<?>> contents = new Array<>();
+	private final Array<String> finished = new Array<>();
+
+	private class Step extends ContentAdaptor<Object>{
+		final String ref;
+		long sleep;
+		boolean fails;
+
+		Step(String ref, String... dependencies){
+			this.ref = ref;
+			dependsOn(dependencies);
+			refs.add(ref);
+			contents.add(this);
+		}
+
+		@Override
+		public void onInitialize() {
+		}
+
+		@Override
+		public void onLoad() {
+			try{
+				Thread.sleep(sleep);
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			if(fails) throw new IllegalStateException(ref);
+			synchronized(finished){
+				finished.add(ref);
+			}
+		}
+
+		@Override
+		public void onUnLoad() {
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+
+	@Test
+	public void runsReadyContentsInRegistrationOrder(){
+		new Step("c", "a");
+		new Step("b");
+		new Step("a");
+		new Step("d", "b");
+		new ContentScheduler(refs, contents).run(ContentScheduler.LOAD, false);
+		assertEquals(new Array<>(new String[]{"b", "a", "c", "d"}), finished);
+	}
+
+	@Test
+	public void findsTheCriticalPath(){
+		new Step("a").sleep = 5;
+		new Step("b", "a").sleep = 20;
+		new Step("c", "a").sleep = 1;
+		new Step("d", "b", "c").sleep = 5;
+		ContentScheduler scheduler = new ContentScheduler(refs, contents);
+		scheduler.run(ContentScheduler.LOAD, true);
+		assertEquals(new Array<>(new String[]{"a", "b", "d"}), scheduler.getCriticalPath());
+		assertTrue(scheduler.getCriticalPathNanos() >= 30000000L);
+	}
+
+	@Test
+	public void waitsForRunningContentsBeforeThrowing(){
+		new Step("a").fails = true;
+		new Step("b").sleep = 200;
+		new Step("c", "b");
+		try{
+			new ContentScheduler(refs, contents).run(ContentScheduler.LOAD, true);
+			fail();
+		}catch(GdxRuntimeException e){
+			assertEquals("failed: content a step", e.getMessage());
+			synchronized(finished){
+				assertTrue("b finished before the failure was thrown", finished.contains("b", false));
+				assertFalse("nothing starts after a failure", finished.contains("c", false));
+			}
+		}
+	}
+}
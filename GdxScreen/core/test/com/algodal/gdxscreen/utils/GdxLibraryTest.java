@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.algodal.gdxscreen.utils.GdxLibrary.ContentAdaptor;
+import com.algodal.gdxscreen.utils.GdxLibrary.Key;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class GdxLibraryTest {
+	private static class Text extends ContentAdaptor<String>{
+		final String text;
+
+		Text(String text){
+			this.text = text;
+		}
+
+		@Override
+		public void onInitialize() {
+		}
+
+		@Override
+		public void onLoad() {
+			object = text;
+		}
+
+		@Override
+		public void onUnLoad() {
+			object = null;
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+
+	/**
+	 * A heap of base bytes plus perContent bytes for every loaded content, that every
+	 * call of collections() sees collected.
+	 */
+	private static class Heap extends GdxLibrary{
+		final Array<Text> texts = new Array<>();
+		long base, perContent, collections, now;
+
+		Heap(long base, long perContent){
+			this.base = base;
+			this.perContent = perContent;
+		}
+
+		Text lazy(String ref){
+			Text text = new Text(ref);
+			setContent(ref, text.setLazy(true));
+			texts.add(text);
+			return text;
+		}
+
+		@Override
+		long usedHeap(){
+			long used = base;
+			for(Text text : texts) if(text.isLoaded()) used += perContent;
+			return used;
+		}
+
+		@Override
+		long collections(){
+			return ++ collections;
+		}
+
+		@Override
+		long millis(){
+			return now;
+		}
+	}
+
+	@Test
+	public void storesOneContentInTwoLibraries(){
+		Text text = new Text("shared");
+		GdxLibrary first = new GdxLibrary(), second = new GdxLibrary();
+		first.setContent("a", text);
+		Key<String> key = second.addContent("b", text);
+		assertNotSame(first.getKey("a"), key);
+		assertSame(key, second.getKey("b"));
+		assertSame(text, first.getContent(first.<String>getKey("a")));
+		assertSame(text, second.getContent(key));
+	}
+
+	@Test(expected = GdxRuntimeException.class)
+	public void storesAContentOncePerLibrary(){
+		Text text = new Text("twice");
+		GdxLibrary library = new GdxLibrary();
+		library.setContent("a", text);
+		library.setContent("b", text);
+	}
+
+	@Test
+	public void loadsTheDependenciesOfALazyContent(){
+		GdxLibrary library = new GdxLibrary();
+		Text atlas = new Text("atlas"), level = new Text("level");
+		library.setContent("atlas", atlas.setLazy(true));
+		library.setContent("level", level.setLazy(true).dependsOn("atlas"));
+		library.create();
+		library.load();
+		assertFalse(atlas.isLoaded());
+		assertEquals("level", level.get());
+		assertTrue(atlas.isLoaded());
+		assertEquals(2, library.getLazyLoads());
+	}
+
+	@Test
+	public void loadsLazyDependenciesOfEagerContents(){
+		GdxLibrary library = new GdxLibrary();
+		Text atlas = new Text("atlas"), font = new Text("font"), menu = new Text("menu"), extra = new Text("extra");
+		library.setContent("font", font.setLazy(true));
+		library.setContent("atlas", atlas.setLazy(true).dependsOn("font"));
+		library.setContent("menu", menu.dependsOn("atlas"));
+		library.setContent("extra", extra.setLazy(true));
+		library.create();
+		library.load();
+		assertTrue(menu.isLoaded());
+		assertTrue(atlas.isLoaded());
+		assertTrue("dependencies of dependencies too", font.isLoaded());
+		assertFalse(extra.isLoaded());
+	}
+
+	@Test
+	public void neverRelievesAContentThatIsNeeded(){
+		Heap library = new Heap(1000, 0);
+		library.setHeapThreshold(1).setMinIdleMillis(0); //always above it
+		Text atlas = library.lazy("atlas"), level = library.lazy("level");
+		level.dependsOn("atlas");
+		library.create();
+		level.get();
+		assertTrue(atlas.isLoaded());
+
+		assertTrue(library.relieve());
+		assertFalse("level is the only content that may go", level.isLoaded());
+		assertTrue(atlas.isLoaded());
+		assertTrue(library.relieve());
+		assertFalse(atlas.isLoaded());
+		assertFalse(library.relieve());
+	}
+
+	@Test
+	public void keepsTwoContentsUsedInTurnNearTheThreshold(){
+		Heap library = new Heap(100, 10);
+		library.setHeapThreshold(115, 100);
+		Text day = library.lazy("day"), night = library.lazy("night");
+		library.create();
+		for(int frame = 0; frame < 600; frame ++){
+			library.now += 16;
+			(frame % 2 == 0 ? day : night).get();
+			library.relieve();
+		}
+		assertEquals("both are loaded once, neither is unloaded while in use", 2, library.getLazyLoads());
+		assertEquals(0, library.getPressureUnloads());
+
+		for(int frame = 0; frame < 100; frame ++){ //only day is used from now on
+			library.now += 16;
+			day.get();
+			library.relieve();
+		}
+		assertEquals(1, library.getPressureUnloads());
+		assertFalse(night.isLoaded());
+		assertTrue(day.isLoaded());
+	}
+
+	@Test
+	public void unloadsDownToTheLowWaterMark(){
+		Heap library = new Heap(100, 10);
+		library.setHeapThreshold(125, 105).setMinIdleMillis(0);
+		Text a = library.lazy("a"), b = library.lazy("b"), c = library.lazy("c");
+		library.create();
+		a.get();
+		b.get();
+		c.get(); //130, above the threshold: a goes
+		assertFalse(a.isLoaded());
+		assertTrue("120 is under the threshold but above the mark", library.relieve());
+		assertFalse(b.isLoaded());
+		assertTrue(library.relieve());
+		assertFalse(c.isLoaded());
+		assertFalse("100 is under the mark", library.relieve());
+		assertEquals(3, library.getPressureUnloads());
+
+		a.get();
+		b.get();
+		assertEquals("120 is under the threshold again", 3, library.getPressureUnloads());
+	}
+
+	@Test
+	public void waitsForACollectionAfterAnUnload(){
+		Heap library = new Heap(1000, 0){
+			@Override
+			long collections(){
+				return collections; //nothing is collected unless the test says so
+			}
+		};
+		library.setHeapThreshold(1).setMinIdleMillis(0);
+		Text a = library.lazy("a"), b = library.lazy("b");
+		library.create();
+		a.get();
+		b.get();
+		assertEquals(1, library.getPressureUnloads());
+		assertFalse(library.relieve());
+		library.collections ++;
+		assertTrue(library.relieve());
+		assertFalse(b.isLoaded());
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.algodal.gdxscreen.utils.GdxLoad.LoadData;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Damages compressed saves in the ways flash storage does and checks that only the damaged
+ * chunk is lost.
+ */
+public class GdxLoadCompressedTest {
+	private static final int UNITS = 100, CHUNK_UNITS = 8, CHUNKS = 13;
+	//offsets in a chunk header, counted from its marker
+	private static final int UNIT_COUNT = 12, RAW_LENGTH = 16, STORED_LENGTH = 20, PAYLOAD = 32;
+
+	public static class Unit{
+		public int id;
+		public String text;
+	}
+
+	private FileHandle handle;
+	private byte[] bytes;
+	private int[] markers;
+
+	@Before
+	public void save() throws IOException{
+		handle = new FileHandle(File.createTempFile("gdxsave", ".bin"));
+		GdxSave save = new GdxSave(handle, "test").setChunkUnits(CHUNK_UNITS);
+		for(int i = 0; i < UNITS; i ++){
+			Unit unit = new Unit();
+			unit.id = i;
+			unit.text = "unit number " + i;
+			save.getPlainOldJavaObjects().add(unit);
+		}
+		assertEquals(CHUNKS, save.saveCompressed().getChunks());
+		bytes = handle.readBytes();
+		markers = markers();
+		assertEquals(CHUNKS + 1, markers.length); //one more for the end
+	}
+
+	@After
+	public void delete(){
+		handle.delete();
+	}
+
+	private int[] markers(){
+		Array<Integer> found = new Array<>();
+		for(int i = 0; i + 8 <= bytes.length; i ++){
+			long value = 0;
+			for(int j = 0; j < 8; j ++) value = value << 8 | (bytes[i + j] & 0xff);
+			if(value == GdxSave.CHUNK_SYNC) found.add(i);
+		}
+		int[] positions = new int[found.size];
+		for(int i = 0; i < found.size; i ++) positions[i] = found.get(i);
+		return positions;
+	}
+
+	private void putInt(int position, int value){
+		bytes[position] = (byte)(value >>> 24);
+		bytes[position + 1] = (byte)(value >>> 16);
+		bytes[position + 2] = (byte)(value >>> 8);
+		bytes[position + 3] = (byte)value;
+	}
+
+	private LoadData load(){
+		handle.writeBytes(bytes, false);
+		LoadData data = new GdxLoad(handle).load();
+		assertEquals(UNITS, data.getCount());
+		assertEquals(UNITS, data.getPlainOldJavaObjects().size);
+		return data;
+	}
+
+	/**
+	 * Checks that every unit outside the lost chunks is loaded at its own index.
+	 */
+	private void assertLost(LoadData data, int corrupt, int... lostChunks){
+		assertEquals(corrupt, data.getCorruptChunks());
+		for(int i = 0; i < UNITS; i ++){
+			boolean lost = false;
+			for(int chunk : lostChunks) lost |= i / CHUNK_UNITS == chunk;
+			Object object = data.getPlainOldJavaObjects().get(i);
+			if(lost) assertNull("unit " + i, object);
+			else assertEquals(i, ((Unit)object).id);
+		}
+	}
+
+	@Test
+	public void loadsAnIntactSave(){
+		assertLost(load(), 0);
+	}
+
+	@Test
+	public void losesOnlyAChunkWithDamagedContent(){
+		bytes[markers[2] + PAYLOAD + 3] ^= 0x5a;
+		assertLost(load(), 1, 2);
+	}
+
+	@Test
+	public void losesOnlyAChunkWithADamagedStoredLength(){
+		putInt(markers[2] + STORED_LENGTH, 7);
+		assertLost(load(), 1, 2);
+	}
+
+	@Test
+	public void losesOnlyAChunkWithADamagedUnitCount(){
+		putInt(markers[4] + UNIT_COUNT, 3);
+		assertLost(load(), 1, 4);
+	}
+
+	@Test
+	public void refusesHugeLengthsInsteadOfAllocatingThem(){
+		putInt(markers[5] + RAW_LENGTH, Integer.MAX_VALUE);
+		putInt(markers[6] + STORED_LENGTH, Integer.MAX_VALUE - 1);
+		assertLost(load(), 2, 5, 6);
+	}
+
+	@Test
+	public void findsTheNextChunkAfterADamagedMarker(){
+		bytes[markers[3] + 1] ^= 0x01;
+		assertLost(load(), 1, 3);
+	}
+
+	@Test
+	public void keepsTheChunksBeforeATruncation(){
+		byte[] truncated = new byte[markers[9] + PAYLOAD + 2];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		bytes = truncated;
+		assertLost(load(), 1, 9, 10, 11, 12);
+	}
+}
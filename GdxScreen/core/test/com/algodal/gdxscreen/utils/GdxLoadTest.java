@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.algodal.gdxscreen.utils.GdxLoad.LoadData;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Loads the same plain save through every path and checks they agree with the XML reader.
+ */
+public class GdxLoadTest {
+	public static class Unit{
+		public int id;
+		public double value;
+		public String text;
+	}
+
+	private FileHandle handle;
+
+	@After
+	public void delete(){
+		if(handle != null) handle.delete();
+	}
+
+	private void save(int units) throws IOException{
+		handle = new FileHandle(File.createTempFile("gdxload", ".xml"));
+		GdxSave save = new GdxSave(handle, "test");
+		for(int i = 0; i < units; i ++){
+			Unit unit = new Unit();
+			unit.id = i;
+			unit.value = i / 7.0;
+			unit.text = "unit number " + i;
+			save.getPlainOldJavaObjects().add(unit);
+		}
+		save.save();
+	}
+
+	private void assertSameAsXml(LoadData expected, LoadData actual){
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getTime(), actual.getTime());
+		assertEquals(expected.getCount(), actual.getCount());
+		Array<Object> want = expected.getPlainOldJavaObjects(), got = actual.getPlainOldJavaObjects();
+		assertEquals(want.size, got.size);
+		for(int i = 0; i < want.size; i ++){
+			Unit a = (Unit)want.get(i), b = (Unit)got.get(i);
+			assertEquals(a.id, b.id);
+			assertEquals(a.value, b.value, 0.0);
+			assertEquals(a.text, b.text);
+		}
+	}
+
+	private void loadEveryWay(int units) throws IOException{
+		save(units);
+		LoadData xml = new GdxLoad(handle).load();
+		assertEquals(units, xml.getPlainOldJavaObjects().size);
+		assertSameAsXml(xml, new GdxLoad(handle).setMapped(true).load());
+		assertSameAsXml(xml, new GdxLoad(handle).setParallel(true).load());
+		assertSameAsXml(xml, new GdxLoad(handle).setMapped(true).setParallel(true).load());
+	}
+
+	@Test
+	public void readsASmallFileFromTheHeap() throws IOException{
+		loadEveryWay(300);
+		assertTrue(handle.length() < GdxLoad.MAP_BYTES);
+	}
+
+	@Test
+	public void mapsALargeFile() throws IOException{
+		loadEveryWay(30000);
+		assertTrue(handle.length() >= GdxLoad.MAP_BYTES);
+		save(10); //writes over the file the mapping was released from
+		assertSameAsXml(new GdxLoad(handle).load(), new GdxLoad(handle).setMapped(true).load());
+	}
+
+	@Test
+	public void loadsAnEmptySave() throws IOException{
+		loadEveryWay(0);
+	}
+}
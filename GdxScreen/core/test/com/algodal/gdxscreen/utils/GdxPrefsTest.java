@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessPreferences;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.ObjectMap;
+
+public class GdxPrefsTest {
+	public static class Settings{
+		int volume = 5;
+		float speed = 1.5f;
+		double scale = 0.25;
+		boolean music = true;
+		long seed = 1L << 40;
+		short level = -2;
+		char grade = 'A';
+		byte flags = 3;
+		Integer boxed;
+		String name = "player";
+	}
+
+	/**
+	 * Preferences whose flush waits until the test lets it write, like a slow disk.
+	 */
+	private static class SlowPreferences extends HeadlessPreferences{
+		final CountDownLatch flushing = new CountDownLatch(1), disk = new CountDownLatch(1);
+		volatile int flushes;
+		volatile Thread flushThread;
+
+		SlowPreferences(FileHandle file){
+			super(file);
+		}
+
+		@Override
+		public void flush(){
+			if(flushThread == null) flushThread = Thread.currentThread();
+			flushing.countDown();
+			try{
+				disk.await();
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			flushes ++;
+			super.flush();
+		}
+	}
+
+	private static HeadlessApplication application;
+	private static final ObjectMap<String, Preferences> preferences = new ObjectMap<>();
+	private static FileHandle directory; //of the preferences of the running test
+	private static SlowPreferences slow;
+
+	@BeforeClass
+	public static void start(){
+		application = new HeadlessApplication(new ApplicationAdapter(){}){
+			@Override
+			public Preferences getPreferences(String name){
+				if(name.equals("GdxPrefsTest.slow")) return slow;
+				synchronized(preferences){
+					Preferences found = preferences.get(name);
+					if(found == null) preferences.put(name, found = new HeadlessPreferences(directory.child(name)));
+					return found;
+				}
+			}
+		};
+	}
+
+	@AfterClass
+	public static void stop(){
+		application.exit();
+	}
+
+	@Before
+	public void createDirectory() throws IOException{
+		directory = new FileHandle(Files.createTempDirectory("GdxPrefsTest").toFile());
+		slow = new SlowPreferences(directory.child("GdxPrefsTest.slow"));
+	}
+
+	@After
+	public void deleteDirectory(){
+		slow.disk.countDown();
+		GdxPrefs.setFlushWindow(0);
+		synchronized(preferences){
+			preferences.clear();
+		}
+		directory.deleteDirectory();
+	}
+
+	/**
+	 * @return the thread that runs the runnables posted to the application.
+	 */
+	private static Thread renderThread() throws InterruptedException{
+		final Thread[] thread = new Thread[1];
+		final CountDownLatch ran = new CountDownLatch(1);
+		Gdx.app.postRunnable(new Runnable() {
+			@Override
+			public void run() {
+				thread[0] = Thread.currentThread();
+				ran.countDown();
+			}
+		});
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		return thread[0];
+	}
+
+	@Test
+	public void keepsEveryTypeOfField(){
+		String name = "GdxPrefsTest.types";
+		GdxPrefs<Settings> prefs = new GdxPrefs<>(name, Settings.class);
+		prefs.object.volume = 9;
+		prefs.object.speed = Float.NaN;
+		prefs.object.scale = 3.5;
+		prefs.object.music = false;
+		prefs.object.seed = -7;
+		prefs.object.level = -300;
+		prefs.object.grade = 'z';
+		prefs.object.flags = -4;
+		prefs.object.boxed = 12;
+		prefs.object.name = "other";
+		prefs.save();
+
+		Settings loaded = new GdxPrefs<>(name, Settings.class).object;
+		assertEquals(9, loaded.volume);
+		assertTrue(Float.isNaN(loaded.speed));
+		assertEquals(3.5, loaded.scale, 0.0);
+		assertFalse(loaded.music);
+		assertEquals(-7, loaded.seed);
+		assertEquals(-300, loaded.level);
+		assertEquals('z', loaded.grade);
+		assertEquals(-4, loaded.flags);
+		assertEquals(Integer.valueOf(12), loaded.boxed);
+		assertEquals("other", loaded.name);
+	}
+
+	@Test
+	public void isCleanAfterSavingOrLoading(){
+		String name = "GdxPrefsTest.dirty";
+		GdxPrefs<Settings> prefs = new GdxPrefs<>(name, Settings.class);
+		assertTrue("nothing is saved yet", prefs.isDirty());
+		prefs.object.scale = 0.1; //not exact as a float
+		prefs.save();
+		assertFalse(prefs.isDirty());
+		prefs.object.volume ++;
+		assertTrue(prefs.isDirty());
+		prefs.save();
+		assertFalse(new GdxPrefs<>(name, Settings.class).isDirty());
+	}
+
+	@Test(timeout = 10000)
+	public void savesWhileTheWindowFlushIsWriting() throws InterruptedException{
+		GdxPrefs<Settings> prefs = new GdxPrefs<>("GdxPrefsTest.slow", Settings.class);
+		Thread renderThread = renderThread();
+		GdxPrefs.setFlushWindow(1);
+		try{
+			prefs.object.volume = 1;
+			prefs.save();
+			assertTrue(slow.flushing.await(5, TimeUnit.SECONDS)); //the flush of the window is stuck on the disk
+			assertSame("the flush runs on the render thread", renderThread, slow.flushThread);
+
+			prefs.object.volume = 2;
+			prefs.save(); //must not wait for the disk
+			assertEquals(1, GdxPrefs.getPendingFlushes());
+
+			slow.disk.countDown();
+			GdxPrefs.flushPending();
+			assertEquals(0, GdxPrefs.getPendingFlushes());
+			assertEquals(2, slow.getInteger("volume"));
+			assertEquals(2, slow.flushes);
+		}finally{
+			slow.disk.countDown();
+		}
+	}
+}
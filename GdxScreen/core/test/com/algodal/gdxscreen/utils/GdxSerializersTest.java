@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.algodal.gdxscreen.utils.GdxSerializers.Direct;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.SerializationException;
+
+public class GdxSerializersTest {
+	public static class Base{
+		public int id;
+		public String name = "base";
+	}
+
+	public static class Point{
+		public float x, y;
+	}
+
+	@Direct
+	public static class Unit extends Base{
+		public String name; //hides Base.name
+		float speed;
+		double mass;
+		long score;
+		boolean alive;
+		char grade;
+		short level;
+		byte flags;
+		Point point;
+		int[] slots;
+		transient int cache;
+	}
+
+	@Direct
+	public static class Later{
+		public int value;
+	}
+
+	@BeforeClass
+	public static void register(){
+		GdxSerializers.register(Unit.class);
+	}
+
+	private static Unit unit(){
+		Unit unit = new Unit();
+		unit.id = 7;
+		unit.name = "a \"quoted\" <name> & more\n";
+		unit.speed = 1.5f;
+		unit.mass = -2.25;
+		unit.score = Long.MAX_VALUE;
+		unit.alive = true;
+		unit.grade = 'B';
+		unit.level = 300;
+		unit.flags = -3;
+		unit.point = new Point();
+		unit.point.x = 4.0f;
+		unit.slots = new int[]{1, 2, 3};
+		unit.cache = 99;
+		return unit;
+	}
+
+	@Test
+	public void usesTheGeneratedSerializer(){
+		assertNotNull(GdxSerializers.find(Unit.class));
+		assertEquals("com.algodal.gdxscreen.utils.GdxSerializersTest_Unit_GdxSerializer", GdxSerializers.find(Unit.class).getClass().getName());
+	}
+
+	@Test
+	public void roundTrips() throws Exception{
+		Unit loaded = (Unit)SaveUnits.read(SaveUnits.write(unit()));
+		Unit saved = unit();
+		assertEquals(saved.id, loaded.id);
+		assertEquals(saved.name, loaded.name);
+		assertEquals(saved.speed, loaded.speed, 0.0f);
+		assertEquals(saved.mass, loaded.mass, 0.0);
+		assertEquals(saved.score, loaded.score);
+		assertEquals(saved.alive, loaded.alive);
+		assertEquals(saved.grade, loaded.grade);
+		assertEquals(saved.level, loaded.level);
+		assertEquals(saved.flags, loaded.flags);
+		assertEquals(saved.point.x, loaded.point.x, 0.0f);
+		assertArrayEquals(saved.slots, loaded.slots);
+		assertEquals(0, loaded.cache);
+		assertEquals("base", ((Base)loaded).name);
+	}
+
+	@Test
+	public void jsonReadsWhatTheSerializerWrites() throws Exception{
+		Unit loaded = (Unit)new Json().readValue(Object.class, null, new JsonReader().parse(SaveUnits.write(unit())));
+		assertEquals(unit().name, loaded.name);
+		assertEquals(unit().score, loaded.score);
+		assertArrayEquals(unit().slots, loaded.slots);
+	}
+
+	@Test
+	public void writesAHiddenFieldOnceInJsonOrder() throws Exception{
+		String text = SaveUnits.write(unit());
+		int name = text.indexOf("\"name\":");
+		assertTrue(name > 0);
+		assertEquals(-1, text.indexOf("\"name\":", name + 1));
+		assertTrue("superclass fields come first", text.indexOf("\"id\":") < text.indexOf("\"speed\":"));
+		assertEquals(-1, text.indexOf("cache"));
+	}
+
+	@Test
+	public void keepsNonFiniteNumbers() throws Exception{
+		Unit unit = unit();
+		unit.speed = Float.NaN;
+		unit.mass = Double.NEGATIVE_INFINITY;
+		Unit loaded = (Unit)SaveUnits.read(SaveUnits.write(unit));
+		assertTrue(Float.isNaN(loaded.speed));
+		assertEquals(Double.NEGATIVE_INFINITY, loaded.mass, 0.0);
+
+		unit.speed = Float.POSITIVE_INFINITY;
+		String json = new Json().toJson(unit, Object.class);
+		assertTrue("Json writes non-finite numbers the same way", json.contains("speed:Infinity") && SaveUnits.write(unit).contains("\"speed\":Infinity"));
+	}
+
+	@Test
+	public void failsOnUnknownFieldsLikeJson() throws Exception{
+		String text = "{\"class\":\"" + Unit.class.getName() + "\",\"id\":1,\"missing\":2}";
+		try{
+			SaveUnits.read(text);
+			fail();
+		}catch(SerializationException e){
+			assertTrue(e.getMessage().startsWith("Field not found: missing"));
+		}
+	}
+
+	@Test
+	public void resolvesOnlyRegisteredClassNames(){
+		assertNull(GdxSerializers.find(Later.class.getName()));
+		assertNull(GdxSerializers.find("java.lang.Thread"));
+		assertNotNull(GdxSerializers.find(Later.class)); //saving a Direct class registers it
+		assertNotNull(GdxSerializers.find(Later.class.getName()));
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class GdxTraceTest {
+	@After
+	public void off(){
+		GdxTrace.setEnabled(false);
+		GdxTrace.setKeptEndedThreads(8);
+		GdxTrace.clear();
+	}
+
+	private static int threadsIn(String trace){
+		int threads = 0;
+		for(int i = trace.indexOf("thread_name"); i != -1; i = trace.indexOf("thread_name", i + 1)) threads ++;
+		return threads;
+	}
+
+	private static String export() throws IOException{
+		StringWriter writer = new StringWriter();
+		GdxTrace.export(writer);
+		return writer.toString();
+	}
+
+	@Test
+	public void keepsFewBuffersOfEndedThreads() throws Exception{
+		GdxTrace.clear();
+		GdxTrace.setKeptEndedThreads(3);
+		GdxTrace.setEnabled(true);
+		for(int i = 0; i < 20; i ++){
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					GdxTrace.begin("task");
+					GdxTrace.end();
+				}
+			}, "task " + i);
+			thread.start();
+			thread.join();
+		}
+		String trace = export();
+		assertEquals("only three buffers of ended threads are kept", 3, threadsIn(trace));
+		assertTrue("the last thread is kept", trace.contains("task 19"));
+
+		GdxTrace.clear();
+		assertEquals(0, threadsIn(export()));
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Measures how the conversion of save units scales with the number of objects and the
+ * number of cores.  Each count is converted once one after another on the calling thread,
+ * then in parallel on fork-join pools of 1, 2, 4 ... cores, up to the cores of the machine.
+ * Every figure is the best of a few rounds after a warm up.
+ *
+ * Arguments (all optional): the object counts to measure, for example "1000 10000 100000".
+ */
+public class SaveUnitsBenchmark {
+	private static final int WARMUP = 2, ROUNDS = 5;
+
+	public static class Unit{
+		public int id;
+		public float x, y;
+		public long score;
+		public boolean alive;
+		public String name;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] counts = {1000, 10000, 100000};
+		if(args.length > 0){
+			counts = new int[args.length];
+			for(int i = 0; i < args.length; i ++) counts[i] = Integer.parseInt(args[i]);
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("objects  cores  write units/s  read units/s  write speedup  read speedup");
+		for(int count : counts){
+			Array<Object> objects = units(count);
+			String[] texts = new String[count];
+			Object[] read = new Object[count];
+
+			long writeBase = best(new Write(objects, texts, false));
+			long readBase = best(new Read(texts, read, false));
+			print(count, "seq", writeBase, readBase, writeBase, readBase);
+
+			for(int c = 1; c <= cores; c = c == cores ? c + 1 : Math.min(cores, c * 2)){
+				ForkJoinPool pool = new ForkJoinPool(c);
+				try{
+					long writeNanos = best(pool, new Write(objects, texts, true));
+					long readNanos = best(pool, new Read(texts, read, true));
+					print(count, Integer.toString(c), writeNanos, readNanos, writeBase, readBase);
+				}finally{
+					pool.shutdown();
+				}
+			}
+		}
+	}
+
+	private static Array<Object> units(int count){
+		Array<Object> objects = new Array<>(count);
+		for(int i = 0; i < count; i ++){
+			Unit unit = new Unit();
+			unit.id = i;
+			unit.x = i * 0.5f;
+			unit.y = i * 0.25f;
+			unit.score = i * 1000L;
+			unit.alive = (i & 1) == 0;
+			unit.name = "unit " + i;
+			objects.add(unit);
+		}
+		return objects;
+	}
+
+	private static long best(Callable<Void> work) throws Exception {
+		long best = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP + ROUNDS; i ++){
+			long begin = System.nanoTime();
+			work.call();
+			long nanos = System.nanoTime() - begin;
+			if(i >= WARMUP) best = Math.min(best, nanos);
+		}
+		return best;
+	}
+
+	/**
+	 * Runs the rounds on a worker of the pool, so the conversion uses that pool's cores.
+	 */
+	private static long best(ForkJoinPool pool, final Callable<Void> work) throws Exception {
+		return pool.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				return best(work);
+			}
+		}).get();
+	}
+
+	private static void print(int count, String cores, long write, long read, long writeBase, long readBase){
+		System.out.println(String.format("%7d  %5s  %13.0f  %12.0f  %13.2f  %12.2f", count, cores,
+				count * 1e9 / write, count * 1e9 / read, (double)writeBase / write, (double)readBase / read));
+	}
+
+	private static final class Write implements Callable<Void>{
+		private final Array<Object> objects;
+		private final String[] texts;
+		private final boolean parallel;
+
+		Write(Array<Object> objects, String[] texts, boolean parallel){
+			this.objects = objects;
+			this.texts = texts;
+			this.parallel = parallel;
+		}
+
+		@Override
+		public Void call() {
+			SaveUnits.writeAll(objects, texts, parallel);
+			return null;
+		}
+	}
+
+	private static final class Read implements Callable<Void>{
+		private final String[] texts;
+		private final Object[] objects;
+		private final boolean parallel;
+
+		Read(String[] texts, Object[] objects, boolean parallel){
+			this.texts = texts;
+			this.objects = objects;
+			this.parallel = parallel;
+		}
+
+		@Override
+		public Void call() {
+			SaveUnits.readAll(texts, texts.length, objects, parallel);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright 2016 Alrick Grandison (Algodal)  alrickgrandison@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.algodal.gdxscreen.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Writes the serializers of GdxSerializers at compile time.  For every class Foo annotated
+ * with GdxSerializers.Direct it generates Foo_GdxSerializer in the package of Foo, which
+ * reads and writes the fields of Foo directly.  Fields are written in the order Json writes
+ * them: the fields of the superclasses first, and a field that hides a field of a superclass
+ * takes its place instead of being written twice.
+ *
+ * The processor ships in its own jar, gdxscreen-processor, so the GdxScreen jar a game runs
+ * with carries no javax.annotation.processing classes.  Put it on the annotation processor
+ * path of the project that declares the Direct classes (annotationProcessor or apt on
+ * Android, the compile classpath of javac elsewhere); javac finds it through its
+ * META-INF/services entry.  It names the annotation instead of linking to it, so it does not
+ * depend on GdxScreen itself.
+ */
+@SupportedAnnotationTypes(GdxSerializerProcessor.DIRECT)
+public class GdxSerializerProcessor extends AbstractProcessor {
+	static final String DIRECT = "com.algodal.gdxscreen.utils.GdxSerializers.Direct";
+	private static final String SUFFIX = "_GdxSerializer", CLASS_TAG = "class"; //the same as in GdxSerializers
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		TypeElement direct = processingEnv.getElementUtils().getTypeElement(DIRECT);
+		if(direct == null) return false; //GdxScreen is not on the classpath, nothing can be Direct
+		for(Element element : round.getElementsAnnotatedWith(direct)){
+			if(element.getKind() != ElementKind.CLASS){
+				error(element, "only classes can be Direct");
+				continue;
+			}
+			TypeElement type = (TypeElement)element;
+			LinkedHashMap<String, VariableElement> fields = fields(type);
+			if(check(type, fields)) generate(type, fields);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the saved fields by name, superclass fields first, the way Json orders them.
+	 */
+	private LinkedHashMap<String, VariableElement> fields(TypeElement type){
+		ArrayList<TypeElement> hierarchy = new ArrayList<>();
+		for(TypeElement t = type; t != null && !t.getQualifiedName().contentEquals("java.lang.Object"); t = superclass(t)) hierarchy.add(t);
+		LinkedHashMap<String, VariableElement> fields = new LinkedHashMap<>();
+		for(int i = hierarchy.size() - 1; i >= 0; i --){
+			for(VariableElement field : ElementFilter.fieldsIn(hierarchy.get(i).getEnclosedElements())){
+				Set<Modifier> modifiers = field.getModifiers();
+				if(modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+				fields.put(field.getSimpleName().toString(), field); //a hiding field keeps the place of the hidden one
+			}
+		}
+		return fields;
+	}
+
+	private TypeElement superclass(TypeElement type){
+		TypeMirror superclass = type.getSuperclass();
+		return superclass.getKind() == TypeKind.DECLARED ? (TypeElement)processingEnv.getTypeUtils().asElement(superclass) : null;
+	}
+
+	/**
+	 * Reports everything the generated code could not compile against.
+	 * @return true if the serializer can be generated.
+	 */
+	private boolean check(TypeElement type, LinkedHashMap<String, VariableElement> fields){
+		boolean ok = true;
+		if(type.getModifiers().contains(Modifier.ABSTRACT)) ok = error(type, "a Direct class can not be abstract");
+		if(!type.getTypeParameters().isEmpty()) ok = error(type, "a Direct class can not be generic");
+		for(Element e = type; isType(e); e = e.getEnclosingElement()){
+			if(e.getModifiers().contains(Modifier.PRIVATE)) ok = error(type, "a Direct class can not be private or nested in a private class");
+			if(e.getKind() == ElementKind.CLASS && isType(e.getEnclosingElement()) && !e.getModifiers().contains(Modifier.STATIC))
+				ok = error(type, "a Direct class nested in another class must be static");
+		}
+		boolean constructor = false;
+		for(ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements()))
+			constructor |= c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE);
+		if(!constructor) ok = error(type, "a Direct class needs an empty constructor that is not private");
+
+		String packageName = packageOf(type);
+		for(VariableElement field : fields.values()){
+			Set<Modifier> modifiers = field.getModifiers();
+			String name = field.getSimpleName().toString();
+			if(modifiers.contains(Modifier.PRIVATE)) ok = error(field, name + " is private, make it package private or transient so the serializer of " + type.getSimpleName() + " can reach it");
+			else if(modifiers.contains(Modifier.FINAL)) ok = error(field, name + " is final, make it transient so the serializer of " + type.getSimpleName() + " skips it");
+			else if(!modifiers.contains(Modifier.PUBLIC) && !packageOf((TypeElement)field.getEnclosingElement()).equals(packageName))
+				ok = error(type, name + " of " + field.getEnclosingElement().getSimpleName() + " is not visible from the package of " + type.getSimpleName() + ", make it public or transient");
+		}
+		return ok;
+	}
+
+	private void generate(TypeElement type, LinkedHashMap<String, VariableElement> fields){
+		String packageName = packageOf(type);
+		String simpleName = flatName(type) + SUFFIX;
+		String typeName = type.getQualifiedName().toString();
+
+		StringBuilder source = new StringBuilder(1024);
+		if(!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+		source.append("import com.algodal.gdxscreen.utils.GdxSerializers;\n");
+		source.append("import com.badlogic.gdx.utils.Json;\n");
+		source.append("import com.badlogic.gdx.utils.JsonValue;\n\n");
+		source.append("/**\n * Generated by GdxSerializerProcessor from ").append(type.getSimpleName()).append(", do not edit.\n */\n");
+		source.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+		source.append("public final class ").append(simpleName).append(" extends GdxSerializers.Serializer<").append(typeName).append(">{\n");
+		source.append("\tpublic ").append(simpleName).append("(){\n");
+		source.append("\t\tsuper(").append(typeName).append(".class);\n");
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tprotected void writeFields(").append(typeName).append(" object, Json json, StringBuilder out){\n");
+		for(VariableElement field : fields.values()){
+			String name = field.getSimpleName().toString();
+			source.append("\t\tfield(out, \"").append(name).append("\");\n");
+			if(direct(field.asType())) source.append("\t\tvalue(out, object.").append(name).append(");\n");
+			else source.append("\t\tvalue(out, json, object.").append(name).append(", ").append(erasure(field)).append(".class);\n");
+		}
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tprotected ").append(typeName).append(" readFields(JsonValue value, Json json){\n");
+		source.append("\t\t").append(typeName).append(" object = new ").append(typeName).append("();\n");
+		source.append("\t\tfor(JsonValue child = value.child; child != null; child = child.next){\n");
+		source.append("\t\t\tswitch(child.name){\n");
+		source.append("\t\t\tcase \"").append(CLASS_TAG).append("\": break;\n");
+		for(VariableElement field : fields.values()){
+			String name = field.getSimpleName().toString();
+			source.append("\t\t\tcase \"").append(name).append("\": object.").append(name).append(" = ");
+			String reader = reader(field.asType());
+			if(reader != null) source.append("child.").append(reader).append("();");
+			else source.append("child.isNull() ? null : json.readValue(").append(erasure(field)).append(".class, null, child);");
+			source.append(" break;\n");
+		}
+		source.append("\t\t\tdefault: unknownField(child);\n");
+		source.append("\t\t\t}\n");
+		source.append("\t\t}\n");
+		source.append("\t\treturn object;\n");
+		source.append("\t}\n");
+		source.append("}\n");
+
+		String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		try{
+			Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+			try{
+				writer.write(source.toString());
+			}finally{
+				writer.close();
+			}
+		}catch(IOException e){
+			error(type, "the serializer could not be written: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return true for the types Serializer writes itself: primitives and String.
+	 */
+	private boolean direct(TypeMirror type){
+		return type.getKind().isPrimitive() || type.toString().equals("java.lang.String");
+	}
+
+	/**
+	 * @return the JsonValue method that reads the type, or null to read it through Json.
+	 */
+	private String reader(TypeMirror type){
+		switch(type.getKind()){
+		case INT: return "asInt";
+		case LONG: return "asLong";
+		case FLOAT: return "asFloat";
+		case DOUBLE: return "asDouble";
+		case BOOLEAN: return "asBoolean";
+		case SHORT: return "asShort";
+		case BYTE: return "asByte";
+		case CHAR: return "asChar";
+		default: return type.toString().equals("java.lang.String") ? "asString" : null;
+		}
+	}
+
+	private String erasure(VariableElement field){
+		return processingEnv.getTypeUtils().erasure(field.asType()).toString();
+	}
+
+	private String packageOf(TypeElement type){
+		return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+	}
+
+	/**
+	 * @return the simple names of the class and the classes it is nested in, joined with '_'.
+	 */
+	private String flatName(TypeElement type){
+		String name = type.getSimpleName().toString();
+		for(Element e = type.getEnclosingElement(); isType(e); e = e.getEnclosingElement())
+			name = e.getSimpleName() + "_" + name;
+		return name;
+	}
+
+	private static boolean isType(Element element){
+		return element.getKind().isClass() || element.getKind().isInterface();
+	}
+
+	/**
+	 * @return false, so a failed check can be written as ok = error(...).
+	 */
+	private boolean error(Element element, String message){
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+		return false;
+	}
+}